@@ -4,6 +4,9 @@ import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Promise;
 import io.vertx.core.http.HttpServerOptions;
 import org.folio.inventoryupdate.importing.service.ImportService;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.ChannelRuntime;
+import org.folio.inventoryupdate.updating.ReferenceDataCache;
+import org.folio.inventoryupdate.updating.StorageLimiter;
 import org.folio.inventoryupdate.updating.service.InventoryUpdateService;
 import org.folio.okapi.common.Config;
 import org.folio.tlib.RouterCreator;
@@ -22,6 +25,29 @@ public class MainVerticle extends AbstractVerticle {
     // listening port
     final int port = Integer.parseInt(Config.getSysConf("http.port", "port", "8080", config()));
 
+    // bounds of concurrent requests to Inventory storage, per tenant
+    StorageLimiter.configure(
+        Integer.parseInt(Config.getSysConf("storage.concurrency.floor", "storageConcurrencyFloor",
+            String.valueOf(StorageLimiter.DEFAULT_FLOOR), config())),
+        Integer.parseInt(Config.getSysConf("storage.concurrency.ceiling", "storageConcurrencyCeiling",
+            String.valueOf(StorageLimiter.DEFAULT_CEILING), config())));
+
+    // expiry and size bound of cached reference data, per tenant
+    ReferenceDataCache.configure(
+        Long.parseLong(Config.getSysConf("reference.data.ttl", "referenceDataTtl",
+            String.valueOf(ReferenceDataCache.DEFAULT_TTL_SECONDS), config())),
+        Integer.parseInt(Config.getSysConf("reference.data.max.locations", "referenceDataMaxLocations",
+            String.valueOf(ReferenceDataCache.DEFAULT_MAX_LOCATIONS), config())));
+
+    // threads shared by the file listeners of all channels, and the threads for file imports a tenant can hold
+    ChannelRuntime.configure(
+        Integer.parseInt(Config.getSysConf("channel.listener.threads", "channelListenerThreads",
+            String.valueOf(ChannelRuntime.DEFAULT_LISTENER_POOL_SIZE), config())),
+        Integer.parseInt(Config.getSysConf("file.import.threads", "fileImportThreads",
+            String.valueOf(ChannelRuntime.DEFAULT_FILE_IMPORT_POOL_SIZE), config())),
+        Integer.parseInt(Config.getSysConf("file.import.threads.per.tenant", "fileImportThreadsPerTenant",
+            String.valueOf(ChannelRuntime.DEFAULT_FILE_IMPORTS_PER_TENANT), config())));
+
     InventoryUpdateService updateService = new InventoryUpdateService();
     ImportService importService = new ImportService();
 
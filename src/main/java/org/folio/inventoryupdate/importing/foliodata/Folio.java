@@ -3,6 +3,7 @@ package org.folio.inventoryupdate.importing.foliodata;
 import io.vertx.ext.web.RoutingContext;
 import java.util.HashMap;
 import java.util.Map;
+import org.folio.inventoryupdate.updating.StorageLimiter;
 import org.folio.okapi.common.OkapiClient;
 import org.folio.okapi.common.WebClientFactory;
 import org.folio.okapi.common.XOkapiHeaders;
@@ -28,6 +29,7 @@ public final class Folio {
     headers.put("Accept", "application/json, text/plain");
     OkapiClient client = new OkapiClient(WebClientFactory.getWebClient(ctx.vertx()), ctx);
     client.setHeaders(headers);
+    StorageLimiter.attach(client, ctx.request().getHeader(XOkapiHeaders.TENANT));
     return client;
   }
 }
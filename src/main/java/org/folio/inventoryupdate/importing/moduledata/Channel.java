@@ -29,6 +29,11 @@ public class Channel extends Entity {
   public static final String LAST_HARVESTED = "LAST_HARVESTED";
   public static final String ENABLED = "ENABLED";
   public static final String LISTENING = "LISTENING";
+  public static final String TRANSFORMATION_WORKERS = "TRANSFORMATION_WORKERS";
+  public static final String CONCURRENT_BATCHES = "CONCURRENT_BATCHES";
+  public static final String MIN_BATCH_SIZE = "MIN_BATCH_SIZE";
+  public static final String MAX_BATCH_SIZE = "MAX_BATCH_SIZE";
+  public static final String RECORD_IDENTIFIER_ELEMENT = "RECORD_IDENTIFIER_ELEMENT";
   // virtual (non-db) property
   public static final String PROPERTY_COMMISSIONED = "commissioned";
   private static final Map<String, Field> CHANNEL_FIELDS = new HashMap<>();
@@ -55,15 +60,27 @@ public class Channel extends Entity {
         new Field("enabled", "enabled", PgColumn.Type.BOOLEAN, false, true));
     CHANNEL_FIELDS.put(LISTENING,
         new Field("listening", "listening", PgColumn.Type.BOOLEAN, false, true));
+    CHANNEL_FIELDS.put(TRANSFORMATION_WORKERS,
+        new Field("transformationWorkers", "transformation_workers", PgColumn.Type.INTEGER, true, true));
+    CHANNEL_FIELDS.put(CONCURRENT_BATCHES,
+        new Field("concurrentBatches", "concurrent_batches", PgColumn.Type.INTEGER, true, true));
+    CHANNEL_FIELDS.put(MIN_BATCH_SIZE,
+        new Field("minBatchSize", "min_batch_size", PgColumn.Type.INTEGER, true, true));
+    CHANNEL_FIELDS.put(MAX_BATCH_SIZE,
+        new Field("maxBatchSize", "max_batch_size", PgColumn.Type.INTEGER, true, true));
+    CHANNEL_FIELDS.put(RECORD_IDENTIFIER_ELEMENT,
+        new Field("recordIdentifierElement", "record_identifier_element", PgColumn.Type.TEXT, true, true));
   }
 
   public Channel() {
   }
 
   public Channel(UUID id, String name, String tag, String type, UUID transformationId, String harvestUrl,
-                 String lastHarvested, boolean enabled, boolean listening) {
+                 String lastHarvested, boolean enabled, boolean listening, Integer transformationWorkers,
+                 Integer concurrentBatches, Integer minBatchSize, Integer maxBatchSize,
+                 String recordIdentifierElement) {
     theRecord = new ChannelRecord(id, name, tag, type, transformationId, harvestUrl, lastHarvested, enabled,
-        listening);
+        listening, transformationWorkers, concurrentBatches, minBatchSize, maxBatchSize, recordIdentifierElement);
   }
 
   public ChannelRecord getRecord() {
@@ -105,7 +122,12 @@ public class Channel extends Entity {
         channelJson.getString(jsonPropertyName(HARVEST_URL)),
         channelJson.getString(jsonPropertyName(LAST_HARVESTED)),
         "TRUE".equalsIgnoreCase(channelJson.getString(jsonPropertyName(ENABLED))),
-        "TRUE".equalsIgnoreCase(channelJson.getString(jsonPropertyName(LISTENING))));
+        "TRUE".equalsIgnoreCase(channelJson.getString(jsonPropertyName(LISTENING))),
+        channelJson.getInteger(jsonPropertyName(TRANSFORMATION_WORKERS)),
+        channelJson.getInteger(jsonPropertyName(CONCURRENT_BATCHES)),
+        channelJson.getInteger(jsonPropertyName(MIN_BATCH_SIZE)),
+        channelJson.getInteger(jsonPropertyName(MAX_BATCH_SIZE)),
+        channelJson.getString(jsonPropertyName(RECORD_IDENTIFIER_ELEMENT)));
   }
 
   @Override
@@ -120,7 +142,12 @@ public class Channel extends Entity {
         row.getValue(dbColumnName(LAST_HARVESTED)) != null
             ? formatDateTime(row.getLocalDateTime(dbColumnName(LAST_HARVESTED))) : null,
         row.getBoolean(dbColumnName(ENABLED)),
-        row.getBoolean(dbColumnName(LISTENING)))
+        row.getBoolean(dbColumnName(LISTENING)),
+        row.getInteger(dbColumnName(TRANSFORMATION_WORKERS)),
+        row.getInteger(dbColumnName(CONCURRENT_BATCHES)),
+        row.getInteger(dbColumnName(MIN_BATCH_SIZE)),
+        row.getInteger(dbColumnName(MAX_BATCH_SIZE)),
+        row.getString(dbColumnName(RECORD_IDENTIFIER_ELEMENT)))
         .withMetadata(row);
   }
 
@@ -139,6 +166,11 @@ public class Channel extends Entity {
           parameters.put(dbColumnName(LAST_HARVESTED), rec.lastHarvested());
           parameters.put(dbColumnName(ENABLED), rec.enabled());
           parameters.put(dbColumnName(LISTENING), rec.listening());
+          parameters.put(dbColumnName(TRANSFORMATION_WORKERS), rec.transformationWorkers());
+          parameters.put(dbColumnName(CONCURRENT_BATCHES), rec.concurrentBatches());
+          parameters.put(dbColumnName(MIN_BATCH_SIZE), rec.minBatchSize());
+          parameters.put(dbColumnName(MAX_BATCH_SIZE), rec.maxBatchSize());
+          parameters.put(dbColumnName(RECORD_IDENTIFIER_ELEMENT), rec.recordIdentifierElement());
           putMetadata(parameters);
           return parameters;
         });
@@ -159,6 +191,11 @@ public class Channel extends Entity {
     json.put(jsonPropertyName(ENABLED), theRecord.enabled());
     json.put(PROPERTY_COMMISSIONED, isCommissioned());
     json.put(jsonPropertyName(LISTENING), theRecord.listening());
+    putIfNotNull(json, jsonPropertyName(TRANSFORMATION_WORKERS), theRecord.transformationWorkers());
+    putIfNotNull(json, jsonPropertyName(CONCURRENT_BATCHES), theRecord.concurrentBatches());
+    putIfNotNull(json, jsonPropertyName(MIN_BATCH_SIZE), theRecord.minBatchSize());
+    putIfNotNull(json, jsonPropertyName(MAX_BATCH_SIZE), theRecord.maxBatchSize());
+    putIfNotNull(json, jsonPropertyName(RECORD_IDENTIFIER_ELEMENT), theRecord.recordIdentifierElement());
     json.put("queuedFiles", queueLength);
     json.put("fileInProcess", nameOfProcessingFile);
 
@@ -188,6 +225,47 @@ public class Channel extends Entity {
     return theRecord == null ? null : theRecord.lastHarvested();
   }
 
+  /**
+   * Number of threads to run the channel's XSLT transformations on. Defaults to one (sequential transformation).
+   */
+  public int getTransformationWorkers() {
+    return theRecord == null || theRecord.transformationWorkers() == null
+        ? 1 : Math.max(1, theRecord.transformationWorkers());
+  }
+
+  /**
+   * Number of batches of records that may be upserting to Inventory at the same time. Defaults to one.
+   */
+  public int getConcurrentBatches() {
+    return theRecord == null || theRecord.concurrentBatches() == null
+        ? 1 : Math.max(1, theRecord.concurrentBatches());
+  }
+
+  /**
+   * Smallest number of records in a batch, when the batch size is adapted to the cost of upserting. Defaults to
+   * ten, never more than the max batch size.
+   */
+  public int getMinBatchSize() {
+    int min = theRecord == null || theRecord.minBatchSize() == null ? 10 : Math.max(1, theRecord.minBatchSize());
+    return Math.min(min, getMaxBatchSize());
+  }
+
+  /**
+   * Largest number of records in a batch. Defaults to one hundred.
+   */
+  public int getMaxBatchSize() {
+    return theRecord == null || theRecord.maxBatchSize() == null ? 100 : Math.max(1, theRecord.maxBatchSize());
+  }
+
+  /**
+   * Name of the XML element that identifies source records, if source records should be fingerprinted for skipping
+   * unchanged records, otherwise null.
+   */
+  public String getRecordIdentifierElement() {
+    return theRecord == null || theRecord.recordIdentifierElement() == null
+        || theRecord.recordIdentifierElement().isBlank() ? null : theRecord.recordIdentifierElement().trim();
+  }
+
   @Override
   public Future<Void> createDatabase(TenantPgPool pool) {
     return executeSqlStatements(pool,
@@ -204,12 +282,27 @@ public class Channel extends Entity {
             + field(LAST_HARVESTED).pgColumnDdl() + ", "
             + field(ENABLED).pgColumnDdl() + ", "
             + field(LISTENING).pgColumnDdl() + ", "
+            + field(TRANSFORMATION_WORKERS).pgColumnDdl() + ", "
+            + field(CONCURRENT_BATCHES).pgColumnDdl() + ", "
+            + field(MIN_BATCH_SIZE).pgColumnDdl() + ", "
+            + field(MAX_BATCH_SIZE).pgColumnDdl() + ", "
+            + field(RECORD_IDENTIFIER_ELEMENT).pgColumnDdl() + ", "
             + metadata.columnsDdl()
             + ")",
         "ALTER TABLE " + pool.getSchema() + "." + table()
             + " ADD COLUMN IF NOT EXISTS " + field(HARVEST_URL).pgColumnDdl(),
         "ALTER TABLE " + pool.getSchema() + "." + table()
-            + " ADD COLUMN IF NOT EXISTS " + field(LAST_HARVESTED).pgColumnDdl()
+            + " ADD COLUMN IF NOT EXISTS " + field(LAST_HARVESTED).pgColumnDdl(),
+        "ALTER TABLE " + pool.getSchema() + "." + table()
+            + " ADD COLUMN IF NOT EXISTS " + field(TRANSFORMATION_WORKERS).pgColumnDdl(),
+        "ALTER TABLE " + pool.getSchema() + "." + table()
+            + " ADD COLUMN IF NOT EXISTS " + field(CONCURRENT_BATCHES).pgColumnDdl(),
+        "ALTER TABLE " + pool.getSchema() + "." + table()
+            + " ADD COLUMN IF NOT EXISTS " + field(MIN_BATCH_SIZE).pgColumnDdl(),
+        "ALTER TABLE " + pool.getSchema() + "." + table()
+            + " ADD COLUMN IF NOT EXISTS " + field(MAX_BATCH_SIZE).pgColumnDdl(),
+        "ALTER TABLE " + pool.getSchema() + "." + table()
+            + " ADD COLUMN IF NOT EXISTS " + field(RECORD_IDENTIFIER_ELEMENT).pgColumnDdl()
     ).mapEmpty();
   }
 
@@ -243,7 +336,9 @@ public class Channel extends Entity {
       return Future.succeededFuture(0);
     }
     theRecord = new ChannelRecord(theRecord.id(), theRecord.name(), theRecord.tag(), theRecord.type(),
-        theRecord.transformationId(), theRecord.harvestUrl(), theRecord.lastHarvested(), enabled, listening);
+        theRecord.transformationId(), theRecord.harvestUrl(), theRecord.lastHarvested(), enabled, listening,
+        theRecord.transformationWorkers(), theRecord.concurrentBatches(), theRecord.minBatchSize(),
+        theRecord.maxBatchSize(), theRecord.recordIdentifierElement());
     return configStorage.updateEntity(this.withUpdatingUser(null),
         "UPDATE " + configStorage.schema() + "." + table()
             + " SET "
@@ -258,7 +353,9 @@ public class Channel extends Entity {
   public Future<Integer> setListening(boolean listening, EntityStorage configStorage) {
     theRecord = new ChannelRecord(theRecord.id(), theRecord.name(), theRecord.tag(), theRecord.type(),
         theRecord.transformationId(), theRecord.harvestUrl(), theRecord.lastHarvested(), theRecord.enabled(),
-        listening);
+        listening, theRecord.transformationWorkers(),
+        theRecord.concurrentBatches(), theRecord.minBatchSize(), theRecord.maxBatchSize(),
+        theRecord.recordIdentifierElement());
     return configStorage.updateEntity(this.withUpdatingUser(null),
         "UPDATE " + configStorage.schema() + "." + table()
             + " SET "
@@ -271,7 +368,9 @@ public class Channel extends Entity {
   public Future<Integer> setLastHarvested(String lastHarvested, EntityStorage configStorage) {
     theRecord = new ChannelRecord(theRecord.id(), theRecord.name(), theRecord.tag(), theRecord.type(),
         theRecord.transformationId(), theRecord.harvestUrl(), lastHarvested, theRecord.enabled(),
-        theRecord.listening());
+        theRecord.listening(), theRecord.transformationWorkers(),
+        theRecord.concurrentBatches(), theRecord.minBatchSize(), theRecord.maxBatchSize(),
+        theRecord.recordIdentifierElement());
     return configStorage.updateEntity(this.withUpdatingUser(null),
         "UPDATE " + configStorage.schema() + "." + table()
             + " SET "
@@ -283,5 +382,7 @@ public class Channel extends Entity {
 
   // Import config record, the entity data.
   public record ChannelRecord(UUID id, String name, String tag, String type, UUID transformationId,
-                              String harvestUrl, String lastHarvested, boolean enabled, boolean listening) {}
+                              String harvestUrl, String lastHarvested, boolean enabled, boolean listening,
+                              Integer transformationWorkers, Integer concurrentBatches, Integer minBatchSize,
+                              Integer maxBatchSize, String recordIdentifierElement) {}
 }
@@ -34,6 +34,15 @@ public final class DatabaseInit {
         .compose(na -> pool.query(createRecordFailureView(pool.getSchema())).execute())
         .compose(na -> pool.query(createJobLogsView(pool.getSchema())).execute())
         .compose(na -> pool.query(createSourceFile(pool.getSchema())).execute())
+        .compose(na -> pool.query(alterSourceFile(pool.getSchema())).execute())
+        .compose(na -> pool.query(alterSourceFileCheckpoint(pool.getSchema())).execute())
+        .compose(na -> pool.query(createSourceFileQueueIndex(pool.getSchema())).execute())
+        .compose(na -> pool.query(createSourceFilePayloadCleanup(pool.getSchema())).execute())
+        .compose(na -> pool.query("DROP TRIGGER IF EXISTS source_file_payload_cleanup ON "
+            + pool.getSchema() + "." + Tables.SOURCE_FILE).execute())
+        .compose(na -> pool.query(createSourceFilePayloadCleanupTrigger(pool.getSchema())).execute())
+        .compose(na -> pool.query(createChannelLease(pool.getSchema())).execute())
+        .compose(na -> pool.query(createRecordFingerprint(pool.getSchema())).execute())
         .mapEmpty();
   }
 
@@ -108,4 +117,78 @@ public final class DatabaseInit {
         + "   CHECK (processing IN (1)), "
         + "   UNIQUE (channel_id, processing)) ";
   }
+
+  /**
+   * Lets a source file be stored either inline, in `payload`, or streamed into a large object, in `payload_oid`.
+   */
+  public static String alterSourceFile(String schema) {
+    return "ALTER TABLE " + schema + "." + Tables.SOURCE_FILE
+        + " ALTER COLUMN payload DROP NOT NULL, "
+        + " ADD COLUMN IF NOT EXISTS payload_oid OID NULL ";
+  }
+
+  /**
+   * Records how far into the file in process the import got, so that an interrupted import can resume after the
+   * records that were already committed to Inventory.
+   */
+  public static String alterSourceFileCheckpoint(String schema) {
+    return "ALTER TABLE " + schema + "." + Tables.SOURCE_FILE
+        + " ADD COLUMN IF NOT EXISTS committed_records BIGINT NOT NULL DEFAULT 0, "
+        + " ADD COLUMN IF NOT EXISTS committed_batch BIGINT NOT NULL DEFAULT 0 ";
+  }
+
+  /**
+   * Supports looking up the file in process and the next file in the queue of a channel.
+   */
+  public static String createSourceFileQueueIndex(String schema) {
+    return "CREATE INDEX IF NOT EXISTS source_file_queue_idx ON " + schema + "." + Tables.SOURCE_FILE
+        + " (channel_id, processing, uploaded_date) INCLUDE (id)";
+  }
+
+  /**
+   * Deletes the large object of a source file when the file is deleted from the queue or gets a new payload,
+   * including deletes cascading from the channel.
+   */
+  public static String createSourceFilePayloadCleanup(String schema) {
+    return "CREATE OR REPLACE FUNCTION " + schema + ".unlink_source_file_payload() RETURNS TRIGGER AS $$ "
+        + " BEGIN "
+        + "   IF TG_OP = 'UPDATE' THEN "
+        + "     IF OLD.payload_oid IS NOT DISTINCT FROM NEW.payload_oid THEN "
+        + "       RETURN NULL; "
+        + "     END IF; "
+        + "   END IF; "
+        + "   PERFORM lo_unlink(lom.oid) FROM pg_largeobject_metadata lom WHERE lom.oid = OLD.payload_oid; "
+        + "   RETURN NULL; "
+        + " END; "
+        + " $$ LANGUAGE plpgsql";
+  }
+
+  public static String createSourceFilePayloadCleanupTrigger(String schema) {
+    return "CREATE TRIGGER source_file_payload_cleanup "
+        + " AFTER DELETE OR UPDATE OF payload_oid ON " + schema + "." + Tables.SOURCE_FILE
+        + " FOR EACH ROW EXECUTE FUNCTION " + schema + ".unlink_source_file_payload()";
+  }
+
+  /**
+   * Holds the lease of the module instance that runs the file listener of a channel.
+   */
+  public static String createChannelLease(String schema) {
+    return "CREATE TABLE IF NOT EXISTS " + schema + "." + Tables.CHANNEL_LEASE
+        + " ( channel_id UUID PRIMARY KEY CONSTRAINT channel_lease_channel_id_fkey REFERENCES "
+        +       schema + "." + Tables.CHANNEL + " (id) ON DELETE CASCADE, "
+        + "   owner TEXT NOT NULL, "
+        + "   expires TIMESTAMP NOT NULL) ";
+  }
+
+  /**
+   * Holds a hash of each source record imported through a channel, by the record's identifier in the source.
+   */
+  public static String createRecordFingerprint(String schema) {
+    return "CREATE TABLE IF NOT EXISTS " + schema + "." + Tables.RECORD_FINGERPRINT
+        + " ( channel_id UUID NOT NULL CONSTRAINT record_fingerprint_channel_id_fkey REFERENCES "
+        +       schema + "." + Tables.CHANNEL + " (id) ON DELETE CASCADE, "
+        + "   record_identifier TEXT NOT NULL, "
+        + "   fingerprint TEXT NOT NULL, "
+        + "   PRIMARY KEY (channel_id, record_identifier)) ";
+  }
 }
@@ -10,5 +10,7 @@ public enum Tables {
   STEP,
   TRANSFORMATION,
   TRANSFORMATION_STEP,
-  SOURCE_FILE
+  SOURCE_FILE,
+  CHANNEL_LEASE,
+  RECORD_FINGERPRINT
 }
@@ -6,6 +6,7 @@ import static org.folio.okapi.common.HttpResponse.responseText;
 
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
@@ -32,6 +33,8 @@ import org.folio.inventoryupdate.importing.service.delivery.fileimport.FileQueue
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.FileQueueDb;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.HarvestResult;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.HtmlDirectoryHarvester;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.SourceFilePayload;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.transformation.TemplatesCache;
 import org.folio.inventoryupdate.importing.service.delivery.respond.Channels;
 import org.folio.inventoryupdate.importing.service.delivery.respond.JobsAndMonitoring;
 import org.folio.inventoryupdate.importing.service.delivery.respond.LogPurging;
@@ -64,6 +67,7 @@ public class ImportService implements RouterCreator, TenantInitHooks {
     validatingHandler(vertx, routerBuilder, "putChannel", Channels::putChannel);
     validatingHandler(vertx, routerBuilder, "deleteChannel", Channels::deleteChannel);
     validatingHandler(vertx, routerBuilder, "initFileSystemQueue", Channels::initFileQueue);
+    validatingHandler(vertx, routerBuilder, "clearFingerprints", Channels::clearFingerprints);
     validatingHandler(vertx, routerBuilder, "commission", Channels::commission);
     validatingHandler(vertx, routerBuilder, "decommission", Channels::decommission);
     validatingHandler(vertx, routerBuilder, "listen", Channels::listen);
@@ -81,6 +85,7 @@ public class ImportService implements RouterCreator, TenantInitHooks {
     validatingHandler(vertx, routerBuilder, "deleteStep", Transformations::deleteStep);
     validatingHandler(vertx, routerBuilder, "getScript", Transformations::getScript);
     nonValidatingHandler(vertx, routerBuilder, "putScript", Transformations::putScript);
+    validatingHandler(vertx, routerBuilder, "getTemplatesCache", Transformations::getTemplatesCacheStats);
     validatingHandler(vertx, routerBuilder, "postTsa", Transformations::postTransformationStep);
     validatingHandler(vertx, routerBuilder, "getTsas", Transformations::getTransformationSteps);
     validatingHandler(vertx, routerBuilder, "getTsa", Transformations::getTransformationStepById);
@@ -106,7 +111,7 @@ public class ImportService implements RouterCreator, TenantInitHooks {
     validatingHandler(vertx, routerBuilder, "recoverInterruptedChannels", Channels::recoverChannels);
 
     // Importing
-    nonValidatingHandler(vertx, routerBuilder, "uploadXmlRecords", this::uploadXmlSourceFile);
+    streamingHandler(vertx, routerBuilder, "uploadXmlRecords", this::uploadXmlSourceFile);
     validatingHandler(vertx, routerBuilder, "harvestXmlRecords", this::fetchRemoteXmlSourceFiles);
     // Dry run
     nonValidatingHandler(vertx, routerBuilder, "echoTransformation", Transformations::tryTransformation);
@@ -146,6 +151,27 @@ public class ImportService implements RouterCreator, TenantInitHooks {
         }).addFailureHandler(this::routerExceptionResponse);
   }
 
+  /**
+   * For POSTing large bodies, which the handler reads as a stream. The request is paused until the handler
+   * starts reading it.
+   */
+  private void streamingHandler(Vertx vertx, RouterBuilder routerBuilder, String operation,
+                                Function<ServiceRequest, Future<Void>> method) {
+    routerBuilder.getRoute(operation).setDoValidation(false)
+        .addHandler(ctx -> {
+          ctx.request().pause();
+          try {
+            method.apply(new RequestUnvalidated(vertx, ctx)).onFailure(cause -> {
+              logger.error("Streaming handler failure {}: {}", operation, cause.getMessage());
+              exceptionResponse(cause, ctx);
+            });
+          } catch (Exception e) {  // exception thrown by method
+            logger.error("Streaming handler exception {}: {}", operation, e.getMessage(), e);
+            exceptionResponse(e, ctx);
+          }
+        }).addFailureHandler(this::routerExceptionResponse);
+  }
+
   private void exceptionResponse(Throwable cause, RoutingContext routingContext) {
     if (routingContext.response().headWritten()) {
       logger.error("Exception: {}  (response already sent)", cause.getMessage());
@@ -175,6 +201,17 @@ public class ImportService implements RouterCreator, TenantInitHooks {
     return FileQueueDb.get(request, channelId);
   }
 
+  @Override
+  public Future<Void> preInit(Vertx vertx, String tenant, JsonObject tenantAttributes) {
+    if (Boolean.TRUE.equals(tenantAttributes.getBoolean("purge"))) {
+      return FileListeners.clearRegistry(tenant)
+          .compose(na -> SourceFilePayload.unlinkAll(new EntityStorage(vertx, tenant).getTenantPool()))
+          .onSuccess(count -> logger.info("Deleted {} source file payloads of tenant '{}' before purge", count, tenant))
+          .mapEmpty();
+    }
+    return Future.succeededFuture();
+  }
+
   @Override
   public Future<Void> postInit(Vertx vertx, String tenant, JsonObject tenantAttributes) {
     return new EntityStorage(vertx, tenant).init(tenantAttributes).onFailure(x ->
@@ -183,6 +220,7 @@ public class ImportService implements RouterCreator, TenantInitHooks {
         .compose(x ->
             clearTenantFileQueues(vertx, tenant, getTenantParameter(tenantAttributes, "clearPastFileQueues")))
         .compose(na -> FileListeners.clearRegistry(tenant))
+        .onSuccess(na -> TemplatesCache.clear(tenant))
         .compose(x -> loadSample(vertx, tenant, getTenantParameter(tenantAttributes, "loadSample")));
   }
 
@@ -297,15 +335,17 @@ public class ImportService implements RouterCreator, TenantInitHooks {
     final long fileStartTime = System.nanoTime();
     String channelId = request.requestParam("id");
     String fileName = request.queryParam("filename", UUID.randomUUID() + ".xml");
-    String payload = request.bodyAsString();
+    HttpServerRequest payload = request.routingContext.request();
     String timeStamp = SettableClock.getLocalDateTime()
         .format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss,SSS"));
 
     return getChannelByTagOrUuid(request, channelId).compose(channel -> {
       if (channel == null) {
+        payload.resume();
         return responseText(request.routingContext, 404)
             .end("Could not find channel with id or tag [" + channelId + "] to upload file to.").mapEmpty();
       } else if (!channel.isEnabled()) {
+        payload.resume();
         return responseText(request.routingContext, 403)
             .end("The channel with id or tag [" + channelId + "] is not ready to accept files.").mapEmpty();
       } else if (channel.isCommissioned()) {
@@ -3,6 +3,10 @@ package org.folio.inventoryupdate.importing.service.delivery.fileimport;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.upsertclient.InventoryUpdateClient;
 
 public class BatchOfRecords {
@@ -10,15 +14,24 @@ public class BatchOfRecords {
   private final boolean lastBatchOfFile;
   private final ArrayList<ProcessingRecord> batch;
 
-  private ProcessingRecord deletingRecord;
+  private final List<ProcessingRecord> deletingRecords;
   private InventoryUpdateClient.UpdateResponse updateResponse;
   private final long batchNumber;
+  private Set<String> hrids;
+  private boolean mayMoveRecords = true;
 
-  public BatchOfRecords(ArrayList<ProcessingRecord> processingRecords, boolean lastBatchOfFile, long batchNumber) {
-    if (!processingRecords.isEmpty() && processingRecords.getLast().isDeletion()) {
-      deletingRecord = processingRecords.removeLast();
-    }
+  /**
+   * Constructor.
+   *
+   * @param processingRecords records to upsert
+   * @param deletingRecords   records to delete, after the upserts
+   * @param lastBatchOfFile   true if this is the last batch of the source file
+   * @param batchNumber       number of the batch in the job
+   */
+  public BatchOfRecords(ArrayList<ProcessingRecord> processingRecords, List<ProcessingRecord> deletingRecords,
+                        boolean lastBatchOfFile, long batchNumber) {
     this.batch = processingRecords;
+    this.deletingRecords = deletingRecords;
     this.lastBatchOfFile = lastBatchOfFile;
     this.batchNumber = batchNumber;
   }
@@ -27,12 +40,38 @@ public class BatchOfRecords {
     return batchNumber;
   }
 
+  /**
+   * Gets the highest position in the source file of the records in the batch.
+   */
+  public long getLastSourcePosition() {
+    long position = 0;
+    for (ProcessingRecord processingRecord : batch) {
+      position = Math.max(position, processingRecord.getSourcePosition());
+    }
+    for (ProcessingRecord deletingRecord : deletingRecords) {
+      position = Math.max(position, deletingRecord.getSourcePosition());
+    }
+    return position;
+  }
+
   public boolean hasDeletingRecord() {
-    return deletingRecord != null;
+    return !deletingRecords.isEmpty();
+  }
+
+  /**
+   * Tells if upserting the batch may move holdings records or items from other instances. It's assumed that it may,
+   * unless the existing records of the batch were fetched and showed otherwise.
+   */
+  public boolean mayMoveRecords() {
+    return mayMoveRecords;
+  }
+
+  public void setMayMoveRecords(boolean mayMoveRecords) {
+    this.mayMoveRecords = mayMoveRecords;
   }
 
-  public ProcessingRecord getDeletingRecord() {
-    return deletingRecord;
+  public List<ProcessingRecord> getDeletingRecords() {
+    return deletingRecords;
   }
 
   public boolean isLastBatchOfFile() {
@@ -43,6 +82,33 @@ public class BatchOfRecords {
     return batch.size();
   }
 
+  /**
+   * Counts the instances, holdings records, and items in the batch.
+   */
+  public int countInventoryRecords() {
+    int count = 0;
+    for (ProcessingRecord processingRecord : batch) {
+      count += countInventoryRecords(processingRecord.getRecordAsJson());
+    }
+    return count;
+  }
+
+  /**
+   * Counts the instance, holdings records, and items of a record set, as a measure of the cost of upserting it.
+   */
+  static int countInventoryRecords(JsonObject recordSet) {
+    int count = 1;
+    JsonArray holdingsRecords = recordSet.getJsonArray("holdingsRecords");
+    if (holdingsRecords != null) {
+      for (Object holdings : holdingsRecords) {
+        count++;
+        JsonArray items = holdings instanceof JsonObject holdingsRecord ? holdingsRecord.getJsonArray("items") : null;
+        count += items == null ? 0 : items.size();
+      }
+    }
+    return count;
+  }
+
   public JsonObject getUpsertRequestBody() {
     return new JsonObject().put("inventoryRecordSets", getRecordsAsJsonArray());
   }
@@ -63,7 +129,113 @@ public class BatchOfRecords {
     return updateResponse.getErrors();
   }
 
+  /**
+   * Gets the records to upsert that did not fail, according to the response. If a failure cannot be traced back
+   * to its record, none of the records are considered committed.
+   */
+  public List<ProcessingRecord> getCommittedUpserts() {
+    if (updateResponse == null || updateResponse.getErrors() == null || updateResponse.getErrors().isEmpty()) {
+      return batch;
+    }
+    Set<Integer> failed = new HashSet<>();
+    for (Object error : updateResponse.getErrors()) {
+      JsonObject requestJson = error instanceof JsonObject errorJson ? errorJson.getJsonObject("requestJson") : null;
+      JsonObject processing = requestJson == null ? null : requestJson.getJsonObject("processing");
+      if (processing == null || processing.getInteger("batchIndex") == null) {
+        return Collections.emptyList();
+      }
+      failed.add(processing.getInteger("batchIndex"));
+    }
+    List<ProcessingRecord> committed = new ArrayList<>();
+    for (int i = 0; i < batch.size(); i++) {
+      if (!failed.contains(i)) {
+        committed.add(batch.get(i));
+      }
+    }
+    return committed;
+  }
+
   public ProcessingRecord get(int index) {
     return batch.get(index);
   }
+
+  /**
+   * Checks if this batch touches any of the Inventory records that the other batch touches.
+   */
+  public boolean sharesHridsWith(BatchOfRecords other) {
+    return !Collections.disjoint(getHrids(), other.getHrids());
+  }
+
+  /**
+   * Gets HRIDs of the instances, holdings records, items, and related instances in the batch, including
+   * the instance to delete, if any. The HRIDs are prefixed with the record type.
+   */
+  public Set<String> getHrids() {
+    if (hrids == null) {
+      hrids = new HashSet<>();
+      for (ProcessingRecord processingRecord : batch) {
+        collectHrids(processingRecord.getRecordAsJson(), hrids);
+      }
+      for (ProcessingRecord deletingRecord : deletingRecords) {
+        JsonObject delete = deletingRecord.getRecordAsJson().getJsonObject("delete");
+        if (delete != null && delete.getString("hrid") != null) {
+          hrids.add("instance:" + delete.getString("hrid"));
+        }
+      }
+    }
+    return hrids;
+  }
+
+  private static void collectHrids(JsonObject recordSet, Set<String> hrids) {
+    collectUpsertHrids(recordSet, hrids);
+    JsonObject instanceRelations = recordSet.getJsonObject("instanceRelations");
+    if (instanceRelations != null) {
+      collectReferencedInstanceHrids(instanceRelations, hrids);
+    }
+  }
+
+  /**
+   * Collects HRIDs of the instance, holdings records, and items of the record set, prefixed with the record type.
+   * These must not be repeated in a batch.
+   */
+  static void collectUpsertHrids(JsonObject recordSet, Set<String> hrids) {
+    JsonObject instance = recordSet.getJsonObject("instance");
+    if (instance != null && instance.getString("hrid") != null) {
+      hrids.add("instance:" + instance.getString("hrid"));
+    }
+    JsonArray holdingsRecords = recordSet.getJsonArray("holdingsRecords");
+    if (holdingsRecords != null) {
+      for (Object holdings : holdingsRecords) {
+        JsonObject holdingsRecord = (JsonObject) holdings;
+        if (holdingsRecord.getString("hrid") != null) {
+          hrids.add("holdingsRecord:" + holdingsRecord.getString("hrid"));
+        }
+        JsonArray items = holdingsRecord.getJsonArray("items");
+        if (items != null) {
+          for (Object item : items) {
+            if (((JsonObject) item).getString("hrid") != null) {
+              hrids.add("item:" + ((JsonObject) item).getString("hrid"));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static void collectReferencedInstanceHrids(Object json, Set<String> hrids) {
+    if (json instanceof JsonObject object) {
+      for (String key : object.fieldNames()) {
+        Object value = object.getValue(key);
+        if (key.equals("hrid") && value instanceof String hrid) {
+          hrids.add("instance:" + hrid);
+        } else {
+          collectReferencedInstanceHrids(value, hrids);
+        }
+      }
+    } else if (json instanceof JsonArray array) {
+      for (Object element : array) {
+        collectReferencedInstanceHrids(element, hrids);
+      }
+    }
+  }
 }
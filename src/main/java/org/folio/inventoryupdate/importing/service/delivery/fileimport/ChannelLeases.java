@@ -0,0 +1,119 @@
+package org.folio.inventoryupdate.importing.service.delivery.fileimport;
+
+import io.vertx.core.Future;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.templates.SqlTemplate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.folio.inventoryupdate.importing.moduledata.database.Tables;
+import org.folio.tlib.postgres.TenantPgPool;
+
+/**
+ * Leases on channels, so that only one module instance at a time runs the file listener of a channel, when
+ * multiple instances share a database.
+ *
+ * <p/>An instance must hold the lease of a channel before deploying its file listener, and the listener renews
+ * the lease periodically for as long as it runs. If an instance fails, its leases expire, and any other instance
+ * that is watching for orphaned channels takes over their file listeners. Lease expiry is measured with the
+ * database clock, so the instances need not have synchronized clocks.
+ *
+ * <p/>Another instance only takes a lease once it has been expired for a grace period, while the owner stops its
+ * listener, and the import in progress, as soon as it fails to renew the lease or has not renewed it for longer
+ * than {@link #UNCONFIRMED_LIMIT_MS}. So the owner has stopped writing before a new owner resumes the file in
+ * process from its checkpoint.
+ */
+public final class ChannelLeases {
+
+  /**
+   * Identifies this module instance as the owner of leases.
+   */
+  public static final String INSTANCE_ID = UUID.randomUUID().toString();
+  public static final int LEASE_SECONDS = 30;
+  public static final long RENEWAL_INTERVAL_MS = 10000;
+  public static final long TAKEOVER_INTERVAL_MS = 15000;
+  public static final int GRACE_SECONDS = 10;
+  /**
+   * How long the owner keeps its listener running without a confirmed renewal, well before the lease expires.
+   */
+  public static final long UNCONFIRMED_LIMIT_MS = LEASE_SECONDS * 1000L - RENEWAL_INTERVAL_MS;
+
+  private ChannelLeases() {
+    throw new UnsupportedOperationException("Utility class");
+  }
+
+  /**
+   * Takes the lease of the channel, unless another instance holds a lease on it that has not been expired for the
+   * grace period. Extends the lease if this instance already holds it.
+   *
+   * @return true if this instance holds the lease
+   */
+  public static Future<Boolean> acquire(TenantPgPool pool, UUID channelId) {
+    return SqlTemplate.forUpdate(pool.getPool(),
+            "INSERT INTO " + table(pool) + " (channel_id, owner, expires) "
+                + " VALUES (#{channelId}, #{owner}, now() + INTERVAL '" + LEASE_SECONDS + " seconds') "
+                + onConflict())
+        .execute(Map.of("channelId", channelId, "owner", INSTANCE_ID))
+        .map(result -> result.rowCount() == 1);
+  }
+
+  /**
+   * Extends the lease held by this instance, provided that the channel still exists and is enabled.
+   *
+   * @return true if this instance still holds the lease, false if the listener of the channel should stop
+   */
+  public static Future<Boolean> renew(TenantPgPool pool, UUID channelId) {
+    return SqlTemplate.forUpdate(pool.getPool(),
+            "INSERT INTO " + table(pool) + " (channel_id, owner, expires) "
+                + " SELECT id, #{owner}, now() + INTERVAL '" + LEASE_SECONDS + " seconds' "
+                + "   FROM " + pool.getSchema() + "." + Tables.CHANNEL
+                + "   WHERE id = #{channelId} AND enabled "
+                + onConflict())
+        .execute(Map.of("channelId", channelId, "owner", INSTANCE_ID))
+        .map(result -> result.rowCount() == 1);
+  }
+
+  private static String onConflict() {
+    return " ON CONFLICT (channel_id) DO UPDATE SET owner = EXCLUDED.owner, expires = EXCLUDED.expires "
+        + "   WHERE " + Tables.CHANNEL_LEASE + ".owner = EXCLUDED.owner "
+        + "      OR " + Tables.CHANNEL_LEASE + ".expires < " + expiredBefore();
+  }
+
+  /**
+   * Gives up the lease of the channel if this instance holds it.
+   */
+  public static Future<Void> release(TenantPgPool pool, UUID channelId) {
+    return SqlTemplate.forUpdate(pool.getPool(),
+            "DELETE FROM " + table(pool) + " WHERE channel_id = #{channelId} AND owner = #{owner}")
+        .execute(Map.of("channelId", channelId, "owner", INSTANCE_ID))
+        .mapEmpty();
+  }
+
+  private static String expiredBefore() {
+    return "now() - INTERVAL '" + GRACE_SECONDS + " seconds'";
+  }
+
+  /**
+   * Finds enabled channels that no instance holds a lease on, or whose lease has been expired for the grace period.
+   */
+  public static Future<List<UUID>> orphanedChannels(TenantPgPool pool) {
+    return SqlTemplate.forQuery(pool.getPool(),
+            "SELECT channel.id FROM " + pool.getSchema() + "." + Tables.CHANNEL + " AS channel "
+                + " LEFT JOIN " + table(pool) + " AS lease ON lease.channel_id = channel.id "
+                + " WHERE channel.enabled AND (lease.channel_id IS NULL OR lease.expires < " + expiredBefore() + ")")
+        .execute(Collections.emptyMap())
+        .map(rows -> {
+          List<UUID> channelIds = new ArrayList<>();
+          for (Row row : rows) {
+            channelIds.add(row.getUUID("id"));
+          }
+          return channelIds;
+        });
+  }
+
+  private static String table(TenantPgPool pool) {
+    return pool.getSchema() + "." + Tables.CHANNEL_LEASE;
+  }
+}
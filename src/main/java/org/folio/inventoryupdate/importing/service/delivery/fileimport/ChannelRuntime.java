@@ -0,0 +1,153 @@
+package org.folio.inventoryupdate.importing.service.delivery.fileimport;
+
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.ThreadingModel;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The threads that the file listeners of all channels share, in the module's Vert.x instance.
+ *
+ * <p/>The listeners run their own, short tasks -- checking queues, renewing leases, reporting -- on one pool, and
+ * read and import source files on another, so that long-running imports cannot hold up the housekeeping of other
+ * channels. Each listener is a single verticle instance, which runs one task at a time, and imports one file at a
+ * time, so no channel takes more than one thread of each pool.
+ *
+ * <p/>Since importing a file holds a thread of the file import pool until the whole file is read, files are only
+ * handed to the pool once they are admitted to one of its threads. A tenant is admitted to at most a quota of the
+ * threads at a time, and when a thread is freed, the tenants with files waiting take turns at it, each tenant's
+ * files in order of arrival. So one busy tenant cannot starve the others.
+ *
+ * <p/>Listeners are deployed and undeployed individually, and undeploying one leaves the pools to the others.
+ */
+public final class ChannelRuntime {
+
+  private static final Logger logger = LogManager.getLogger("channel-runtime");
+  static final String LISTENER_POOL_NAME = "channel-listeners";
+  public static final int DEFAULT_LISTENER_POOL_SIZE = 4;
+  static final String FILE_IMPORT_POOL_NAME = "channel-file-imports";
+  // The number of source files that can be imported at the same time, across all channels and tenants.
+  public static final int DEFAULT_FILE_IMPORT_POOL_SIZE = 8;
+  // The number of source files that one tenant can import at the same time, across its channels.
+  public static final int DEFAULT_FILE_IMPORTS_PER_TENANT = 6;
+  static final long MAX_EXECUTE_MINUTES = 10;
+
+  private static int listenerPoolSize = DEFAULT_LISTENER_POOL_SIZE;
+  private static int fileImportPoolSize = DEFAULT_FILE_IMPORT_POOL_SIZE;
+  private static int fileImportsPerTenant = DEFAULT_FILE_IMPORTS_PER_TENANT;
+  // Admission to the file import pool: files importing per tenant, and files waiting per tenant, in turn order.
+  private static final Map<String, Integer> IMPORTING = new HashMap<>();
+  private static final LinkedHashMap<String, Deque<Runnable>> WAITING = new LinkedHashMap<>();
+  private static int importing = 0;
+
+  private ChannelRuntime() {
+    throw new UnsupportedOperationException("Utility class");
+  }
+
+  /**
+   * Sets the sizes of the pools, and how many threads of the file import pool a tenant can hold at a time. Takes
+   * effect for pools created after the call, so should be called before any listeners are deployed.
+   */
+  public static synchronized void configure(int listenerThreads, int fileImportThreads, int fileImportsByTenant) {
+    listenerPoolSize = Math.max(1, listenerThreads);
+    fileImportPoolSize = Math.max(1, fileImportThreads);
+    fileImportsPerTenant = Math.max(1, Math.min(fileImportsByTenant, fileImportPoolSize));
+    logger.info("Channel listeners share {} threads, and import files on {} threads, at most {} per tenant",
+        listenerPoolSize, fileImportPoolSize, fileImportsPerTenant);
+  }
+
+  /**
+   * Options for deploying a file listener on the shared listener pool.
+   */
+  static synchronized DeploymentOptions listenerDeploymentOptions() {
+    return new DeploymentOptions()
+        .setInstances(1)
+        .setThreadingModel(ThreadingModel.WORKER)
+        .setWorkerPoolName(LISTENER_POOL_NAME)
+        .setWorkerPoolSize(listenerPoolSize)
+        .setMaxWorkerExecuteTime(MAX_EXECUTE_MINUTES)
+        .setMaxWorkerExecuteTimeUnit(TimeUnit.MINUTES);
+  }
+
+  /**
+   * Gets a handle on the shared pool for importing files. The handle should be closed by the listener when it
+   * stops, which releases the pool once no listener uses it.
+   */
+  static synchronized WorkerExecutor fileImportExecutor(Vertx vertx) {
+    return vertx.createSharedWorkerExecutor(FILE_IMPORT_POOL_NAME, fileImportPoolSize,
+        MAX_EXECUTE_MINUTES, TimeUnit.MINUTES);
+  }
+
+  /**
+   * Waits for a thread of the file import pool to import a file for the tenant. The thread must be given back
+   * with {@link #releaseFileImport(String)} when the file is read.
+   *
+   * @param context the context of the listener, which the returned future completes on
+   * @return a future that completes when the file is admitted to the pool
+   */
+  public static Future<Void> admitFileImport(Context context, String tenant) {
+    Promise<Void> admitted = Promise.promise();
+    Runnable admit = () -> context.runOnContext(na -> admitted.complete());
+    synchronized (ChannelRuntime.class) {
+      WAITING.computeIfAbsent(tenant, t -> new ArrayDeque<>()).add(admit);
+      admitNext();
+    }
+    return admitted.future();
+  }
+
+  /**
+   * Gives back a thread of the file import pool, admitting a waiting file of the next tenant in turn.
+   */
+  public static synchronized void releaseFileImport(String tenant) {
+    importing--;
+    IMPORTING.merge(tenant, -1, Integer::sum);
+    admitNext();
+  }
+
+  /**
+   * Admits waiting files while there are free threads, taking the tenants in turn, and sending a tenant to the back
+   * of the line when one of its files is admitted.
+   */
+  private static void admitNext() {
+    boolean admitted = true;
+    while (admitted && importing < fileImportPoolSize) {
+      admitted = false;
+      Iterator<Map.Entry<String, Deque<Runnable>>> tenants = WAITING.entrySet().iterator();
+      while (tenants.hasNext()) {
+        Map.Entry<String, Deque<Runnable>> waiting = tenants.next();
+        String tenant = waiting.getKey();
+        if (IMPORTING.getOrDefault(tenant, 0) < fileImportsPerTenant) {
+          Runnable admit = waiting.getValue().poll();
+          tenants.remove();
+          if (!waiting.getValue().isEmpty()) {
+            WAITING.put(tenant, waiting.getValue());
+          }
+          importing++;
+          IMPORTING.merge(tenant, 1, Integer::sum);
+          admit.run();
+          admitted = true;
+          break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the number of files importing for the tenant.
+   */
+  public static synchronized int fileImportsOf(String tenant) {
+    return IMPORTING.getOrDefault(tenant, 0);
+  }
+}
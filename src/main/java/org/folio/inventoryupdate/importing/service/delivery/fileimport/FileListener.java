@@ -1,14 +1,12 @@
 package org.folio.inventoryupdate.importing.service.delivery.fileimport;
 
-import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
-import io.vertx.core.ThreadingModel;
 import io.vertx.core.VerticleBase;
 import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
 import io.vertx.ext.web.RoutingContext;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -25,6 +23,7 @@ public abstract class FileListener extends VerticleBase {
   protected FileQueue fileQueue;
   protected Vertx deploymentVertx;
   protected String deploymentId;
+  private WorkerExecutor fileImportExecutor;
 
   // For demarcating jobs by start/end
   protected AtomicBoolean fileQueuePassive = new AtomicBoolean(true);
@@ -35,6 +34,7 @@ public abstract class FileListener extends VerticleBase {
 
   public void updateChannel(Channel channel) {
     this.channel = channel;
+    wakeUp();
   }
 
   public UUID getConfigId() {
@@ -55,6 +55,11 @@ public abstract class FileListener extends VerticleBase {
 
   public abstract void listen();
 
+  /**
+   * Makes the listener check the file queue right away, rather than at its next periodic check.
+   */
+  public abstract void wakeUp();
+
   /**
    * Gets existing file processor or instantiates a new one.
    *
@@ -76,6 +81,10 @@ public abstract class FileListener extends VerticleBase {
    *   <li>except, if there is no promoted file and no files in queue: returns null.</li>
    */
   public Future<SourceFile> getNextFileIfPossible(boolean fileQueuePassive, boolean processorResuming) {
+    if (!fileQueuePassive && !processorResuming) {
+      // Promotion checks for a file in process itself.
+      return fileQueue.promoteAndGetNextFileIfPossible();
+    }
     return fileQueue.hasFileInProcess()
         .compose(inProcess -> {
           if (inProcess && (fileQueuePassive || processorResuming)) {
@@ -94,31 +103,43 @@ public abstract class FileListener extends VerticleBase {
     return deploymentVertx.undeploy(deploymentId);
   }
 
+  /**
+   * Gets the shared pool for reading and importing source files, available while the listener is deployed.
+   */
+  public WorkerExecutor getFileImportExecutor() {
+    return fileImportExecutor;
+  }
+
+  @Override
+  public Future<?> start() throws Exception {
+    fileImportExecutor = ChannelRuntime.fileImportExecutor(vertx);
+    return super.start();
+  }
+
+  @Override
+  public Future<?> stop() throws Exception {
+    if (fileImportExecutor != null) {
+      fileImportExecutor.close();
+    }
+    return super.stop();
+  }
+
   public Future<String> deploy() {
     Promise<String> promise = Promise.promise();
-    // Use new Vertx so that we can close it -- if the channel is removed again -- without closing the Okapi client
-    // for all other requests (it's the underlying Vert.X WebClient that we avoid closing, to be accurate).
-    // Creating a new Vertx will give us a warning in the logs.
-    deploymentVertx = Vertx.vertx();
-    deploymentVertx.deployVerticle(this,
-        new DeploymentOptions()
-            .setWorkerPoolSize(4)
-            .setInstances(1)
-            .setMaxWorkerExecuteTime(10)
-            .setThreadingModel(ThreadingModel.WORKER)
-            .setMaxWorkerExecuteTimeUnit(TimeUnit.MINUTES)).onComplete(started -> {
-              if (started.succeeded()) {
-                deploymentId = started.result();
-                logger.info("Started verticle [{}] on Vertx {} for [{}] and channel [{}].",
-                    started.result(), deploymentVertx, tenant, channel.getRecord().name());
-                promise.complete("Started verticle [" + started.result() + "] for channel ID ["
-                    + channel.getRecord().name() + "].");
-              } else {
-                logger.error("Couldn't start file processor verticle for tenant [{}] and channel ID [{}].",
-                    tenant, channel.getRecord().name());
-                promise.fail("Couldn't launch file processor for channel [" + channel.getRecord().name() + "].");
-              }
-            });
+    // The listeners of all channels share the module's Vertx and the pools of the channel runtime.
+    deploymentVertx.deployVerticle(this, ChannelRuntime.listenerDeploymentOptions()).onComplete(started -> {
+      if (started.succeeded()) {
+        deploymentId = started.result();
+        logger.info("Started verticle [{}] on Vertx {} for [{}] and channel [{}].",
+            started.result(), deploymentVertx, tenant, channel.getRecord().name());
+        promise.complete("Started verticle [" + started.result() + "] for channel ID ["
+            + channel.getRecord().name() + "].");
+      } else {
+        logger.error("Couldn't start file processor verticle for tenant [{}] and channel ID [{}].",
+            tenant, channel.getRecord().name());
+        promise.fail("Couldn't launch file processor for channel [" + channel.getRecord().name() + "].");
+      }
+    });
     return promise.future();
   }
 }
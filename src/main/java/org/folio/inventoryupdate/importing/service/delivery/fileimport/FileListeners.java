@@ -13,6 +13,7 @@ import org.folio.inventoryupdate.importing.moduledata.Channel;
 import org.folio.inventoryupdate.importing.moduledata.ImportJob;
 import org.folio.inventoryupdate.importing.service.ImportService;
 import org.folio.inventoryupdate.importing.service.ServiceRequest;
+import org.folio.tlib.postgres.TenantPgPool;
 
 public final class FileListeners {
 
@@ -20,6 +21,9 @@ public final class FileListeners {
 
   private static final ConcurrentMap<String, ConcurrentMap<UUID, FileListener>> FILE_LISTENERS
       = new ConcurrentHashMap<>();
+  // Per tenant, the latest request that deployed a listener, and the timer watching for orphaned channels.
+  private static final ConcurrentMap<String, ServiceRequest> TAKEOVER_REQUESTS = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<String, Long> TAKEOVER_TIMERS = new ConcurrentHashMap<>();
 
   private FileListeners() {
     throw new UnsupportedOperationException("Utility class");
@@ -45,29 +49,121 @@ public final class FileListeners {
       return Future.succeededFuture("No channel provided to deploy.");
     } else {
       boolean retainQueueIfAny = "true".equalsIgnoreCase(request.requestParam("retainQueue"));
-      FileQueue fq = ImportService.getFileQueue(request, channel.getId());
       // Request parameter can override what is set on the channel record
       boolean listening = request.requestParam("listening") == null
           ? channel.isListeningIfEnabled()
           : !"false".equalsIgnoreCase(request.requestParam("listening"));
-      FileListener fileListener = FileListeners.getFileListener(request.tenant(), channel.getId());
-      if (fileListener == null) {
-        FileListener listenerVerticle = addFileListener(request.tenant(), channel.getId(),
-            new XmlFileListener(request, channel));
-        return channel.setEnabledListening(true, listening, request.entityStorage())
-            .compose(na -> fq.initialize(retainQueueIfAny).mapEmpty())
-            .compose(na -> new ImportJob().changeRunningToInterruptedByChannelId(request.entityStorage(),
-                channel.getId()))
-            .compose(jobsInterrupted -> {
-              String jobsMarkedInterrupted = jobsInterrupted > 0
-                  ? jobsInterrupted + " previous job was marked 'RUNNING', now marked 'INTERRUPTED'. " : "";
-              return listenerVerticle.deploy().map(resp -> jobsMarkedInterrupted + resp);
-            });
-      } else {
-        return Future.succeededFuture(
-            "File listener already commissioned for channel [" + channel.getName() + "].");
-      }
+      // Whichever instance runs the listener, the channel is enabled, with the requested listening state, which
+      // the instance holding the lease picks up when renewing it.
+      return channel.setEnabledListening(true, listening, request.entityStorage())
+          .compose(na -> deployIfLeased(request, channel, retainQueueIfAny));
+    }
+  }
+
+  /**
+   * Deploys the listener if this module instance gets the lease of the channel. If another instance holds the
+   * lease, files pushed to the channel's queue are picked up by the listener of that instance, and this instance
+   * watches for the lease to expire, to take over the channel if the other instance goes down.
+   */
+  private static Future<String> deployIfLeased(ServiceRequest request, Channel channel, boolean retainQueueIfAny) {
+    FileListener deployed = FileListeners.getFileListener(request.tenant(), channel.getId());
+    if (deployed != null) {
+      deployed.updateChannel(channel);
+      return Future.succeededFuture(
+          "File listener already commissioned for channel [" + channel.getName() + "].");
+    }
+    watchForOrphanedChannels(request);
+    return ChannelLeases.acquire(request.entityStorage().getTenantPool(), channel.getId())
+        .compose(leased -> {
+          if (!leased) {
+            return Future.succeededFuture("File listener for channel [" + channel.getName()
+                + "] is commissioned on another module instance.");
+          }
+          FileListener fileListener = FileListeners.getFileListener(request.tenant(), channel.getId());
+          if (fileListener != null) {
+            fileListener.updateChannel(channel);
+            return Future.succeededFuture(
+                "File listener already commissioned for channel [" + channel.getName() + "].");
+          }
+          FileQueue fq = ImportService.getFileQueue(request, channel.getId());
+          FileListener listenerVerticle = addFileListener(request.tenant(), channel.getId(),
+              new XmlFileListener(request, channel));
+          return fq.initialize(retainQueueIfAny)
+              .compose(na -> new ImportJob().changeRunningToInterruptedByChannelId(request.entityStorage(),
+                  channel.getId()))
+              .compose(jobsInterrupted -> {
+                String jobsMarkedInterrupted = jobsInterrupted > 0
+                    ? jobsInterrupted + " previous job was marked 'RUNNING', now marked 'INTERRUPTED'. " : "";
+                return listenerVerticle.deploy().map(resp -> jobsMarkedInterrupted + resp);
+              })
+              .onFailure(e -> {
+                FILE_LISTENERS.get(request.tenant()).remove(channel.getId(), listenerVerticle);
+                ChannelLeases.release(request.entityStorage().getTenantPool(), channel.getId());
+              });
+        });
+  }
+
+  /**
+   * Periodically looks for enabled channels whose lease has expired, for example because the module instance
+   * running their listeners went down, and deploys their listeners in this instance, with the queues retained.
+   * The latest request that deployed, or tried to deploy, a listener provides the tenant context for the listeners
+   * taken over.
+   */
+  private static void watchForOrphanedChannels(ServiceRequest request) {
+    String tenant = request.tenant();
+    TAKEOVER_REQUESTS.put(tenant, request);
+    TAKEOVER_TIMERS.computeIfAbsent(tenant, t -> request.vertx().setPeriodic(ChannelLeases.TAKEOVER_INTERVAL_MS,
+        id -> takeOverOrphanedChannels(tenant)));
+  }
+
+  /**
+   * Deploys the listeners of the tenant's orphaned channels in this instance, if this instance is watching for
+   * orphaned channels of the tenant.
+   */
+  public static Future<Void> takeOverOrphanedChannels(String tenant) {
+    ServiceRequest request = TAKEOVER_REQUESTS.get(tenant);
+    if (request == null) {
+      return Future.succeededFuture();
     }
+    return ChannelLeases.orphanedChannels(request.entityStorage().getTenantPool())
+        .compose(channelIds -> {
+          List<Future<String>> takeovers = new ArrayList<>();
+          for (UUID channelId : channelIds) {
+            takeovers.add(new Channel().withTenant(request.tenant()).getById(channelId, request.entityStorage())
+                .map(Channel.class::cast)
+                .compose(channel -> channel == null
+                    ? Future.succeededFuture("")
+                    : deployIfLeased(request, channel, true)
+                    .onSuccess(response -> logger.info("Took over channel [{}]: {}", channel.getName(), response))));
+          }
+          return Future.join(takeovers);
+        })
+        .onFailure(e -> logger.error("Error taking over orphaned channels for tenant {}: {}",
+            request.tenant(), e.getMessage()))
+        .mapEmpty();
+  }
+
+  /**
+   * Removes the listener of a channel that this instance no longer holds the lease of, or could not renew the lease
+   * of, for example because the channel was decommissioned through another module instance. Aborts the import in
+   * progress, leaving the file in process for the next owner to resume from its checkpoint, and gives up the lease
+   * right away, if still held, so that the next owner needn't wait for it to expire.
+   */
+  static Future<Void> standDown(String tenant, UUID channelId, TenantPgPool pool, String reason) {
+    ConcurrentMap<UUID, FileListener> listeners = FILE_LISTENERS.get(tenant);
+    FileListener fileListener = listeners == null ? null : listeners.remove(channelId);
+    if (fileListener == null) {
+      return Future.succeededFuture();
+    }
+    logger.info("{} for channel [{}] of tenant [{}], stopping its file listener.", reason, channelId, tenant);
+    FileProcessor fileProcessor = fileListener.getProcessor();
+    if (fileProcessor != null && !fileProcessor.paused()) {
+      fileProcessor.abort(reason + ", import stopped by this module instance.");
+    }
+    return ChannelLeases.release(pool, channelId)
+        .onFailure(e -> logger.warn("Could not release lease of channel [{}]: {}", channelId, e.getMessage()))
+        .recover(e -> Future.succeededFuture())
+        .compose(na -> fileListener.undeploy());
   }
 
   /**
@@ -85,10 +181,20 @@ public final class FileListeners {
     if (fileListener != null) {
       return channel.setEnabledListening(false, channel.isListeningIfEnabled(), request.entityStorage())
           .compose(na -> fileListener.undeploy())
+          .compose(na -> ChannelLeases.release(request.entityStorage().getTenantPool(), channel.getId()))
           .map(na -> {
             ImportService.getFileQueue(request, channel.getId()).initialize(retainQueue);
             return FILE_LISTENERS.get(request.tenant()).remove(channel.getId());
           }).map("Channel decommissioned." + channel.getRecord().name());
+    } else if (channel.isEnabled()) {
+      // The listener runs in another module instance, which stops it when failing to renew the lease.
+      return channel.setEnabledListening(false, channel.isListeningIfEnabled(), request.entityStorage())
+          .map(na -> {
+            ImportService.getFileQueue(request, channel.getId()).initialize(retainQueue);
+            return "Channel decommissioned. " + channel.getRecord().name()
+                + " Its file listener on another module instance stops within "
+                + ChannelLeases.RENEWAL_INTERVAL_MS / 1000 + " seconds.";
+          });
     } else {
       return Future.succeededFuture(
           "Did not find channel [" + channel.getName() + "] in list of commissioned channels.");
@@ -102,6 +208,11 @@ public final class FileListeners {
    */
   public static Future<Void> clearRegistry(String tenant) {
     List<Future<Void>> undeployFutures = new ArrayList<>();
+    Long takeoverTimer = TAKEOVER_TIMERS.remove(tenant);
+    ServiceRequest takeoverRequest = TAKEOVER_REQUESTS.remove(tenant);
+    if (takeoverTimer != null && takeoverRequest != null) {
+      takeoverRequest.vertx().cancelTimer(takeoverTimer);
+    }
     if (FILE_LISTENERS.get(tenant) != null) {
       for (Map.Entry<UUID, FileListener> listener : FILE_LISTENERS.get(tenant).entrySet()) {
         FileListener fileListener = FILE_LISTENERS.get(tenant).get(listener.getKey());
@@ -5,6 +5,7 @@ import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.folio.inventoryupdate.importing.moduledata.ImportJob;
 import org.folio.inventoryupdate.importing.moduledata.database.EntityStorage;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.reporting.InventoryMetrics;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.reporting.Reporting;
 import org.folio.inventoryupdate.importing.utils.SettableClock;
 
@@ -63,6 +64,7 @@ public abstract class FileProcessor {
           importJob.logStatus(ImportJob.JobStatus.RUNNING, "", reporting.getRecordsProcessed(), configStorage);
           paused = false;
           isResuming(true);
+          fileListener.wakeUp();
           return Future.succeededFuture();
         });
   }
@@ -84,6 +86,31 @@ public abstract class FileProcessor {
     reporting.reportFileQueueStats(false);
   }
 
+  /**
+   * Stops importing without finishing the current file, because this module instance no longer holds the lease
+   * of the channel. Pending batches are skipped, and the file stays in the processing slot, for the instance that
+   * takes over the channel to resume it from its checkpoint.
+   */
+  public void abort(String reason) {
+    paused = true;
+    reporting.log(reason);
+    importJob.logStatus(ImportJob.JobStatus.INTERRUPTED, reason, reporting.getRecordsProcessed(), configStorage);
+  }
+
+  /**
+   * Counts a record that failed before the upsert and was skipped, to go on with the next record.
+   */
+  public void countFailedRecord() {
+    reporting.incrementRecordsProcessed(1);
+    reporting.incrementInventoryMetrics(InventoryMetrics.failedInstances(1));
+  }
+
+  /**
+   * Releases the resources of the processing pipeline, when the processor is replaced or its listener stopped.
+   */
+  public void close() {
+  }
+
   public Future<Boolean> fileQueueDone(boolean atEndOfCurrentFile) {
     return fileListener.queueIsEmpty()
         .compose(empty -> {
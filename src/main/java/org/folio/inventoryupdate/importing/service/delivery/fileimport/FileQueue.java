@@ -1,6 +1,8 @@
 package org.folio.inventoryupdate.importing.service.delivery.fileimport;
 
 import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
 
 public interface FileQueue {
 
@@ -8,6 +10,21 @@ public interface FileQueue {
 
   Future<Void> push(String fileName, String timeStamp, String payload);
 
+  /**
+   * Pushes a file to the queue as it is read from the stream, without holding the entire file in memory.
+   *
+   * @param payload the content of the file, paused until passed in here
+   */
+  Future<Void> push(String fileName, String timeStamp, ReadStream<Buffer> payload);
+
+  /**
+   * Sets a handler to call when a file is pushed to the queue, possibly from another module instance, or removes
+   * the handler if null.
+   *
+   * @return succeeded future if the queue will call the handler, failed future if the queue must be polled instead
+   */
+  Future<Void> onFilePushed(Runnable handler);
+
   Future<Boolean> hasFileInProcess();
 
   Future<Boolean> isEmpty();
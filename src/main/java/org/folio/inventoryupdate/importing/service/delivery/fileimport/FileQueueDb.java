@@ -1,7 +1,12 @@
 package org.folio.inventoryupdate.importing.service.delivery.fileimport;
 
 import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.pgclient.PgException;
 import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
 import io.vertx.sqlclient.templates.SqlTemplate;
 import io.vertx.sqlclient.templates.TupleMapper;
 import java.util.HashMap;
@@ -14,11 +19,14 @@ import org.folio.tlib.postgres.TenantPgPool;
 public final class FileQueueDb implements FileQueue {
 
   private static final String DATE_FORMAT = "YYYY-MM-DD''T''HH24:MI:SS,MS";
+  private static final String UNIQUE_VIOLATION = "23505";
   private final UUID channelId;
   private final TenantPgPool pool;
+  private final Vertx vertx;
 
   private FileQueueDb(ServiceRequest request, UUID channelId) {
     pool = request.entityStorage().getTenantPool();
+    vertx = request.vertx();
     this.channelId = channelId;
   }
 
@@ -49,7 +57,9 @@ public final class FileQueueDb implements FileQueue {
                 + "  TO_TIMESTAMP(#{timeStamp},'" + DATE_FORMAT + "'), #{payload} ) "
                 + " ON CONFLICT (file_name, channel_id) DO UPDATE "
                 + " SET uploaded_date = TO_TIMESTAMP(#{timeStamp},'" + DATE_FORMAT + "'), "
-                + "     payload = #{payload} ")
+                + "     payload = #{payload}, "
+                + "     payload_oid = NULL "
+                + " WHERE " + Tables.SOURCE_FILE + ".processing IS NULL ")
         .mapFrom(TupleMapper.mapper(
             fileData -> {
               Map<String, Object> parameters = new HashMap<>();
@@ -61,7 +71,44 @@ public final class FileQueueDb implements FileQueue {
               return parameters;
             }))
         .execute(payload)
-        .mapEmpty();
+        .compose(na -> FileQueueNotifications.notifyPush(pool, channelId));
+  }
+
+  @Override
+  public Future<Void> push(String fileName, String timeStamp, ReadStream<Buffer> payload) {
+    return SourceFilePayload.write(pool, payload)
+        .compose(payloadOid -> {
+          Map<String, Object> parameters = new HashMap<>();
+          parameters.put("id", UUID.randomUUID());
+          parameters.put("fileName", fileName);
+          parameters.put("timeStamp", timeStamp);
+          parameters.put("channelId", channelId);
+          parameters.put("payloadOid", payloadOid);
+          return SqlTemplate.forUpdate(pool.getPool(),
+                  "INSERT INTO " + pool.getSchema() + "." + Tables.SOURCE_FILE
+                      + " ( id, file_name, channel_id, uploaded_date, payload_oid ) "
+                      + " VALUES ( #{id}, #{fileName}, #{channelId}, "
+                      + "  TO_TIMESTAMP(#{timeStamp},'" + DATE_FORMAT + "'), #{payloadOid}::BIGINT::OID ) "
+                      + " ON CONFLICT (file_name, channel_id) DO UPDATE "
+                      + " SET uploaded_date = TO_TIMESTAMP(#{timeStamp},'" + DATE_FORMAT + "'), "
+                      + "     payload = NULL, "
+                      + "     payload_oid = #{payloadOid}::BIGINT::OID "
+                      + " WHERE " + Tables.SOURCE_FILE + ".processing IS NULL ")
+              .execute(parameters)
+              .compose(result -> {
+                if (result.rowCount() == 0) {
+                  // The same file is being processed, replacing its payload would break the ongoing import.
+                  SourceFilePayload.logger.warn("File {} is being processed, discarding the new upload", fileName);
+                  return SourceFilePayload.unlink(pool, payloadOid);
+                }
+                return FileQueueNotifications.notifyPush(pool, channelId);
+              });
+        });
+  }
+
+  @Override
+  public Future<Void> onFilePushed(Runnable handler) {
+    return FileQueueNotifications.onPush(vertx, pool, channelId, handler);
   }
 
   @Override
@@ -126,60 +173,56 @@ public final class FileQueueDb implements FileQueue {
     Map<String, Object> params = new HashMap<>();
     params.put("channelId", channelId);
     return SqlTemplate.forQuery(pool.getPool(),
-            "SELECT file_name, payload "
+            "SELECT file_name, payload_oid::BIGINT AS payload_oid, committed_records "
                 + " FROM " + pool.getSchema() + "." + Tables.SOURCE_FILE
                 + " WHERE channel_id = #{channelId} "
                 + "   AND processing = 1 ")
         .execute(params)
-        .compose(res -> {
-          if (res.iterator().hasNext()) {
-            Row row = res.stream().iterator().next();
-            SourceFile sf = new SourceFileDb(row.getString("file_name"), row.getString("payload"),
-                channelId, pool);
-            return Future.succeededFuture(sf);
-          } else {
-            return Future.succeededFuture(null);
-          }
-        });
+        .map(this::sourceFileOrNull);
   }
 
+  /**
+   * Promotes the oldest file in the queue in a single statement, which does nothing if another file is already
+   * in process. A file being promoted concurrently, by another module instance for example, is skipped rather
+   * than waited for, and the unique constraint on processing files makes the slower of two concurrent
+   * promotions fail, in which case no file is returned.
+   */
   @Override
   public Future<SourceFile> promoteAndGetNextFileIfPossible() {
-    return hasFileInProcess()
-        .compose(alreadyHasFileInProcess -> {
-          if (alreadyHasFileInProcess) {
+    Map<String, Object> params = new HashMap<>();
+    params.put("channelId", channelId);
+    String table = pool.getSchema() + "." + Tables.SOURCE_FILE;
+    return SqlTemplate.forQuery(pool.getPool(),
+            "UPDATE " + table
+                + " SET processing = 1 "
+                + " WHERE id = (SELECT id "
+                + "             FROM " + table
+                + "             WHERE channel_id = #{channelId} "
+                + "               AND processing IS NULL "
+                + "               AND NOT EXISTS (SELECT 1 FROM " + table
+                + "                               WHERE channel_id = #{channelId} AND processing = 1) "
+                + "             ORDER BY uploaded_date LIMIT 1 "
+                + "             FOR UPDATE SKIP LOCKED) "
+                + " RETURNING file_name, payload_oid::BIGINT AS payload_oid, committed_records")
+        .execute(params)
+        .map(this::sourceFileOrNull)
+        .recover(e -> {
+          if (e instanceof PgException pgException && UNIQUE_VIOLATION.equals(pgException.getSqlState())) {
             return Future.succeededFuture(null);
-          } else {
-            Map<String, Object> params = new HashMap<>();
-            params.put("channelId", channelId);
-            return SqlTemplate.forUpdate(pool.getPool(),
-                "UPDATE " + pool.getSchema() + "." + Tables.SOURCE_FILE
-                    + " SET processing = 1 "
-                    + " WHERE id IN (SELECT id "
-                    + "              FROM " + pool.getSchema() + "." + Tables.SOURCE_FILE
-                    + "              WHERE channel_id = #{channelId}"
-                    + "                AND processing IS NULL "
-                    + "              ORDER BY uploaded_date LIMIT 1 )")
-                .execute(params)
-                .compose(na -> SqlTemplate.forQuery(pool.getPool(),
-                    "SELECT file_name, payload "
-                        + " FROM " + pool.getSchema() + "." + Tables.SOURCE_FILE
-                        + " WHERE channel_id = #{channelId} "
-                        + "   AND processing = 1 ")
-                    .execute(params)
-                    .compose(res -> {
-                      if (res.iterator().hasNext()) {
-                        Row row = res.iterator().next();
-                        return Future.succeededFuture(new SourceFileDb(
-                            row.getString("file_name"),
-                            row.getString("payload"),
-                            channelId,
-                            pool));
-                      } else {
-                        return Future.succeededFuture(null);
-                      }
-                    }));
           }
+          return Future.failedFuture(e);
         });
   }
+
+  /**
+   * Creates the source file from the row, without the payload, which is read when the file is processed.
+   */
+  private SourceFile sourceFileOrNull(RowSet<Row> rows) {
+    if (rows.iterator().hasNext()) {
+      Row row = rows.iterator().next();
+      return new SourceFileDb(row.getString("file_name"), null, row.getLong("payload_oid"), channelId, pool,
+          row.getLong("committed_records"));
+    }
+    return null;
+  }
 }
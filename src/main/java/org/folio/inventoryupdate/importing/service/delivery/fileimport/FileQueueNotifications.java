@@ -0,0 +1,153 @@
+package org.folio.inventoryupdate.importing.service.delivery.fileimport;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.pgclient.PgConnection;
+import io.vertx.sqlclient.templates.SqlTemplate;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.tlib.postgres.TenantPgPool;
+
+/**
+ * Postgres notifications about files pushed to the file queues of a tenant, so that file listeners can pick up
+ * new files as soon as they arrive instead of polling the queues.
+ *
+ * <p/>Pushing a file sends a NOTIFY with the channel ID as payload on a database channel for the tenant, named by
+ * a hash of the tenant's schema. Each tenant has one shared connection that LISTENs on that database channel and
+ * dispatches the notifications to the file listener of the channel, on any module instance using the same
+ * database. If the connection is lost, it is re-established after a delay, and the file listeners fall back on
+ * their periodic checks in the meantime.
+ */
+public final class FileQueueNotifications {
+
+  public static final Logger logger = LogManager.getLogger("queued-files-processing");
+  private static final long RECONNECT_DELAY_MS = 5000;
+  private static final String DATABASE_CHANNEL_PREFIX = "source_file_pushed_";
+  private static final ConcurrentMap<String, FileQueueNotifications> TENANTS = new ConcurrentHashMap<>();
+
+  private final Vertx vertx;
+  private final TenantPgPool pool;
+  private final String databaseChannel;
+  private final Map<UUID, Runnable> handlers = new ConcurrentHashMap<>();
+  private Future<PgConnection> connection;
+
+  private FileQueueNotifications(Vertx vertx, TenantPgPool pool) {
+    this.vertx = vertx;
+    this.pool = pool;
+    this.databaseChannel = databaseChannel(pool);
+  }
+
+  /**
+   * Names the tenant's database channel by a hash of the schema. Postgres truncates identifiers at 63 bytes, so a
+   * name containing a long schema name could be cut short, and then shared with another tenant's.
+   */
+  private static String databaseChannel(TenantPgPool pool) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(pool.getSchema().getBytes(StandardCharsets.UTF_8));
+      return DATABASE_CHANNEL_PREFIX + HexFormat.of().formatHex(digest, 0, 16);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  /**
+   * Notifies listeners, in this and other module instances, that a file was pushed to the channel's queue.
+   */
+  public static Future<Void> notifyPush(TenantPgPool pool, UUID channelId) {
+    return SqlTemplate.forQuery(pool.getPool(), "SELECT pg_notify(#{databaseChannel}, #{channelId})")
+        .execute(Map.of("databaseChannel", databaseChannel(pool), "channelId", channelId.toString()))
+        .onFailure(e -> logger.warn("Could not send notification about file pushed to queue of channel {}: {}",
+            channelId, e.getMessage()))
+        .<Void>mapEmpty()
+        // Listeners will find the file on their next periodic check.
+        .recover(e -> Future.succeededFuture());
+  }
+
+  /**
+   * Sets the handler for files pushed to the queue of a channel, or removes it if the handler is null.
+   *
+   * @return succeeded future when the tenant's connection is listening for notifications
+   */
+  public static Future<Void> onPush(Vertx vertx, TenantPgPool pool, UUID channelId, Runnable handler) {
+    FileQueueNotifications notifications =
+        TENANTS.computeIfAbsent(pool.getSchema(), schema -> new FileQueueNotifications(vertx, pool));
+    return notifications.setHandler(channelId, handler);
+  }
+
+  private synchronized Future<Void> setHandler(UUID channelId, Runnable handler) {
+    if (handler == null) {
+      handlers.remove(channelId);
+      if (handlers.isEmpty() && connection != null) {
+        Future<PgConnection> listening = connection;
+        connection = null;
+        listening.compose(conn -> conn.query("UNLISTEN *").execute().eventually(conn::close))
+            .onFailure(e -> logger.warn("Error closing notifications connection: {}", e.getMessage()));
+      }
+      return Future.succeededFuture();
+    }
+    handlers.put(channelId, handler);
+    return listen().mapEmpty();
+  }
+
+  private synchronized Future<PgConnection> listen() {
+    if (connection == null) {
+      Promise<PgConnection> attempt = Promise.promise();
+      connection = attempt.future();
+      pool.getPool().getConnection()
+          .map(PgConnection::cast)
+          .compose(conn -> {
+            conn.notificationHandler(notification -> {
+              if (databaseChannel.equals(notification.getChannel())) {
+                dispatch(notification.getPayload());
+              }
+            });
+            conn.closeHandler(na -> connectionLost(attempt.future()));
+            return conn.query("LISTEN \"" + databaseChannel + "\"").execute().map(conn);
+          })
+          .onSuccess(conn -> {
+            logger.info("Listening for notifications on {}", databaseChannel);
+            attempt.complete(conn);
+          })
+          .onFailure(e -> {
+            logger.error("Could not listen for notifications on {}: {}", databaseChannel, e.getMessage());
+            attempt.fail(e);
+            connectionLost(attempt.future());
+          });
+    }
+    return connection;
+  }
+
+  private void dispatch(String channelId) {
+    try {
+      Runnable handler = handlers.get(UUID.fromString(channelId));
+      if (handler != null) {
+        handler.run();
+      }
+    } catch (IllegalArgumentException iae) {
+      logger.warn("Unexpected payload in notification on {}: {}", databaseChannel, channelId);
+    }
+  }
+
+  private synchronized void connectionLost(Future<PgConnection> lost) {
+    if (connection != lost) {
+      return;
+    }
+    connection = null;
+    if (!handlers.isEmpty()) {
+      vertx.setTimer(RECONNECT_DELAY_MS, id -> {
+        if (!handlers.isEmpty()) {
+          listen();
+        }
+      });
+    }
+  }
+}
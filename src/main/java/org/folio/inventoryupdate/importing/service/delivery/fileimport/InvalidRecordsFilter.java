@@ -0,0 +1,82 @@
+package org.folio.inventoryupdate.importing.service.delivery.fileimport;
+
+import io.vertx.core.json.JsonArray;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.reporting.InventoryMetrics;
+import org.folio.inventoryupdate.updating.RequestValidation;
+import org.folio.inventoryupdate.updating.UpdatePlan;
+import org.folio.inventoryupdate.updating.UpdatePlanAllHRIDs;
+
+/**
+ * Validates transformed record sets the way the upsert validates a batch, before they are collected in batches, and
+ * reports the invalid ones as record failures instead of forwarding them. A single invalid record set would
+ * otherwise fail the validation of its batch as a whole, and make the batch fall back to upserting in parts.
+ * HRIDs repeated across record sets are not checked here, since the batch updater does not put record sets with
+ * the same HRIDs in the same batch.
+ */
+public class InvalidRecordsFilter implements RecordReceiver {
+
+  public static final Logger logger = LogManager.getLogger("InvalidRecordsFilter");
+  private final UpdatePlan validatingPlan = new UpdatePlanAllHRIDs();
+  private final RecordReceiver target;
+  private final FileProcessor fileProcessor;
+  private int recordsProcessed;
+  private long processingTime;
+
+  /**
+   * Constructor.
+   *
+   * @param target        the batch updater to forward valid records to
+   * @param fileProcessor the file processor, for reporting the invalid records
+   */
+  public InvalidRecordsFilter(RecordReceiver target, FileProcessor fileProcessor) {
+    this.target = target;
+    this.fileProcessor = fileProcessor;
+  }
+
+  @Override
+  public void startOfDocument() {
+    target.startOfDocument();
+  }
+
+  @Override
+  public void put(ProcessingRecord processingRecord) {
+    if (processingRecord == null || processingRecord.isDeletion()) {
+      target.put(processingRecord);
+      return;
+    }
+    recordsProcessed++;
+    long started = System.nanoTime();
+    RequestValidation validation =
+        validatingPlan.validateIncomingRecordSets(new JsonArray().add(processingRecord.getRecordAsJson()));
+    processingTime += System.nanoTime() - started;
+    if (validation.passed()) {
+      target.put(processingRecord);
+    } else {
+      logger.warn("Skipping invalid record: {}", validation.firstShortMessage());
+      fileProcessor.reporting.incrementRecordsProcessed(1);
+      fileProcessor.reporting.incrementInventoryMetrics(InventoryMetrics.invalidInstances(1));
+      fileProcessor.reporting.reportInvalidRecord(processingRecord, validation.errors)
+          .onFailure(e -> logger.error("Error logging invalid record: {}", e.getMessage()));
+    }
+  }
+
+  @Override
+  public void endOfDocument() {
+    target.endOfDocument();
+  }
+
+  /**
+   * Time spent validating records.
+   */
+  @Override
+  public long getProcessingTime() {
+    return processingTime;
+  }
+
+  @Override
+  public int getRecordsProcessed() {
+    return recordsProcessed;
+  }
+}
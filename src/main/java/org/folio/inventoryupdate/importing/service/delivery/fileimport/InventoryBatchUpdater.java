@@ -4,9 +4,13 @@ import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import org.apache.logging.log4j.LogManager;
@@ -14,18 +18,26 @@ import org.apache.logging.log4j.Logger;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.reporting.InventoryMetrics;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.upsertclient.InternalInventoryUpdateClient;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.upsertclient.InventoryUpdateClient;
+import org.folio.inventoryupdate.updating.entities.FetchedRecords;
 
 public class InventoryBatchUpdater implements RecordReceiver {
 
   public static final Logger logger = LogManager.getLogger("InventoryBatchUpdater");
   private FileProcessor fileProcessor;
   private final ArrayList<ProcessingRecord> records = new ArrayList<>();
+  private final ArrayList<ProcessingRecord> deletions = new ArrayList<>();
+  private final Set<String> deletedHrids = new HashSet<>();
+  private final Set<String> upsertHrids = new HashSet<>();
   private final InventoryUpdateClient updateClient;
-  private final Turnstile turnstile = new Turnstile();
+  private BatchWindow batchWindow = new BatchWindow(1);
+  private BatchSizing batchSizing = new BatchSizing(100, 100);
+  private int inventoryRecordsInBatch;
+  private final Checkpoints checkpoints = new Checkpoints();
+  private SourceFile sourceFile;
+  private RecordFingerprints fingerprints;
   private Promise<Void> fileFinished = Promise.promise();
   private long batchNumber;
 
-  private long processingTime;
   private int recordsProcessed;
 
   public InventoryBatchUpdater(RoutingContext routingContext) {
@@ -41,8 +53,59 @@ public class InventoryBatchUpdater implements RecordReceiver {
     return this;
   }
 
-  public Future<Void> startFile() {
-    records.clear();
+  /**
+   * Sets the number of batches that may be upserting at the same time.
+   */
+  public InventoryBatchUpdater withConcurrentBatches(int concurrentBatches) {
+    batchWindow = new BatchWindow(concurrentBatches);
+    return this;
+  }
+
+  /**
+   * Sets the bounds of the number of records per batch. Within the bounds, batches are sized to the cost of
+   * upserting them.
+   */
+  public InventoryBatchUpdater withBatchSizeBounds(int minBatchSize, int maxBatchSize) {
+    batchSizing = new BatchSizing(minBatchSize, maxBatchSize);
+    return this;
+  }
+
+  /**
+   * Sets the store to save fingerprints of committed source records to, for skipping them when they come again
+   * unchanged.
+   */
+  public InventoryBatchUpdater withFingerprints(RecordFingerprints recordFingerprints) {
+    fingerprints = recordFingerprints;
+    return this;
+  }
+
+  public int getBatchWindowSize() {
+    return batchWindow.size;
+  }
+
+  public int getBatchesInFlight() {
+    return batchWindow.occupancy();
+  }
+
+  public int getMaxBatchesInFlight() {
+    return batchWindow.peakOccupancy();
+  }
+
+  /**
+   * Number of batches that fetched existing records while waiting for batches in flight.
+   */
+  public int getPrefetchedBatches() {
+    return batchWindow.prefetches();
+  }
+
+  /**
+   * Prepares for the records of the file, which may be resumed from a checkpoint of an earlier import.
+   */
+  public Future<Void> startFile(SourceFile file) {
+    clearPendingBatch();
+    sourceFile = file;
+    checkpoints.startFile(file.getCheckpoint());
+    batchSizing.startFile();
     fileFinished = Promise.promise();
     return fileFinished.future();
   }
@@ -51,57 +114,94 @@ public class InventoryBatchUpdater implements RecordReceiver {
     fileFinished.tryFail(cause);
   }
 
+  /**
+   * Collects records in batches. Deletions are collected alongside upserts and run after the upserts of the
+   * batch, so an upsert of an instance that is to be deleted earlier in the batch starts a new batch, to keep the
+   * order of the source file. Likewise, a record set that repeats an instance, holdings, or item HRID of the pending
+   * batch starts a new batch, since a batch with repeated HRIDs would fail validation as a whole.
+   */
   @Override
   public void put(ProcessingRecord processingRecord) {
     if (processingRecord != null) {
       recordsProcessed++;
-      processingRecord.setBatchIndex(records.size());
-      records.add(processingRecord);
-      if (records.size() > 99 || processingRecord.isDeletion()) {
-        ArrayList<ProcessingRecord> copyOfRecords = new ArrayList<>(records);
-        records.clear();
-        if (!copyOfRecords.isEmpty()) {
-          batchNumber++;
+      if (processingRecord.isDeletion()) {
+        deletions.add(processingRecord);
+        JsonObject delete = processingRecord.getRecordAsJson().getJsonObject("delete");
+        if (delete != null && delete.getString("hrid") != null) {
+          deletedHrids.add(delete.getString("hrid"));
         }
-        if (fileProcessor.paused()) {
-          logger.info("Not releasing pending batch #{} because processing has been halted", batchNumber);
-        } else {
-          releaseBatch(new BatchOfRecords(copyOfRecords, false, batchNumber));
+        inventoryRecordsInBatch++;
+      } else {
+        Set<String> hrids = new HashSet<>();
+        BatchOfRecords.collectUpsertHrids(processingRecord.getRecordAsJson(), hrids);
+        if ((!deletedHrids.isEmpty() && deletedHrids.contains(instanceHrid(processingRecord)))
+            || !Collections.disjoint(upsertHrids, hrids)) {
+          releasePendingBatch();
         }
+        processingRecord.setBatchIndex(records.size());
+        records.add(processingRecord);
+        upsertHrids.addAll(hrids);
+        inventoryRecordsInBatch += BatchOfRecords.countInventoryRecords(processingRecord.getRecordAsJson());
+      }
+      if (batchSizing.isFull(records.size() + deletions.size(), inventoryRecordsInBatch)) {
+        releasePendingBatch();
       }
     } else { // a null record is the end-of-file signal, forward remaining records if any
       ArrayList<ProcessingRecord> copyOfRecords = new ArrayList<>(records);
-      records.clear();
-      if (!copyOfRecords.isEmpty()) {
+      ArrayList<ProcessingRecord> copyOfDeletions = new ArrayList<>(deletions);
+      clearPendingBatch();
+      if (!copyOfRecords.isEmpty() || !copyOfDeletions.isEmpty()) {
         batchNumber++;
       }
       if (fileProcessor.paused()) {
         logger.info("Skipping remaining pending batch ({} records) because processing has been halted",
-            copyOfRecords.size());
+            copyOfRecords.size() + copyOfDeletions.size());
         fileFinished.tryComplete();
       } else {
-        releaseBatch(new BatchOfRecords(copyOfRecords, true, batchNumber));
+        releaseBatch(new BatchOfRecords(copyOfRecords, copyOfDeletions, true, batchNumber));
       }
     }
   }
 
+  private void releasePendingBatch() {
+    ArrayList<ProcessingRecord> copyOfRecords = new ArrayList<>(records);
+    ArrayList<ProcessingRecord> copyOfDeletions = new ArrayList<>(deletions);
+    clearPendingBatch();
+    if (copyOfRecords.isEmpty() && copyOfDeletions.isEmpty()) {
+      return;
+    }
+    batchNumber++;
+    if (fileProcessor.paused()) {
+      logger.info("Not releasing pending batch #{} because processing has been halted", batchNumber);
+    } else {
+      releaseBatch(new BatchOfRecords(copyOfRecords, copyOfDeletions, false, batchNumber));
+    }
+  }
+
+  private void clearPendingBatch() {
+    records.clear();
+    deletions.clear();
+    deletedHrids.clear();
+    upsertHrids.clear();
+    inventoryRecordsInBatch = 0;
+  }
+
+  private static String instanceHrid(ProcessingRecord processingRecord) {
+    JsonObject instance = processingRecord.getRecordAsJson().getJsonObject("instance");
+    return instance == null ? null : instance.getString("hrid");
+  }
+
   private void releaseBatch(BatchOfRecords batch) {
     if (!fileProcessor.paused()) {
       try {
-        if (turnstile.enterBatch(batch)) {
-          persistBatch()
+        Future<FetchedRecords> prefetched = Future.succeededFuture(prefetch(batch));
+        if (batchWindow.enterBatch(batch)) {
+          checkpoints.release(batch);
+          persistBatch(batch, prefetched)
+              .onSuccess(na -> saveCheckpoint(batch))
               .onSuccess(na -> completeFileIfLastBatch(batch))
               .onFailure(this::handlePersistenceFailure)
-              .onComplete(na -> {
-                try {
-                  BatchOfRecords batchInTurnstile = turnstile.exitBatch();
-                  if (batchInTurnstile == null) {
-                    throw new TimeoutException("Taking out the batch from batch queue of one timed out.");
-                  }
-                } catch (TimeoutException toe) {
-                  handlePersistenceFailure(toe);
-                }
-              });
+              .onComplete(na -> batchWindow.exitBatch(batch));
         } else {
           handlePersistenceFailure(new TimeoutException("Could not forward batch for upsert in 90 seconds."));
         }
@@ -114,6 +214,65 @@ public class InventoryBatchUpdater implements RecordReceiver {
     }
   }
 
+  /**
+   * Fetches the existing records of the batch before it enters the batch window, while the batches in flight write.
+   * The records found tell if the batch moves holdings records or items from other instances, which keeps it from
+   * running alongside other batches. Since no other batch is let in before this one, the batches in flight now are
+   * the only ones that may write while the batch prefetches and waits. Prefetched records that they may write to are
+   * left out, so that the upsert of the batch looks them up again, with their current versions. If a batch in flight
+   * deletes instances, the prefetched records are not used at all.
+   *
+   * @return the prefetched records, or null if the records could not be prefetched or should not be used
+   */
+  private FetchedRecords prefetch(BatchOfRecords batch) {
+    if (batch.size() == 0) {
+      return null;
+    }
+    List<BatchOfRecords> batchesAhead = batchWindow.batchesInFlight();
+    FetchedRecords fetched = awaitPrefetch(updateClient.prefetchUpsert(batch.getUpsertRequestBody()));
+    if (fetched == null) {
+      return null;
+    }
+    batch.setMayMoveRecords(fetched.hasRecordsOutsideInstanceSets());
+    if (batchesAhead.isEmpty()) {
+      return fetched;
+    }
+    if (batchesAhead.stream().anyMatch(BatchOfRecords::hasDeletingRecord)) {
+      return null;
+    }
+    FetchedRecords notWrittenAhead = fetched;
+    for (BatchOfRecords batchAhead : batchesAhead) {
+      notWrittenAhead = notWrittenAhead.withoutRecordsOf(
+          batchAhead.getUpsertRequestBody().getJsonArray("inventoryRecordSets"));
+    }
+    batchWindow.countPrefetch();
+    return notWrittenAhead.withoutRecordsOutsideInstanceSets();
+  }
+
+  private static FetchedRecords awaitPrefetch(Future<FetchedRecords> prefetch) {
+    try {
+      return prefetch.toCompletionStage().toCompletableFuture().get(90, TimeUnit.SECONDS);
+    } catch (InterruptedException ie) {
+      logger.error("Prefetch of records for upsert interrupted.");
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException | TimeoutException e) {
+      logger.warn("Could not prefetch records for upsert, fetching them with the upsert: {}", e.getMessage());
+    }
+    return null;
+  }
+
+  /**
+   * Saves the checkpoint of the file if the batch moved it. The last batch doesn't, since the file is done.
+   */
+  private void saveCheckpoint(BatchOfRecords batch) {
+    SourceFile file = sourceFile;
+    if (checkpoints.commit(batch) && !batch.isLastBatchOfFile() && file != null) {
+      file.saveCheckpoint(checkpoints.committedRecords(), checkpoints.committedBatch())
+          .onFailure(e -> logger.warn("Could not save checkpoint of file {} at batch #{}: {}",
+              file.getName(), batch.getBatchNumber(), e.getMessage()));
+    }
+  }
+
   private void completeFileIfLastBatch(BatchOfRecords batch) {
     if (batch.isLastBatchOfFile()) {
       fileFinished.tryComplete();
@@ -125,9 +284,12 @@ public class InventoryBatchUpdater implements RecordReceiver {
     put(null);
   }
 
+  /**
+   * Elapsed time with one or more batches in flight.
+   */
   @Override
   public long getProcessingTime() {
-    return processingTime;
+    return batchWindow.busyTime();
   }
 
   @Override
@@ -140,8 +302,7 @@ public class InventoryBatchUpdater implements RecordReceiver {
    * it must be in charge of when to invoke results reporting. The file listening verticle will not
    * know when the last upsert of a source file of records is done, for example.
    */
-  private Future<Void> persistBatch() {
-    BatchOfRecords batch = turnstile.viewCurrentBatch();
+  private Future<Void> persistBatch(BatchOfRecords batch, Future<FetchedRecords> prefetched) {
     if (fileProcessor.paused()) {
       logger.info("The file processor is paused, skipping batch {}{}.",
           batch == null ? "null" : batch.getBatchNumber(),
@@ -151,21 +312,27 @@ public class InventoryBatchUpdater implements RecordReceiver {
     if (batch == null) {
       return Future.succeededFuture();
     }
+    return persistUpserts(batch, prefetched)
+        .compose(na -> persistDeletions(batch))
+        .onSuccess(na -> {
+          // the last batch may be empty, when the last records of the file filled up the previous batch
+          if (batch.isLastBatchOfFile()) {
+            reportEndOfFile();
+          }
+        });
+  }
+
+  private Future<Void> persistUpserts(BatchOfRecords batch, Future<FetchedRecords> prefetched) {
+    batchSizing.countBatch(batch.size() + batch.getDeletingRecords().size());
     if (batch.size() <= 0) {
-      if (batch.hasDeletingRecord()) {
-        return persistDeletion(batch);
-      }
-      // we get here when the last set of records had exactly 100. We just need to report
-      if (batch.isLastBatchOfFile()) {
-        reportEndOfFile();
-      }
       return Future.succeededFuture();
     }
-
-    long upsertStarted = System.nanoTime();
-    return updateClient.inventoryUpsert(batch.getUpsertRequestBody())
+    final int inventoryRecords = batch.countInventoryRecords();
+    final long upsertStarted = System.nanoTime();
+    return prefetched
+        .compose(fetched -> updateClient.inventoryUpsert(batch.getUpsertRequestBody(), fetched))
         .compose(upsert -> {
-          processingTime += System.nanoTime() - upsertStarted;
+          batchSizing.observe(inventoryRecords, System.nanoTime() - upsertStarted);
           if (upsert.statusCode() >= 400) {
             logger.error("Fatal error when updating inventory, status code: {}", upsert.statusCode());
             return Future.failedFuture("Inventory update failed with status code " + upsert.statusCode());
@@ -177,44 +344,61 @@ public class InventoryBatchUpdater implements RecordReceiver {
             fileProcessor.reporting.reportErrors(batch)
                 .onFailure(err -> logger.error("Error logging upsert results for batch #{}, {}",
                 batch.getBatchNumber(), err.getMessage()));
+            saveFingerprints(batch.getCommittedUpserts());
+          } else if (upsert.statusCode() == 200) {
+            saveFingerprints(batch.getCommittedUpserts());
           }
           fileProcessor.reporting.incrementInventoryMetrics(new InventoryMetrics(upsert.getMetrics()));
-          if (batch.hasDeletingRecord()) {
-            return persistDeletion(batch);
-          }
-          if (batch.isLastBatchOfFile()) {
-            reportEndOfFile();
-          }
           return Future.succeededFuture();
         });
   }
 
   /**
-   * Persists the deletion, complete the promise when done.
+   * Persists the deletions of the batch, after its upserts, in one request.
    *
-   * @param batch   The batch of records containing a deletion record
+   * @param batch   The batch of records, with or without deletion records
    */
-  private Future<Void> persistDeletion(BatchOfRecords batch) {
-    long deletionStarted = System.nanoTime();
-    JsonObject deletionRecord = batch.getDeletingRecord().getRecordAsJson().getJsonObject("delete");
-    return updateClient.inventoryDeletion(deletionRecord)
-        .onSuccess(deletion -> {
-          fileProcessor.reporting.incrementRecordsProcessed(1);
-          processingTime += System.nanoTime() - deletionStarted;
-          if (deletion.statusCode() != 200) {
-            logger.warn("No deletion performed with request {}, status code: {} due to {}",
-                deletionRecord.encode(), deletion.statusCode(), deletion.getErrors());
-            fileProcessor.reporting.log("No deletion performed with request " + deletionRecord.encode()
-                + ", status code: " + deletion.statusCode() + " due to " + deletion.getErrors());
-          } else {
-            fileProcessor.reporting.incrementInventoryMetrics(new InventoryMetrics(deletion.getMetrics()));
+  private Future<Void> persistDeletions(BatchOfRecords batch) {
+    if (!batch.hasDeletingRecord()) {
+      return Future.succeededFuture();
+    }
+    List<JsonObject> deletionRecords = new ArrayList<>();
+    for (ProcessingRecord deletingRecord : batch.getDeletingRecords()) {
+      deletionRecords.add(deletingRecord.getRecordAsJson().getJsonObject("delete"));
+    }
+    return updateClient.inventoryDeletions(deletionRecords)
+        .onSuccess(responses -> {
+          List<ProcessingRecord> committed = new ArrayList<>();
+          for (int i = 0; i < responses.size(); i++) {
+            JsonObject deletionRecord = deletionRecords.get(i);
+            InventoryUpdateClient.UpdateResponse deletion = responses.get(i);
+            fileProcessor.reporting.incrementRecordsProcessed(1);
+            if (deletion.statusCode() != 200) {
+              logger.warn("No deletion performed with request {}, status code: {} due to {}",
+                  deletionRecord.encode(), deletion.statusCode(), deletion.getErrors());
+              fileProcessor.reporting.log("No deletion performed with request " + deletionRecord.encode()
+                  + ", status code: " + deletion.statusCode() + " due to " + deletion.getErrors());
+            } else {
+              fileProcessor.reporting.incrementInventoryMetrics(new InventoryMetrics(deletion.getMetrics()));
+              committed.add(batch.getDeletingRecords().get(i));
+            }
           }
+          saveFingerprints(committed);
         })
         .onFailure(e -> fileProcessor.reporting.log("Error deleting inventory instance: " + e.getMessage()))
         .mapEmpty();
   }
 
+  private void saveFingerprints(List<ProcessingRecord> committed) {
+    if (fingerprints != null && !committed.isEmpty()) {
+      // A record without a saved fingerprint is just imported again next time.
+      fingerprints.save(committed)
+          .onFailure(e -> logger.warn("Could not save fingerprints of source records: {}", e.getMessage()));
+    }
+  }
+
   private void reportEndOfFile() {
+    fileProcessor.reporting.reportBatchSizes(batchSizing.fileReport());
     fileProcessor.reporting.endOfFile();
     fileProcessor.fileQueueDone(true)
         .onFailure(f -> logger.error("Error checking if file queue done {}", f.getMessage()))
@@ -248,38 +432,225 @@ public class InventoryBatchUpdater implements RecordReceiver {
   }
 
   /**
-   * Class wrapping a blocking queue of one, acting as a turnstile for batches in order to persist them one
-   * at a time with no overlap.
+   * Sizes batches to how long it takes to upsert them. A batch is full when it has the max number of records, or
+   * when it has at least the min number of records and as many instances, holdings records, and items as can be
+   * upserted in about the target time, judging by a moving average of the upsert time per Inventory record in
+   * previous batches. Until the first upsert is done, batches are filled up to the max number of records.
+   */
+  private static class BatchSizing {
+
+    private static final long TARGET_UPSERT_NANOS = TimeUnit.SECONDS.toNanos(2);
+    // Weight of the latest batch in the moving average.
+    private static final double SMOOTHING = 0.3;
+    private final int minRecords;
+    private final int maxRecords;
+    private double nanosPerInventoryRecord;
+    private int batches;
+    private int smallestBatch;
+    private int largestBatch;
+    private long recordsInBatches;
+
+    private BatchSizing(int minRecords, int maxRecords) {
+      this.maxRecords = Math.max(1, maxRecords);
+      this.minRecords = Math.clamp(minRecords, 1, this.maxRecords);
+    }
+
+    private synchronized boolean isFull(int records, int inventoryRecords) {
+      return records >= maxRecords
+          || (records >= minRecords && inventoryRecords >= inventoryRecordsPerBatch());
+    }
+
+    private synchronized int inventoryRecordsPerBatch() {
+      return nanosPerInventoryRecord > 0
+          ? (int) Math.min(Integer.MAX_VALUE, TARGET_UPSERT_NANOS / nanosPerInventoryRecord)
+          : Integer.MAX_VALUE;
+    }
+
+    private synchronized void observe(int inventoryRecords, long upsertNanos) {
+      if (inventoryRecords > 0) {
+        double latest = (double) upsertNanos / inventoryRecords;
+        nanosPerInventoryRecord = nanosPerInventoryRecord > 0
+            ? SMOOTHING * latest + (1 - SMOOTHING) * nanosPerInventoryRecord
+            : latest;
+      }
+    }
+
+    private synchronized void countBatch(int records) {
+      if (records > 0) {
+        smallestBatch = batches == 0 ? records : Math.min(smallestBatch, records);
+        largestBatch = Math.max(largestBatch, records);
+        recordsInBatches += records;
+        batches++;
+      }
+    }
+
+    private synchronized void startFile() {
+      batches = 0;
+      smallestBatch = 0;
+      largestBatch = 0;
+      recordsInBatches = 0;
+    }
+
+    private synchronized String fileReport() {
+      if (batches == 0) {
+        return null;
+      }
+      int budget = inventoryRecordsPerBatch();
+      return "Upserted in " + batches + " batch(es) of " + smallestBatch + "-" + largestBatch + " records (avg "
+          + recordsInBatches / batches + ", bounds " + minRecords + "-" + maxRecords + ")"
+          + (budget < Integer.MAX_VALUE ? ", now up to " + budget + " Inventory records per batch." : ".");
+    }
+  }
+
+  /**
+   * Tracks how far into the current file the records are committed to Inventory, without gaps. Batches can finish
+   * out of order when several are in flight, so a batch only moves the checkpoint once all batches released
+   * before it are done. A failed batch holds the checkpoint back for good, until the file is started again.
    */
-  private static class Turnstile {
+  private static class Checkpoints {
+
+    private final ArrayDeque<BatchOfRecords> released = new ArrayDeque<>();
+    private final Set<BatchOfRecords> committed = new HashSet<>();
+    private long committedRecords;
+    private long committedBatch;
 
-    private final BlockingQueue<BatchOfRecords> gate = new ArrayBlockingQueue<>(1);
+    private synchronized void startFile(long checkpoint) {
+      released.clear();
+      committed.clear();
+      committedRecords = checkpoint;
+      committedBatch = 0;
+    }
+
+    private synchronized void release(BatchOfRecords batch) {
+      released.add(batch);
+    }
 
     /**
-     * Puts batch in blocking queue-of-one; process waits if previous batch still in queue.
+     * Registers the batch as committed.
+     *
+     * @return true if the checkpoint moved
      */
-    private boolean enterBatch(BatchOfRecords batch) throws TimeoutException {
-      try {
-        return gate.offer(batch, 90, TimeUnit.SECONDS);
-      } catch (InterruptedException ie) {
-        logger.error("Upsert attempt timed out after 90 seconds.");
-        Thread.currentThread().interrupt();
-        throw new TimeoutException("Upsert attempt timed out after 90 seconds.");
+    private synchronized boolean commit(BatchOfRecords batch) {
+      if (!released.contains(batch)) {
+        // released before the file was started again
+        return false;
+      }
+      committed.add(batch);
+      boolean moved = false;
+      while (!released.isEmpty() && committed.remove(released.peek())) {
+        BatchOfRecords done = released.poll();
+        committedRecords = Math.max(committedRecords, done.getLastSourcePosition());
+        committedBatch = done.getBatchNumber();
+        moved = true;
       }
+      return moved;
     }
 
-    private BatchOfRecords exitBatch() throws TimeoutException {
+    private synchronized long committedRecords() {
+      return committedRecords;
+    }
+
+    private synchronized long committedBatch() {
+      return committedBatch;
+    }
+  }
+
+  /**
+   * A window of batches that are being persisted concurrently. A batch is let in when there is room in the
+   * window and no batch in flight touches any of the same Inventory records (by HRID), so that updates of the
+   * same records are still applied in the order of the source file. Batches that delete instances, or that may
+   * move holdings records or items from other instances, only run alone: the records they delete or move are not
+   * among the HRIDs of the other batches, which may delete the same records by leaving them out of stored
+   * instances. The last batch of a file waits for the window to empty, so that the end-of-file reporting happens
+   * after all other batches of the file are done.
+   */
+  private static class BatchWindow {
+
+    private final int size;
+    private final List<BatchOfRecords> inFlight = new ArrayList<>();
+    private int peakOccupancy;
+    private int prefetches;
+    private long busySince;
+    private long busyTime;
+
+    private BatchWindow(int size) {
+      this.size = Math.max(1, size);
+    }
+
+    private synchronized List<BatchOfRecords> batchesInFlight() {
+      return new ArrayList<>(inFlight);
+    }
+
+    /**
+     * Puts the batch in the window; process waits until there is room and no overlap with batches in flight.
+     */
+    private synchronized boolean enterBatch(BatchOfRecords batch) throws TimeoutException {
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(90);
       try {
-        return gate.poll(10, TimeUnit.SECONDS);
+        while (!admits(batch)) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            return false;
+          }
+          TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
       } catch (InterruptedException ie) {
-        logger.error("Taking batch from queue-of-one timed out after 10 seconds: {}", ie.getMessage());
+        logger.error("Upsert attempt interrupted while waiting for room in the batch window.");
         Thread.currentThread().interrupt();
-        throw new TimeoutException("Taking batch from queue-of-one failed: " + ie.getMessage());
+        throw new TimeoutException("Upsert attempt interrupted while waiting for room in the batch window.");
       }
+      if (inFlight.isEmpty()) {
+        busySince = System.nanoTime();
+      }
+      inFlight.add(batch);
+      peakOccupancy = Math.max(peakOccupancy, inFlight.size());
+      return true;
+    }
+
+    private boolean admits(BatchOfRecords batch) {
+      if (inFlight.isEmpty()) {
+        return true;
+      }
+      if (batch.isLastBatchOfFile() || inFlight.size() >= size || runsAlone(batch)) {
+        return false;
+      }
+      for (BatchOfRecords batchInFlight : inFlight) {
+        if (runsAlone(batchInFlight) || batchInFlight.sharesHridsWith(batch)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static boolean runsAlone(BatchOfRecords batch) {
+      return batch.hasDeletingRecord() || batch.mayMoveRecords();
+    }
+
+    private synchronized void exitBatch(BatchOfRecords batch) {
+      if (inFlight.remove(batch) && inFlight.isEmpty()) {
+        busyTime += System.nanoTime() - busySince;
+      }
+      notifyAll();
+    }
+
+    private synchronized int occupancy() {
+      return inFlight.size();
+    }
+
+    private synchronized int peakOccupancy() {
+      return peakOccupancy;
+    }
+
+    private synchronized void countPrefetch() {
+      prefetches++;
+    }
+
+    private synchronized int prefetches() {
+      return prefetches;
     }
 
-    private BatchOfRecords viewCurrentBatch() {
-      return gate.peek();
+    private synchronized long busyTime() {
+      return inFlight.isEmpty() ? busyTime : busyTime + System.nanoTime() - busySince;
     }
   }
 }
@@ -2,10 +2,19 @@ package org.folio.inventoryupdate.importing.service.delivery.fileimport;
 
 import io.vertx.core.json.JsonObject;
 
+/**
+ * A record on its way through the import pipeline. The record starts out as an XML string and is, by the end
+ * of the transformation, typically held as a JSON object, which is passed on to the upsert as is. The JSON is
+ * only serialized if the record is requested as a string, for example for echoing a transformation result.
+ */
 public class ProcessingRecord {
   private final String original;
   private String theRecord;
+  private JsonObject theJsonRecord;
   private boolean isDeletion = false;
+  private long sourcePosition;
+  private String sourceIdentifier;
+  private String fingerprint;
 
   public ProcessingRecord(String originalRecord) {
     this.original = originalRecord;
@@ -14,14 +23,29 @@ public class ProcessingRecord {
 
   public void update(String theRecord) {
     this.theRecord = theRecord;
+    this.theJsonRecord = null;
+  }
+
+  public void update(JsonObject theJsonRecord) {
+    this.theJsonRecord = theJsonRecord;
+    this.theRecord = null;
   }
 
   public String getRecordAsString() {
+    if (theRecord == null) {
+      theRecord = theJsonRecord.encodePrettily();
+    }
     return theRecord;
   }
 
+  /**
+   * Gets the record as JSON. The object is not a copy, changes to it will change the record.
+   */
   public JsonObject getRecordAsJson() {
-    return new JsonObject(theRecord);
+    if (theJsonRecord == null) {
+      theJsonRecord = new JsonObject(theRecord);
+    }
+    return theJsonRecord;
   }
 
   public String getOriginalRecordAsString() {
@@ -29,12 +53,40 @@ public class ProcessingRecord {
   }
 
   public void setBatchIndex(int index) {
-    JsonObject json = new JsonObject(theRecord);
+    JsonObject json = getRecordAsJson();
     if (!json.containsKey("processing")) {
       json.put("processing", new JsonObject());
     }
     json.getJsonObject("processing").put("batchIndex", index);
-    theRecord = json.encode();
+    theRecord = null;
+  }
+
+  /**
+   * Gets the position of the record in its source file, counting from 1, or 0 if not read from a file.
+   */
+  public long getSourcePosition() {
+    return sourcePosition;
+  }
+
+  public void setSourcePosition(long sourcePosition) {
+    this.sourcePosition = sourcePosition;
+  }
+
+  /**
+   * Sets the identifier of the record in the source, and a hash of the original record, for skipping the record
+   * the next time it arrives unchanged.
+   */
+  public void setFingerprint(String sourceIdentifier, String fingerprint) {
+    this.sourceIdentifier = sourceIdentifier;
+    this.fingerprint = fingerprint;
+  }
+
+  public String getSourceIdentifier() {
+    return sourceIdentifier;
+  }
+
+  public String getFingerprint() {
+    return fingerprint;
   }
 
   public boolean isDeletion() {
@@ -0,0 +1,167 @@
+package org.folio.inventoryupdate.importing.service.delivery.fileimport;
+
+import io.vertx.core.Future;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.templates.SqlTemplate;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.inventoryupdate.importing.moduledata.Channel;
+import org.folio.inventoryupdate.importing.moduledata.database.Tables;
+import org.folio.tlib.postgres.TenantPgPool;
+
+/**
+ * Fingerprints of the source records imported through a channel, for skipping records that arrive again unchanged,
+ * as they do from feeds that resend full snapshots.
+ *
+ * <p/>A fingerprint is a hash of the original source record and the XSLT of the steps of the channel's transformation,
+ * keyed by the identifier of the record in the source, which is the text of the first element in the record with
+ * the name that the channel configures. So records arriving unchanged are imported again after a step is edited,
+ * added, removed or moved. A record is fingerprinted once it is committed to Inventory, so that a record that
+ * failed is imported again the next time it arrives. Until then, a record is pending, and later records with the
+ * same identifier are not skipped, since the stored fingerprint is about to change. The store should be cleared if changes made in Inventory
+ * should be overwritten by the next import of the same source records.
+ */
+public final class RecordFingerprints {
+
+  public static final Logger logger = LogManager.getLogger("RecordFingerprints");
+  private final TenantPgPool pool;
+  private final UUID channelId;
+  private final Pattern identifierPattern;
+  private final String transformationDigest;
+  private final Map<String, Integer> pending = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor.
+   *
+   * @param pool        the tenant's database pool
+   * @param channel     a channel with a record identifier element
+   * @param stepScripts the XSLT of the steps of the channel's transformation, in order
+   */
+  public RecordFingerprints(TenantPgPool pool, Channel channel, List<String> stepScripts) {
+    this.pool = pool;
+    this.channelId = channel.getId();
+    StringBuilder transformation = new StringBuilder(String.valueOf(channel.getTransformationId()));
+    for (String script : stepScripts) {
+      transformation.append('\u0000').append(script);
+    }
+    this.transformationDigest = hash(transformation.toString());
+    this.identifierPattern = Pattern.compile(
+        "<(?:[\\w.-]+:)?" + Pattern.quote(channel.getRecordIdentifierElement()) + "(?:\\s[^>]*)?>\\s*([^<]*?)\\s*</");
+  }
+
+  /**
+   * Sets the source identifier and the fingerprint of the record, unless the record has no identifier.
+   */
+  void fingerprint(ProcessingRecord processingRecord) {
+    String original = processingRecord.getOriginalRecordAsString();
+    Matcher identifier = identifierPattern.matcher(original);
+    if (identifier.find() && !identifier.group(1).isEmpty()) {
+      processingRecord.setFingerprint(identifier.group(1), hash(transformationDigest + original));
+    }
+  }
+
+  private static String hash(String text) {
+    try {
+      return Base64.getEncoder().encodeToString(
+          MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  /**
+   * Registers that the record is forwarded for import, so that its fingerprint is pending until saved.
+   */
+  void forwarded(ProcessingRecord processingRecord) {
+    if (processingRecord.getFingerprint() != null) {
+      pending.merge(processingRecord.getSourceIdentifier(), 1, Integer::sum);
+    }
+  }
+
+  /**
+   * Tells if a record with the source identifier was forwarded for import, and its fingerprint is not saved yet.
+   */
+  boolean isPending(String sourceIdentifier) {
+    return pending.containsKey(sourceIdentifier);
+  }
+
+  /**
+   * Looks up the stored fingerprints of the given source identifiers.
+   *
+   * @return fingerprints by source identifier, for the identifiers that have one
+   */
+  Future<Map<String, String>> lookup(Collection<String> sourceIdentifiers) {
+    return SqlTemplate.forQuery(pool.getPool(),
+            "SELECT record_identifier, fingerprint FROM " + table(pool)
+                + " WHERE channel_id = #{channelId} AND record_identifier = ANY(#{identifiers})")
+        .execute(Map.of("channelId", channelId, "identifiers", sourceIdentifiers.toArray(new String[0])))
+        .map(rows -> {
+          Map<String, String> fingerprints = new HashMap<>();
+          for (Row row : rows) {
+            fingerprints.put(row.getString("record_identifier"), row.getString("fingerprint"));
+          }
+          return fingerprints;
+        });
+  }
+
+  /**
+   * Stores the fingerprints of records that are committed to Inventory, replacing earlier fingerprints of the
+   * same source records.
+   */
+  Future<Void> save(List<ProcessingRecord> committedRecords) {
+    List<Map<String, Object>> parameters = new ArrayList<>();
+    for (ProcessingRecord committed : committedRecords) {
+      if (committed.getFingerprint() != null) {
+        parameters.add(Map.of("channelId", channelId, "identifier", committed.getSourceIdentifier(),
+            "fingerprint", committed.getFingerprint()));
+      }
+    }
+    if (parameters.isEmpty()) {
+      return Future.succeededFuture();
+    }
+    return SqlTemplate.forUpdate(pool.getPool(),
+            "INSERT INTO " + table(pool) + " (channel_id, record_identifier, fingerprint) "
+                + " VALUES (#{channelId}, #{identifier}, #{fingerprint}) "
+                + " ON CONFLICT (channel_id, record_identifier) DO UPDATE SET fingerprint = EXCLUDED.fingerprint")
+        .executeBatch(parameters)
+        .onComplete(na -> {
+          for (ProcessingRecord committed : committedRecords) {
+            if (committed.getFingerprint() != null) {
+              pending.computeIfPresent(committed.getSourceIdentifier(),
+                  (identifier, count) -> count > 1 ? count - 1 : null);
+            }
+          }
+        })
+        .mapEmpty();
+  }
+
+  /**
+   * Deletes the fingerprints of the channel, so that the next import of each source record goes all the way to
+   * Inventory.
+   *
+   * @return the number of fingerprints deleted
+   */
+  public static Future<Integer> clear(TenantPgPool pool, UUID channelId) {
+    return SqlTemplate.forUpdate(pool.getPool(),
+            "DELETE FROM " + table(pool) + " WHERE channel_id = #{channelId}")
+        .execute(Map.of("channelId", channelId))
+        .map(result -> result.rowCount());
+  }
+
+  private static String table(TenantPgPool pool) {
+    return pool.getSchema() + "." + Tables.RECORD_FINGERPRINT;
+  }
+}
@@ -1,6 +1,12 @@
 package org.folio.inventoryupdate.importing.service.delivery.fileimport;
 
 public interface RecordReceiver {
+  /**
+   * Signals the start of a new source document, before any records of it are put.
+   */
+  default void startOfDocument() {
+  }
+
   void put(ProcessingRecord processingRecord);
 
   void endOfDocument();
@@ -1,12 +1,30 @@
 package org.folio.inventoryupdate.importing.service.delivery.fileimport;
 
 import io.vertx.core.Future;
+import java.io.IOException;
+import java.io.InputStream;
 
 public interface SourceFile {
 
   String getName();
 
-  String getPayload() throws Exception;
+  /**
+   * Opens the content of the file for reading. The stream may block while reading and should be consumed
+   * on a worker thread.
+   */
+  InputStream openPayload() throws IOException;
 
   Future<Void> discard();
+
+  /**
+   * Gets the number of records, from the start of the file, that were committed to Inventory in an earlier,
+   * interrupted import of the file.
+   */
+  long getCheckpoint();
+
+  /**
+   * Records that the records up to the given position in the file, and the batches up to the given batch number,
+   * are committed to Inventory. The checkpoint never moves backwards.
+   */
+  Future<Void> saveCheckpoint(long committedRecords, long committedBatch);
 }
@@ -2,6 +2,10 @@ package org.folio.inventoryupdate.importing.service.delivery.fileimport;
 
 import io.vertx.core.Future;
 import io.vertx.sqlclient.templates.SqlTemplate;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.UUID;
 import org.folio.inventoryupdate.importing.moduledata.database.Tables;
@@ -11,14 +15,29 @@ public class SourceFileDb implements SourceFile {
 
   final String name;
   final String payload;
+  final Long payloadOid;
   final TenantPgPool pool;
   final UUID channelId;
+  final long checkpoint;
 
-  public SourceFileDb(String name, String payload, UUID channelId, TenantPgPool pool) {
+  /**
+   * Constructor.
+   *
+   * @param name       file name
+   * @param payload    the content if stored inline and already read, otherwise null
+   * @param payloadOid the large object with the content, if the content was streamed to the queue, otherwise null
+   * @param channelId  the channel that the file was queued for
+   * @param pool       the tenant's database pool
+   * @param checkpoint the number of records committed in an earlier import of the file
+   */
+  public SourceFileDb(String name, String payload, Long payloadOid, UUID channelId, TenantPgPool pool,
+                      long checkpoint) {
     this.name = name;
     this.payload = payload;
+    this.payloadOid = payloadOid;
     this.channelId = channelId;
     this.pool = pool;
+    this.checkpoint = checkpoint;
   }
 
   @Override
@@ -27,8 +46,23 @@ public class SourceFileDb implements SourceFile {
   }
 
   @Override
-  public String getPayload() {
-    return payload;
+  public InputStream openPayload() throws IOException {
+    if (payloadOid != null) {
+      return SourceFilePayload.inputStream(pool, payloadOid);
+    }
+    String inlinePayload = payload != null ? payload : SourceFilePayload.await(
+        SqlTemplate.forQuery(pool.getPool(),
+                "SELECT payload "
+                    + " FROM " + pool.getSchema() + "." + Tables.SOURCE_FILE
+                    + " WHERE file_name = #{fileName} "
+                    + " AND channel_id = #{channelId} "
+                    + " AND processing = 1 ")
+            .execute(Map.of("channelId", channelId, "fileName", name))
+            .map(rows -> rows.iterator().hasNext() ? rows.iterator().next().getString("payload") : null));
+    if (inlinePayload == null) {
+      throw new IOException("Found no payload for source file " + name);
+    }
+    return new ByteArrayInputStream(inlinePayload.getBytes(StandardCharsets.UTF_8));
   }
 
   @Override
@@ -41,4 +75,24 @@ public class SourceFileDb implements SourceFile {
         .execute(Map.of("channelId", channelId, "fileName", name))
         .mapEmpty();
   }
+
+  @Override
+  public long getCheckpoint() {
+    return checkpoint;
+  }
+
+  @Override
+  public Future<Void> saveCheckpoint(long committedRecords, long committedBatch) {
+    String table = pool.getSchema() + "." + Tables.SOURCE_FILE;
+    return SqlTemplate.forUpdate(pool.getPool(),
+            "UPDATE " + table
+                + " SET committed_records = GREATEST(committed_records, #{committedRecords}), "
+                + "     committed_batch = GREATEST(committed_batch, #{committedBatch}) "
+                + " WHERE file_name = #{fileName} "
+                + " AND channel_id = #{channelId} "
+                + " AND processing = 1 ")
+        .execute(Map.of("channelId", channelId, "fileName", name,
+            "committedRecords", committedRecords, "committedBatch", committedBatch))
+        .mapEmpty();
+  }
 }
@@ -0,0 +1,216 @@
+package org.folio.inventoryupdate.importing.service.delivery.fileimport;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.sqlclient.templates.SqlTemplate;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.inventoryupdate.importing.moduledata.database.Tables;
+import org.folio.tlib.postgres.TenantPgPool;
+
+/**
+ * Source file payloads stored as Postgres large objects, written from a stream and read back as a stream, one
+ * chunk at a time, so that the size of a source file does not affect the memory needed for queueing and
+ * importing it.
+ */
+public final class SourceFilePayload {
+
+  public static final Logger logger = LogManager.getLogger("SourceFilePayload");
+  static final int CHUNK_SIZE = 1024 * 1024;
+  private static final long READ_TIMEOUT_SECONDS = 60;
+
+  private SourceFilePayload() {
+    throw new UnsupportedOperationException("Utility class");
+  }
+
+  /**
+   * Writes the stream to a new large object.
+   *
+   * @param pool   the tenant's database pool
+   * @param stream the payload, should be paused until passed in here
+   * @return the OID of the large object
+   */
+  public static Future<Long> write(TenantPgPool pool, ReadStream<Buffer> stream) {
+    return SqlTemplate.forQuery(pool.getPool(), "SELECT lo_from_bytea(0, '')::BIGINT AS oid")
+        .execute(Collections.emptyMap())
+        .compose(rows -> {
+          long oid = rows.iterator().next().getLong("oid");
+          return new LargeObjectWriter(pool, oid, stream).write()
+              .recover(e -> unlink(pool, oid).transform(na -> Future.failedFuture(e)));
+        });
+  }
+
+  /**
+   * Deletes the large object.
+   */
+  public static Future<Void> unlink(TenantPgPool pool, long oid) {
+    return SqlTemplate.forQuery(pool.getPool(), "SELECT lo_unlink(#{oid}::BIGINT::OID)")
+        .execute(Map.of("oid", oid))
+        .onFailure(e -> logger.error("Could not delete source file payload {}: {}", oid, e.getMessage()))
+        .mapEmpty();
+  }
+
+  /**
+   * Deletes the large objects of all the tenant's source files. Dropping the tenant's schema does not fire the
+   * row trigger that deletes them one by one, so a purge must delete them first.
+   *
+   * @return the number of large objects deleted
+   */
+  public static Future<Integer> unlinkAll(TenantPgPool pool) {
+    String sourceFiles = pool.getSchema() + "." + Tables.SOURCE_FILE;
+    return SqlTemplate.forQuery(pool.getPool(), "SELECT to_regclass(#{table}) IS NOT NULL AS present")
+        .execute(Map.of("table", sourceFiles))
+        .compose(rows -> {
+          if (!rows.iterator().next().getBoolean("present")) {
+            return Future.succeededFuture(0);
+          }
+          return SqlTemplate.forQuery(pool.getPool(),
+                  "SELECT count(lo_unlink(lom.oid)) AS unlinked FROM pg_largeobject_metadata lom "
+                      + "WHERE lom.oid IN (SELECT payload_oid FROM " + sourceFiles + ")")
+              .execute(Collections.emptyMap())
+              .map(result -> result.iterator().next().getLong("unlinked").intValue());
+        })
+        .onFailure(e -> logger.error("Could not delete source file payloads of {}: {}", pool.getSchema(),
+            e.getMessage()));
+  }
+
+  /**
+   * Opens the large object for reading. The stream blocks while fetching chunks from the database and must
+   * be read from a worker thread, not from an event loop.
+   */
+  public static InputStream inputStream(TenantPgPool pool, long oid) {
+    return new LargeObjectInputStream(pool, oid);
+  }
+
+  /**
+   * Waits for a database read, for use in the blocking input streams of source files.
+   */
+  static <T> T await(Future<T> read) throws IOException {
+    try {
+      return read.toCompletionStage().toCompletableFuture().get(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading source file payload", ie);
+    } catch (ExecutionException | TimeoutException e) {
+      throw new IOException("Could not read source file payload: " + e.getMessage(), e);
+    }
+  }
+
+  private static final class LargeObjectWriter {
+    private final TenantPgPool pool;
+    private final long oid;
+    private final ReadStream<Buffer> stream;
+    private final Promise<Long> promise = Promise.promise();
+    private Buffer pending = Buffer.buffer();
+    private long offset = 0;
+    private boolean ended = false;
+
+    private LargeObjectWriter(TenantPgPool pool, long oid, ReadStream<Buffer> stream) {
+      this.pool = pool;
+      this.oid = oid;
+      this.stream = stream;
+    }
+
+    private Future<Long> write() {
+      stream.exceptionHandler(promise::tryFail);
+      stream.endHandler(na -> {
+        ended = true;
+        flush();
+      });
+      stream.handler(chunk -> {
+        pending.appendBuffer(chunk);
+        if (pending.length() >= CHUNK_SIZE) {
+          // Pausing also holds back the end of the stream until the chunk is written.
+          stream.pause();
+          flush();
+        }
+      });
+      stream.resume();
+      return promise.future();
+    }
+
+    private void flush() {
+      Buffer chunk = pending;
+      pending = Buffer.buffer();
+      Map<String, Object> parameters = new HashMap<>();
+      parameters.put("oid", oid);
+      parameters.put("offset", offset);
+      parameters.put("chunk", chunk);
+      SqlTemplate.forQuery(pool.getPool(), "SELECT lo_put(#{oid}::BIGINT::OID, #{offset}, #{chunk})")
+          .execute(parameters)
+          .onFailure(promise::tryFail)
+          .onSuccess(na -> {
+            offset += chunk.length();
+            if (ended) {
+              promise.tryComplete(oid);
+            } else {
+              stream.resume();
+            }
+          });
+    }
+  }
+
+  private static final class LargeObjectInputStream extends InputStream {
+    private final TenantPgPool pool;
+    private final long oid;
+    private byte[] chunk = new byte[0];
+    private int position = 0;
+    private long offset = 0;
+    private boolean exhausted = false;
+
+    private LargeObjectInputStream(TenantPgPool pool, long oid) {
+      this.pool = pool;
+      this.oid = oid;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (position >= chunk.length && !fetchChunk()) {
+        return -1;
+      }
+      return chunk[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (position >= chunk.length && !fetchChunk()) {
+        return -1;
+      }
+      int count = Math.min(len, chunk.length - position);
+      System.arraycopy(chunk, position, bytes, off, count);
+      position += count;
+      return count;
+    }
+
+    private boolean fetchChunk() throws IOException {
+      if (exhausted) {
+        return false;
+      }
+      Map<String, Object> parameters = new HashMap<>();
+      parameters.put("oid", oid);
+      parameters.put("offset", offset);
+      parameters.put("length", CHUNK_SIZE);
+      chunk = await(SqlTemplate.forQuery(pool.getPool(),
+              "SELECT lo_get(#{oid}::BIGINT::OID, #{offset}, #{length}) AS chunk")
+          .execute(parameters)
+          .map(rows -> rows.iterator().next().getBuffer("chunk").getBytes()));
+      position = 0;
+      offset += chunk.length;
+      exhausted = chunk.length < CHUNK_SIZE;
+      return chunk.length > 0;
+    }
+  }
+}
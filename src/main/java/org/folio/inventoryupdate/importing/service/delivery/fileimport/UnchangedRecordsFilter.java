@@ -0,0 +1,127 @@
+package org.folio.inventoryupdate.importing.service.delivery.fileimport;
+
+import io.vertx.core.Future;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.reporting.InventoryMetrics;
+
+/**
+ * Skips source records that are unchanged since they were last imported through the channel, before they are
+ * transformed. The records are looked up in the fingerprint store a chunk at a time, on the thread that reads the
+ * source file, and the changed records are forwarded in source order. If the store cannot be read, all records
+ * of the chunk are forwarded. A record is never skipped while an earlier record with the same identifier is
+ * forwarded and its fingerprint not yet saved, since that record may change what is in Inventory.
+ */
+public class UnchangedRecordsFilter implements RecordReceiver {
+
+  public static final Logger logger = LogManager.getLogger("UnchangedRecordsFilter");
+  private static final int CHUNK_SIZE = 100;
+  private static final long LOOKUP_TIMEOUT_SECONDS = 60;
+  private final RecordFingerprints fingerprints;
+  private final RecordReceiver target;
+  private final FileProcessor fileProcessor;
+  private final List<ProcessingRecord> chunk = new ArrayList<>();
+  private int recordsProcessed;
+  private long processingTime;
+
+  /**
+   * Constructor.
+   *
+   * @param fingerprints  the channel's fingerprint store
+   * @param target        the transformation stage to forward changed records to
+   * @param fileProcessor the file processor, for reporting the skipped records
+   */
+  public UnchangedRecordsFilter(RecordFingerprints fingerprints, RecordReceiver target, FileProcessor fileProcessor) {
+    this.fingerprints = fingerprints;
+    this.target = target;
+    this.fileProcessor = fileProcessor;
+  }
+
+  @Override
+  public void startOfDocument() {
+    chunk.clear();
+    target.startOfDocument();
+  }
+
+  @Override
+  public void put(ProcessingRecord processingRecord) {
+    recordsProcessed++;
+    fingerprints.fingerprint(processingRecord);
+    chunk.add(processingRecord);
+    if (chunk.size() >= CHUNK_SIZE) {
+      forwardChunk();
+    }
+  }
+
+  @Override
+  public void endOfDocument() {
+    forwardChunk();
+    target.endOfDocument();
+  }
+
+  private void forwardChunk() {
+    if (chunk.isEmpty()) {
+      return;
+    }
+    long started = System.nanoTime();
+    Set<String> sourceIdentifiers = new HashSet<>();
+    for (ProcessingRecord processingRecord : chunk) {
+      if (processingRecord.getSourceIdentifier() != null) {
+        sourceIdentifiers.add(processingRecord.getSourceIdentifier());
+      }
+    }
+    Map<String, String> stored = sourceIdentifiers.isEmpty()
+        ? Collections.emptyMap() : await(fingerprints.lookup(sourceIdentifiers));
+    processingTime += System.nanoTime() - started;
+    int unchanged = 0;
+    for (ProcessingRecord processingRecord : chunk) {
+      String fingerprint = processingRecord.getFingerprint();
+      if (fingerprint != null && fingerprint.equals(stored.get(processingRecord.getSourceIdentifier()))
+          && !fingerprints.isPending(processingRecord.getSourceIdentifier())) {
+        unchanged++;
+      } else {
+        fingerprints.forwarded(processingRecord);
+        target.put(processingRecord);
+      }
+    }
+    chunk.clear();
+    if (unchanged > 0) {
+      fileProcessor.reporting.incrementRecordsProcessed(unchanged);
+      fileProcessor.reporting.incrementInventoryMetrics(InventoryMetrics.unchangedInstances(unchanged));
+    }
+  }
+
+  private static Map<String, String> await(Future<Map<String, String>> lookup) {
+    try {
+      return lookup.toCompletionStage().toCompletableFuture().get(LOOKUP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      logger.warn("Interrupted while looking up fingerprints, importing records regardless");
+    } catch (ExecutionException | TimeoutException e) {
+      logger.warn("Could not look up fingerprints, importing records regardless: {}", e.getMessage());
+    }
+    return Collections.emptyMap();
+  }
+
+  /**
+   * Time spent looking up fingerprints.
+   */
+  @Override
+  public long getProcessingTime() {
+    return processingTime;
+  }
+
+  @Override
+  public int getRecordsProcessed() {
+    return recordsProcessed;
+  }
+}
@@ -1,8 +1,10 @@
 package org.folio.inventoryupdate.importing.service.delivery.fileimport;
 
 import io.vertx.core.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.folio.inventoryupdate.importing.moduledata.Channel;
+import org.folio.inventoryupdate.importing.moduledata.database.EntityStorage;
 import org.folio.inventoryupdate.importing.service.ImportService;
 import org.folio.inventoryupdate.importing.service.ServiceRequest;
 
@@ -15,54 +17,139 @@ import org.folio.inventoryupdate.importing.service.ServiceRequest;
  */
 public class XmlFileListener extends FileListener {
 
+  private static final long POLLING_INTERVAL_MS = 200;
+  private static final long SAFETY_NET_INTERVAL_MS = 5000;
+  private final AtomicBoolean clear = new AtomicBoolean(true);
+  private final AtomicBoolean recheck = new AtomicBoolean(false);
+  private final EntityStorage entityStorage;
+  private volatile long leaseConfirmedAt = System.nanoTime();
+
   public XmlFileListener(ServiceRequest request, Channel channel) {
     this.tenant = request.tenant();
     this.channel = channel;
     this.routingContext = request.routingContext();
     this.fileQueue = ImportService.getFileQueue(request, getConfigId());
+    this.entityStorage = request.entityStorage();
+    this.deploymentVertx = request.vertx();
   }
 
   @Override
   public Future<?> start() throws Exception {
     logger.info("Listening for files to forward for processing by job configuration ID [{}}], tenant [{}}].",
         getConfigId(), tenant);
+    Future<?> started = super.start();
     listen();
-    return super.start();
+    vertx.setPeriodic(ChannelLeases.RENEWAL_INTERVAL_MS, id -> renewLease());
+    return started;
   }
 
   public boolean isListening() {
     return channel.getRecord().listening();
   }
 
+  @Override
+  public Future<?> stop() throws Exception {
+    fileQueue.onFilePushed(null);
+    if (fileProcessor != null) {
+      fileProcessor.close();
+    }
+    return super.stop();
+  }
+
+  /**
+   * Checks the queue whenever a file is pushed to it, when a file is done, and periodically as a safety net. If
+   * the queue cannot notify about pushed files, the queue is polled frequently instead.
+   */
   @Override
   public void listen() {
-    AtomicBoolean clear = new AtomicBoolean(true);
-    vertx.setPeriodic(200, r -> {
-      if (isListening() && !importJobPaused() && clear.get()) {
-        clear.set(false);
-        boolean processorResuming = fileProcessor != null && fileProcessor.isResuming(false);
-        getNextFileIfPossible(fileQueuePassive.get(), processorResuming)
-            .onFailure(f -> logger.error("Error when maybe fetching next file {}", f.getMessage()))
-            .compose(currentFile -> {
-              if (currentFile != null) {  // null if queue is either empty or already has a file in progress
-                boolean queueWentFromPassiveToActive = fileQueuePassive.getAndSet(false);
-                // Continue existing job if any (= not activating), or instantiate a new (= activating).
-                return getFileProcessor(queueWentFromPassiveToActive)
-                    .compose(fileProcessor -> fileProcessor.processFile(currentFile))
-                    .compose(na -> {
-                      if (!importJobPaused()) { // if paused mid-file, keep file to resume
-                        return currentFile.discard().mapEmpty();
-                      } else {
-                        return Future.succeededFuture(null);
-                      }
-                    })
-                    .onFailure(f -> logger.error("Error processing file: {}", f.getMessage()));
-              } else {
-                return Future.succeededFuture(null);
-              }
-            }).andThen(na -> clear.set(true));
-      }
-    });
+    fileQueue.onFilePushed(this::wakeUp)
+        .onComplete(notifications -> {
+          long interval = POLLING_INTERVAL_MS;
+          if (notifications.succeeded()) {
+            interval = SAFETY_NET_INTERVAL_MS;
+          } else {
+            logger.warn("No notifications about pushed files for channel [{}], polling the queue instead: {}",
+                getConfigId(), notifications.cause().getMessage());
+          }
+          vertx.setPeriodic(interval, r -> checkQueue());
+          checkQueue();
+        });
+  }
+
+  /**
+   * Renews the lease of the channel, and picks up changes made to the channel through other module instances.
+   * Stops the listener, and the import in progress, if the lease was lost to another instance or the channel is no
+   * longer enabled, or if the lease could not be renewed for so long that it may soon be taken over.
+   */
+  private void renewLease() {
+    if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - leaseConfirmedAt) > ChannelLeases.UNCONFIRMED_LIMIT_MS) {
+      FileListeners.standDown(tenant, getConfigId(), entityStorage.getTenantPool(), "Lease not renewed in time");
+      return;
+    }
+    ChannelLeases.renew(entityStorage.getTenantPool(), getConfigId())
+        .compose(leased -> {
+          if (!leased) {
+            return FileListeners.standDown(tenant, getConfigId(), entityStorage.getTenantPool(), "Lease lost");
+          }
+          leaseConfirmedAt = System.nanoTime();
+          return new Channel().withTenant(tenant).getById(getConfigId(), entityStorage)
+              .onSuccess(current -> {
+                if (current != null && ((Channel) current).isListeningIfEnabled() != isListening()) {
+                  updateChannel((Channel) current);
+                }
+              }).mapEmpty();
+        })
+        .onFailure(e -> {
+          logger.error("Could not renew lease of channel [{}]: {}", getConfigId(), e.getMessage());
+          FileListeners.standDown(tenant, getConfigId(), entityStorage.getTenantPool(), "Lease renewal failed");
+        });
+  }
+
+  @Override
+  public void wakeUp() {
+    if (context != null) {
+      context.runOnContext(na -> checkQueue());
+    }
+  }
+
+  private void checkQueue() {
+    if (!clear.get()) {
+      // A check is already running, make sure to check again once it's done.
+      recheck.set(true);
+      return;
+    }
+    if (isListening() && !importJobPaused()) {
+      clear.set(false);
+      recheck.set(false);
+      boolean processorResuming = fileProcessor != null && fileProcessor.isResuming(false);
+      getNextFileIfPossible(fileQueuePassive.get(), processorResuming)
+          .onFailure(f -> logger.error("Error when maybe fetching next file {}", f.getMessage()))
+          .compose(currentFile -> {
+            if (currentFile != null) {  // null if queue is either empty or already has a file in progress
+              boolean queueWentFromPassiveToActive = fileQueuePassive.getAndSet(false);
+              // Continue existing job if any (= not activating), or instantiate a new (= activating).
+              return getFileProcessor(queueWentFromPassiveToActive)
+                  .compose(fileProcessor -> fileProcessor.processFile(currentFile))
+                  .compose(na -> {
+                    if (!importJobPaused()) { // if paused mid-file, keep file to resume
+                      return currentFile.discard().mapEmpty();
+                    } else {
+                      return Future.succeededFuture(null);
+                    }
+                  })
+                  .onFailure(f -> logger.error("Error processing file: {}", f.getMessage()))
+                  // Look for the next file in the queue right away.
+                  .andThen(na -> recheck.set(true));
+            } else {
+              return Future.succeededFuture(null);
+            }
+          }).andThen(na -> {
+            clear.set(true);
+            if (recheck.getAndSet(false)) {
+              wakeUp();
+            }
+          });
+    }
   }
 
   public Future<FileProcessor> getFileProcessor(boolean instantiate) {
@@ -71,6 +158,9 @@ public class XmlFileListener extends FileListener {
           .forFileListener(this)
           .withProcessingPipeline(tenant, getConfigId(), vertx, new InventoryBatchUpdater(routingContext))
           .compose(newFileProcessor -> {
+            if (fileProcessor != null) {
+              fileProcessor.close();
+            }
             this.fileProcessor = newFileProcessor.running();
             return Future.succeededFuture(fileProcessor);
           });
@@ -10,23 +10,33 @@ import org.folio.inventoryupdate.importing.moduledata.Channel;
 import org.folio.inventoryupdate.importing.moduledata.ImportJob;
 import org.folio.inventoryupdate.importing.moduledata.database.EntityStorage;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.reporting.Reporting;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.transformation.ParallelTransformationStage;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.transformation.XmlRecordsReader;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.transformation.XmlTransformationPipeline;
+import org.folio.inventoryupdate.updating.StorageLimiter;
 
 /**
  * File processing is made up of following components, listed in the order of processing.
  * <li>a queue of source files (in VertX file system, synchronous access)</li>
  * <li>a file listener (a verticle) that feeds files from the queue to the processor</li>
  * <li>a SAX parser splitting a file of records into individual XML records (synchronous)</li>
- * <li>an XSLT transformation pipeline and an XML to JSON converter, handling individual xml records (synchronous)</li>
+ * <li>a filter skipping records that are unchanged since their last import, if the channel fingerprints records</li>
+ * <li>an XSLT transformation pipeline and an XML to JSON converter, handling individual xml records (synchronous,
+ * or on a pool of worker threads with results handed on in source order if the channel has multiple
+ * transformation workers)</li>
+ * <li>a filter reporting record sets that would fail validation in the upsert as failed records, so that they
+ * don't bring down the batches they would otherwise be part of</li>
  * <li>a client that collects records into sets of 100 JSON objects and pushes the result to Inventory Update, one
- * batch at a time (asynchronous)</li>
+ * batch at a time, or a window of multiple batches at a time for batches that don't share HRIDs
+ * (asynchronous)</li>
  * <p/>The import process additionally uses a logging component for reporting status and errors.
  */
 public class XmlFileProcessor extends FileProcessor {
 
   public static final Logger logger = LogManager.getLogger("ImportJob");
   XmlTransformationPipeline transformationPipeline;
+  RecordReceiver transformationStage;
+  RecordReceiver firstStage;
   InventoryBatchUpdater inventoryBatchUpdater;
   final Vertx vertx;
 
@@ -48,15 +58,30 @@ public class XmlFileProcessor extends FileProcessor {
   public Future<XmlFileProcessor> withProcessingPipeline(String tenant, UUID channelId, Vertx vertx,
                                                          InventoryBatchUpdater inventoryBatchUpdater) {
     return new Channel().withTenant(tenant).getById(channelId, configStorage)
-        .map(cfg -> ((Channel) cfg).getTransformationId())
-        .compose(transformationId -> XmlTransformationPipeline.create(vertx, tenant, transformationId))
-        .compose(pipelineCreated -> {
-          inventoryBatchUpdater.forFileProcessor(this);
-          this.transformationPipeline = pipelineCreated.withTarget(inventoryBatchUpdater);
-          this.inventoryBatchUpdater = inventoryBatchUpdater;
-          this.reporting = new Reporting(this, tenant, vertx);
-          return Future.succeededFuture(this);
-        })
+        .map(Channel.class::cast)
+        .compose(channel -> XmlTransformationPipeline.create(vertx, tenant, channel.getTransformationId())
+            .compose(pipelineCreated -> {
+              inventoryBatchUpdater.forFileProcessor(this)
+                  .withConcurrentBatches(channel.getConcurrentBatches())
+                  .withBatchSizeBounds(channel.getMinBatchSize(), channel.getMaxBatchSize());
+              RecordReceiver validationStage = new InvalidRecordsFilter(inventoryBatchUpdater, this);
+              this.transformationPipeline = pipelineCreated.withTarget(validationStage).withChainedSteps(true)
+                  .forFileProcessor(this);
+              int workers = channel.getTransformationWorkers();
+              this.transformationStage = workers > 1
+                  ? new ParallelTransformationStage(transformationPipeline, validationStage, this, workers)
+                  : transformationPipeline;
+              this.firstStage = transformationStage;
+              if (channel.getRecordIdentifierElement() != null) {
+                RecordFingerprints fingerprints = new RecordFingerprints(configStorage.getTenantPool(), channel,
+                    transformationPipeline.getStepScripts());
+                inventoryBatchUpdater.withFingerprints(fingerprints);
+                this.firstStage = new UnchangedRecordsFilter(fingerprints, transformationStage, this);
+              }
+              this.inventoryBatchUpdater = inventoryBatchUpdater;
+              this.reporting = new Reporting(this, tenant, vertx);
+              return Future.succeededFuture(this);
+            }))
         .compose(p -> p.withJobLog(channelId));
   }
 
@@ -84,8 +109,16 @@ public class XmlFileProcessor extends FileProcessor {
     Promise<Void> promise = Promise.promise();
     try {
       reporting.nowProcessing(xmlFile.getName());
-      Future<Void> fileFinished = inventoryBatchUpdater.startFile();
-      vertx.executeBlocking(new XmlRecordsReader(xmlFile, transformationPipeline), true)
+      long checkpoint = xmlFile.getCheckpoint();
+      if (checkpoint > 0) {
+        reporting.log("Resuming " + xmlFile.getName() + " after record " + checkpoint
+            + ", skipping the records that were committed before the interruption.");
+      }
+      Future<Void> fileFinished = inventoryBatchUpdater.startFile(xmlFile);
+      XmlRecordsReader reader = new XmlRecordsReader(xmlFile, firstStage).skippingRecords(checkpoint);
+      ChannelRuntime.admitFileImport(vertx.getOrCreateContext(), tenant)
+          .compose(admitted -> fileListener.getFileImportExecutor().executeBlocking(reader, true)
+              .andThen(read -> ChannelRuntime.releaseFileImport(tenant)))
           .compose(na -> fileFinished)
           .onComplete(processing -> {
             if (processing.succeeded()) {
@@ -106,14 +139,28 @@ public class XmlFileProcessor extends FileProcessor {
     return promise.future();
   }
 
+  @Override
+  public void close() {
+    if (transformationStage instanceof ParallelTransformationStage parallelStage) {
+      parallelStage.close();
+    }
+  }
+
+  /**
+   * Gets the number of batches that fetched their existing records while waiting for batches ahead of them.
+   */
+  public int getPrefetchedBatches() {
+    return inventoryBatchUpdater.getPrefetchedBatches();
+  }
+
   public String getStats() {
-    String stats = "Transformation, records processed: " + transformationPipeline.getRecordsProcessed()
+    String stats = "Transformation, records processed: " + transformationStage.getRecordsProcessed()
         + ", Upserting, records processed: " + inventoryBatchUpdater.getRecordsProcessed()
         + ".";
-    if (transformationPipeline.getRecordsProcessed() > 0 && inventoryBatchUpdater.getRecordsProcessed() > 0) {
+    if (transformationStage.getRecordsProcessed() > 0 && inventoryBatchUpdater.getRecordsProcessed() > 0) {
       stats += " Transformation: "
-          + (transformationPipeline.getProcessingTime() > 0
-          ? (transformationPipeline.getRecordsProcessed() * 1000000000L / transformationPipeline.getProcessingTime())
+          + (transformationStage.getProcessingTime() > 0
+          ? (transformationStage.getRecordsProcessed() * 1000000000L / transformationStage.getProcessingTime())
           : " - ")
           + " recs/s."
           + " Upserting: "
@@ -121,6 +168,17 @@ public class XmlFileProcessor extends FileProcessor {
           ? (inventoryBatchUpdater.getRecordsProcessed() * 1000000000L / inventoryBatchUpdater.getProcessingTime())
           : " - ")
           + " recs/s.";
+      stats += " Batches in flight: " + inventoryBatchUpdater.getBatchesInFlight()
+          + " (max " + inventoryBatchUpdater.getMaxBatchesInFlight() + ")"
+          + " of window size " + inventoryBatchUpdater.getBatchWindowSize() + ", "
+          + inventoryBatchUpdater.getPrefetchedBatches() + " prefetched while waiting.";
+      if (transformationStage instanceof ParallelTransformationStage parallelStage
+          && parallelStage.getProcessingTime() > 0) {
+        stats += " Transformation workers: " + parallelStage.getWorkers()
+            + ", speed-up: " + String.format("%.1f", (double) parallelStage.getWorkerTime()
+            / parallelStage.getProcessingTime()) + "x.";
+      }
+      stats += " " + StorageLimiter.forTenant(tenant).report();
     }
     return stats;
   }
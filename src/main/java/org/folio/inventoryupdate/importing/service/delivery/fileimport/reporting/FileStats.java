@@ -7,6 +7,7 @@ public class FileStats {
   private final long startTimeNanos;
   private final InventoryMetrics metrics;
   private final AtomicInteger recordsProcessed = new AtomicInteger(0);
+  private String batchSizes;
 
   public FileStats(String fileName) {
     this.fileName = fileName;
@@ -37,4 +38,15 @@ public class FileStats {
   public int getRecordsProcessed() {
     return recordsProcessed.get();
   }
+
+  public void setBatchSizes(String batchSizes) {
+    this.batchSizes = batchSizes;
+  }
+
+  /**
+   * Summary of the sizes of the batches the file was upserted in, if reported.
+   */
+  public String getBatchSizes() {
+    return batchSizes;
+  }
 }
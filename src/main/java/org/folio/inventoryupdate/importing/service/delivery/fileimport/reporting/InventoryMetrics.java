@@ -6,6 +6,7 @@ import static org.folio.inventoryupdate.importing.service.delivery.fileimport.re
 import static org.folio.inventoryupdate.importing.service.delivery.fileimport.reporting.InventoryMetrics.Outcome.COMPLETED;
 import static org.folio.inventoryupdate.importing.service.delivery.fileimport.reporting.InventoryMetrics.Outcome.FAILED;
 import static org.folio.inventoryupdate.importing.service.delivery.fileimport.reporting.InventoryMetrics.Outcome.SKIPPED;
+import static org.folio.inventoryupdate.importing.service.delivery.fileimport.reporting.InventoryMetrics.Outcome.UNCHANGED;
 import static org.folio.inventoryupdate.importing.service.delivery.fileimport.reporting.InventoryMetrics.Transaction.CREATE;
 import static org.folio.inventoryupdate.importing.service.delivery.fileimport.reporting.InventoryMetrics.Transaction.DELETE;
 import static org.folio.inventoryupdate.importing.service.delivery.fileimport.reporting.InventoryMetrics.Transaction.PROVISIONAL_INSTANCE;
@@ -39,7 +40,8 @@ public class InventoryMetrics {
     PENDING,
     COMPLETED,
     FAILED,
-    SKIPPED
+    SKIPPED,
+    UNCHANGED
   }
 
   public InventoryMetrics() {
@@ -62,7 +64,7 @@ public class InventoryMetrics {
           metrics.get(entity).put(transaction, new EnumMap<>(Outcome.class));
           for (Outcome outcome : Outcome.values()) {
             int outcomeCount = metricsJson.getJsonObject(entity.name()).getJsonObject(transaction.name())
-                .getInteger(outcome.name());
+                .getInteger(outcome.name(), 0);
             metrics.get(entity).get(transaction).put(outcome, outcomeCount);
           }
         }
@@ -73,7 +75,7 @@ public class InventoryMetrics {
               metrics.get(entity).put(transaction, new EnumMap<>(Outcome.class));
               for (Outcome outcome : Outcome.values()) {
                 int outcomeCount = metricsJson.getJsonObject(entity.name()).getJsonObject(transaction.name())
-                    .getInteger(outcome.name());
+                    .getInteger(outcome.name(), 0);
                 metrics.get(entity).get(transaction).put(outcome, outcomeCount);
               }
             }
@@ -83,6 +85,34 @@ public class InventoryMetrics {
     }
   }
 
+  /**
+   * Metrics of source records that were skipped as unchanged since their last import, counted as instances.
+   */
+  public static InventoryMetrics unchangedInstances(int count) {
+    InventoryMetrics unchanged = new InventoryMetrics();
+    unchanged.metrics.get(INSTANCE).get(UPDATE).put(UNCHANGED, count);
+    return unchanged;
+  }
+
+  /**
+   * Metrics of source records that were rejected as invalid before the upsert, counted as skipped instance creates
+   * like an invalid record set of a batch of one.
+   */
+  public static InventoryMetrics invalidInstances(int count) {
+    InventoryMetrics invalid = new InventoryMetrics();
+    invalid.metrics.get(INSTANCE).get(CREATE).put(SKIPPED, count);
+    return invalid;
+  }
+
+  /**
+   * Metrics of source records that failed before the upsert, counted as failed instance creates.
+   */
+  public static InventoryMetrics failedInstances(int count) {
+    InventoryMetrics failed = new InventoryMetrics();
+    failed.metrics.get(INSTANCE).get(CREATE).put(FAILED, count);
+    return failed;
+  }
+
   public void add(InventoryMetrics delta) {
     for (Map.Entry<Entity, Map<Transaction, Map<Outcome, Integer>>> entity : delta.metrics.entrySet()) {
       for (Map.Entry<Transaction, Map<Outcome, Integer>> transaction : delta.metrics.get(entity.getKey()).entrySet()) {
@@ -118,7 +148,8 @@ public class InventoryMetrics {
         + " Skipped: " + metrics.get(INSTANCE).get(CREATE).get(SKIPPED) + "\n"
         + "Instance updates: " + metrics.get(INSTANCE).get(UPDATE).get(COMPLETED) + ". "
         + " Failed: " + metrics.get(INSTANCE).get(UPDATE).get(FAILED)
-        + " Skipped: " + metrics.get(INSTANCE).get(UPDATE).get(SKIPPED) + "\n"
+        + " Skipped: " + metrics.get(INSTANCE).get(UPDATE).get(SKIPPED)
+        + " Unchanged: " + metrics.get(INSTANCE).get(UPDATE).get(UNCHANGED) + "\n"
         + "Instance deletes: " + metrics.get(INSTANCE).get(DELETE).get(COMPLETED) + ". "
         + " Failed: " + metrics.get(INSTANCE).get(DELETE).get(FAILED)
         + " Skipped: " + metrics.get(INSTANCE).get(DELETE).get(SKIPPED) + "\n"
@@ -127,7 +158,8 @@ public class InventoryMetrics {
         + " Skipped: " + metrics.get(HOLDINGS_RECORD).get(CREATE).get(SKIPPED) + "\n"
         + "Holdings records updates: " + metrics.get(HOLDINGS_RECORD).get(UPDATE).get(COMPLETED) + ". "
         + " Failed: " + metrics.get(HOLDINGS_RECORD).get(UPDATE).get(FAILED)
-        + " Skipped: " + metrics.get(HOLDINGS_RECORD).get(UPDATE).get(SKIPPED) + "\n"
+        + " Skipped: " + metrics.get(HOLDINGS_RECORD).get(UPDATE).get(SKIPPED)
+        + " Unchanged: " + metrics.get(HOLDINGS_RECORD).get(UPDATE).get(UNCHANGED) + "\n"
         + "Holdings records deletes: " + metrics.get(HOLDINGS_RECORD).get(DELETE).get(COMPLETED) + ". "
         + " Failed: " + metrics.get(HOLDINGS_RECORD).get(DELETE).get(FAILED)
         + " Skipped: " + metrics.get(HOLDINGS_RECORD).get(DELETE).get(SKIPPED) + "\n"
@@ -136,7 +168,8 @@ public class InventoryMetrics {
         + " Skipped: " + metrics.get(ITEM).get(CREATE).get(SKIPPED) + "\n"
         + "Item updates: " + metrics.get(ITEM).get(UPDATE).get(COMPLETED) + ". "
         + " Failed: " + metrics.get(ITEM).get(UPDATE).get(FAILED)
-        + " Skipped: " + metrics.get(ITEM).get(UPDATE).get(SKIPPED) + "\n"
+        + " Skipped: " + metrics.get(ITEM).get(UPDATE).get(SKIPPED)
+        + " Unchanged: " + metrics.get(ITEM).get(UPDATE).get(UNCHANGED) + "\n"
         + "Item deletes: " + metrics.get(ITEM).get(DELETE).get(COMPLETED) + ". "
         + " Failed: " + metrics.get(ITEM).get(DELETE).get(FAILED)
         + " Skipped: " + metrics.get(ITEM).get(DELETE).get(SKIPPED);
@@ -19,7 +19,9 @@ import org.folio.inventoryupdate.importing.moduledata.database.Entity;
 import org.folio.inventoryupdate.importing.moduledata.database.EntityStorage;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.BatchOfRecords;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.FileProcessor;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.ProcessingRecord;
 import org.folio.inventoryupdate.importing.utils.SettableClock;
+import org.folio.inventoryupdate.updating.ErrorReport;
 
 public class Reporting {
 
@@ -54,7 +56,10 @@ public class Reporting {
     filesProcessed.incrementAndGet();
   }
 
-  public void incrementInventoryMetrics(InventoryMetrics metrics) {
+  /**
+   * Adds metrics of an upsert or delete. Synchronized since multiple batches may be completing at the same time.
+   */
+  public synchronized void incrementInventoryMetrics(InventoryMetrics metrics) {
     inventoryMetrics.add(metrics);
     if (fileStats.peek() != null) {
       fileStats.peek().addInventoryMetrics(metrics);
@@ -76,6 +81,15 @@ public class Reporting {
     return recordsProcessed.get();
   }
 
+  /**
+   * Adds a summary of the batch sizes to the statistics of the current file.
+   */
+  public void reportBatchSizes(String batchSizes) {
+    if (fileStats.peek() != null) {
+      fileStats.peek().setBatchSizes(batchSizes);
+    }
+  }
+
   /**
    * Reports at end-of-current file.
    */
@@ -95,7 +109,8 @@ public class Reporting {
         assert stats != null;
         log("File #" + filesProcessed.get() + " (" + stats.getFileName() + ") "
             + stats.getRecordsProcessed() + " records in " + processingTimeAsString(stats.processingTimeNanos())
-            + " (" + (stats.getRecordsProcessed() * NANOS_PER_SECOND / stats.processingTimeNanos()) + " recs/s.)")
+            + " (" + (stats.getRecordsProcessed() * NANOS_PER_SECOND / stats.processingTimeNanos()) + " recs/s.)"
+            + (stats.getBatchSizes() == null ? "" : " " + stats.getBatchSizes()))
             .compose(na -> log("File: " + stats.getInventoryMetrics().report()));
         fileStats.take();
       } else {
@@ -153,6 +168,35 @@ public class Reporting {
     }
   }
 
+  /**
+   * Stores a failure for a record that was rejected before the upsert, with the errors found in it.
+   */
+  public Future<Void> reportInvalidRecord(ProcessingRecord invalidRecord, List<ErrorReport> errors) {
+    JsonObject recordSet = invalidRecord.getRecordAsJson();
+    JsonArray recordErrors = new JsonArray();
+    for (ErrorReport error : errors) {
+      recordErrors.addAll(error.getMessage().getJsonArray("errors",
+          new JsonArray().add(new JsonObject().put("message", error.getShortMessage()))));
+    }
+    try {
+      return storage.storeEntities(List.of(new RecordFailure(UUID.randomUUID(),
+          fileProcessor.getImportJob().getRecord().id(),
+          fileProcessor.getImportConfigId(),
+          fileProcessor.getImportJob().getRecord().channelName(),
+          recordSet.getJsonObject("instance") == null ? null
+              : recordSet.getJsonObject("instance").getString("hrid"),
+          SettableClock.getLocalDateTime().toString(),
+          invalidRecord.getOriginalRecordAsString(),
+          recordErrors,
+          recordSet,
+          fileStats.peek() == null ? null : fileStats.peek().getFileName()
+      ).withCreatingUser(null)));
+    } catch (Exception e) {
+      logger.error("Exception storing invalid record: {}.", e.getMessage());
+      return Future.failedFuture("Exception storing invalid record: " + e.getMessage());
+    }
+  }
+
   private static String getInstanceHridFromErrorResponse(JsonObject errorJson) {
     if (errorJson != null && errorJson.getJsonObject("requestJson") != null
         && errorJson.getJsonObject("requestJson").containsKey("instance")) {
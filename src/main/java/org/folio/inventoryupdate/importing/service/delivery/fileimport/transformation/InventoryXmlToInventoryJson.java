@@ -4,12 +4,8 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import java.io.IOException;
 import java.io.StringReader;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import javax.xml.parsers.ParserConfigurationException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -19,6 +15,14 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+/**
+ * Converts Inventory XML to Inventory JSON.
+ *
+ * <p/>The first element in the root element becomes the JSON object, with elements named `record` merged into
+ * their parent object. An element with child elements becomes a JSON object, or a JSON array if its first child
+ * is an `arr` element, in which case the children of the `arr` element(s) become the array entries. An element
+ * with text only becomes a string property, and an empty element is left out.
+ */
 public final class InventoryXmlToInventoryJson {
 
   public static final Logger logger = LogManager.getLogger("InventoryXmlToInventoryJson");
@@ -28,118 +32,156 @@ public final class InventoryXmlToInventoryJson {
   }
 
   public static JsonObject convert(String xmlStr) {
-    JsonObject genericJson = parseXmlToJson(xmlStr);
-    JsonObject inventoryJson = makeInventoryJson(genericJson);
-    inventoryJson.remove("original");
-    return inventoryJson;
-  }
-
-  public static JsonObject parseXmlToJson(String xmlStr) {
     try {
-      XmlToJsonHandler handler = new XmlToJsonHandler();
+      InventoryJsonHandler handler = new InventoryJsonHandler();
       SecureSaxParser.get().parse(new InputSource(new StringReader(xmlStr)), handler);
-      return handler.getResultAsJson();
+      JsonObject inventoryJson = handler.getResultAsJson();
+      inventoryJson.remove("original");
+      return inventoryJson;
     } catch (ParserConfigurationException | SAXException | IOException e) {
       logger.error("Error parsing XML to JSON: {}", e.getMessage());
     }
     return new JsonObject();
   }
 
-  private static JsonObject makeInventoryJson(JsonObject genericJson) {
-    JsonObject json = new JsonObject();
-    if (genericJson.containsKey("children")) {
-      return makeInventoryJsonObjects(json, genericJson.getJsonArray("children").getJsonObject(0));
+  /**
+   * SAX handler building the Inventory JSON in a single pass over the XML. What an element turns into is decided
+   * when its first child element starts, or when it ends if it has no child elements.
+   */
+  public static class InventoryJsonHandler extends DefaultHandler {
+
+    private enum Kind {
+      // The document element, only its first child is converted.
+      ROOT,
+      // Elements outside the first child of the document element.
+      IGNORED,
+      // A property of a JSON object; a nested object, an array, or a string.
+      PROPERTY,
+      // An `arr` element (or a sibling of it) in an array property, holding the entries of the array.
+      ARRAY_ENTRIES,
+      // An entry in an array; an object or a string.
+      ARRAY_ENTRY
     }
-    return json;
-  }
 
-  private static JsonObject makeInventoryJsonObjects(JsonObject toJson, JsonObject genericJson) {
-    String propertyName = genericJson.getString("name");
-    if (genericJson.containsKey("children")) {
-      JsonArray childProperties = genericJson.getJsonArray("children");
-      if (childProperties.getJsonObject(0).getString("name").equals("arr")) {
-        JsonArray toArray = new JsonArray();
-        toJson.put(genericJson.getString("name"), toArray);
-        makeInventoryJsonArray(toArray, childProperties);
-      } else {
-        if (propertyName.equals("record")) {
-          for (Object childProperty : childProperties) {
-            makeInventoryJsonObjects(toJson, (JsonObject) childProperty);
-          }
-        } else {
-          JsonObject toProperty = new JsonObject();
-          toJson.put(propertyName, toProperty);
-          for (Object childProperty : childProperties) {
-            makeInventoryJsonObjects(toProperty, (JsonObject) childProperty);
-          }
-        }
-      }
-    } else if (genericJson.containsKey("text")) {
-      toJson.put(propertyName, genericJson.getString("text"));
+    private static final class Frame {
+      private Kind kind;
+      private String name;
+      private JsonObject parentObject;
+      private JsonArray parentArray;
+      private JsonObject object;
+      private JsonArray array;
+      private boolean hasChildren;
+      private final StringBuilder text = new StringBuilder();
     }
-    return toJson;
-  }
 
-  private static void makeInventoryJsonArray(JsonArray toJsonArray, JsonArray genericJsonArray) {
-    for (Object o : genericJsonArray) {
-      JsonObject element = (JsonObject) o;
-      if (element.containsKey("children")) {
-        for (Object child : element.getJsonArray("children")) {
-          if (((JsonObject) child).containsKey("children")) {
-            // array of objects
-            JsonObject arrayElement = new JsonObject();
-            JsonArray children = ((JsonObject) child).getJsonArray("children");
-            for (Object prop : children) {
-              makeInventoryJsonObjects(arrayElement, (JsonObject) prop);
+    private final JsonObject result = new JsonObject();
+    // Frames are reused for elements at the same depth.
+    private final List<Frame> frames = new ArrayList<>();
+    private int depth = 0;
+
+    @Override
+    public void startElement(String uri, String localName, String qqName, Attributes attributes) {
+      Frame parent = depth > 0 ? frames.get(depth - 1) : null;
+      Frame frame = push(qqName);
+      if (parent == null) {
+        frame.kind = Kind.ROOT;
+        return;
+      }
+      boolean firstChild = !parent.hasChildren;
+      parent.hasChildren = true;
+      switch (parent.kind) {
+        case ROOT -> {
+          frame.kind = firstChild ? Kind.PROPERTY : Kind.IGNORED;
+          frame.parentObject = result;
+        }
+        case PROPERTY -> {
+          if (firstChild) {
+            if (qqName.equals("arr")) {
+              parent.array = new JsonArray();
+              parent.parentObject.put(parent.name, parent.array);
+            } else if (parent.name.equals("record")) {
+              parent.object = parent.parentObject;
+            } else {
+              parent.object = new JsonObject();
+              parent.parentObject.put(parent.name, parent.object);
             }
-            toJsonArray.add(arrayElement);
-          } else if (((JsonObject) child).containsKey("text")) {
-            // array of strings
-            toJsonArray.add(((JsonObject) child).getString("text"));
           }
+          if (parent.array != null) {
+            frame.kind = Kind.ARRAY_ENTRIES;
+            frame.parentArray = parent.array;
+          } else {
+            frame.kind = Kind.PROPERTY;
+            frame.parentObject = parent.object;
+          }
+        }
+        case ARRAY_ENTRIES -> {
+          frame.kind = Kind.ARRAY_ENTRY;
+          frame.parentArray = parent.parentArray;
         }
+        case ARRAY_ENTRY -> {
+          if (firstChild) {
+            parent.object = new JsonObject();
+            parent.parentArray.add(parent.object);
+          }
+          frame.kind = Kind.PROPERTY;
+          frame.parentObject = parent.object;
+        }
+        default -> frame.kind = Kind.IGNORED;
       }
     }
-  }
-
-  // SAX parser, XML-to-JSON.
-  public static class XmlToJsonHandler extends DefaultHandler {
-    private final Deque<Map<String, Object>> stack = new ArrayDeque<>();
-    private Map<String, Object> currentData = new HashMap<>();
 
-    @Override
-    public void startElement(String uri, String localName, String qqName, Attributes attributes) {
-      Map<String, Object> element = new HashMap<>();
-      element.put("name", qqName);
-      if (!stack.isEmpty()) {
-        stack.peek().computeIfAbsent("children", k -> new ArrayList<Map<String, Object>>());
-        ((List<Map<String, Object>>) stack.peek().get("children")).add(element);
+    private Frame push(String name) {
+      if (frames.size() == depth) {
+        frames.add(new Frame());
       }
-      stack.push(element);
+      Frame frame = frames.get(depth++);
+      frame.name = name;
+      frame.parentObject = null;
+      frame.parentArray = null;
+      frame.object = null;
+      frame.array = null;
+      frame.hasChildren = false;
+      frame.text.setLength(0);
+      return frame;
     }
 
     @Override
     public void endElement(String uri, String localName, String qqName) {
-      if (!stack.isEmpty()) {
-        currentData = stack.pop();
+      if (depth == 0) {
+        return;
+      }
+      Frame frame = frames.get(--depth);
+      if (!frame.hasChildren && !frame.text.isEmpty()) {
+        if (frame.kind == Kind.PROPERTY) {
+          frame.parentObject.put(frame.name, frame.text.toString());
+        } else if (frame.kind == Kind.ARRAY_ENTRY) {
+          frame.parentArray.add(frame.text.toString());
+        }
       }
     }
 
     @Override
     public void characters(char[] ch, int start, int length) {
-      String content = new String(ch, start, length).trim();
-      if (!content.isEmpty()) {
-        stack.peek().putIfAbsent("text", "");
-        // Concatenating because text with entities (i.e. &gt;) is reported in parts..
-        stack.peek().put("text", stack.peek().get("text") + content);
+      if (depth == 0) {
+        return;
+      }
+      Frame frame = frames.get(depth - 1);
+      if (frame.hasChildren || (frame.kind != Kind.PROPERTY && frame.kind != Kind.ARRAY_ENTRY)) {
+        return;
+      }
+      // Text with entities (i.e. &gt;) is reported in parts, each part is trimmed and appended.
+      int end = start + length;
+      while (start < end && ch[start] <= ' ') {
+        start++;
+      }
+      while (end > start && ch[end - 1] <= ' ') {
+        end--;
       }
+      frame.text.append(ch, start, end - start);
     }
 
     public JsonObject getResultAsJson() {
-      return new JsonObject(currentData);
+      return result;
     }
   }
 }
-
-
-
@@ -0,0 +1,173 @@
+package org.folio.inventoryupdate.importing.service.delivery.fileimport.transformation;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.FileProcessor;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.ProcessingRecord;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.RecordReceiver;
+
+/**
+ * Runs the transformation pipeline for incoming records on a bounded pool of worker threads and forwards
+ * the transformed records to the target in the order they were received.
+ *
+ * <p/>Records are submitted to the workers as they arrive from the SAX reader. A reorder buffer holds the
+ * pending transformations in source order; the head of the buffer is handed off to the target once done,
+ * or when the buffer is full, so the target receives exactly the same sequence of records as with
+ * sequential transformation, on the thread of the reader. A record that fails to transform is logged and
+ * counted as failed, and the stage goes on with the next record.
+ */
+public final class ParallelTransformationStage implements RecordReceiver {
+
+  public static final Logger logger = LogManager.getLogger("TransformationPipeline");
+  private static final int BUFFERED_RECORDS_PER_WORKER = 4;
+  private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+  private final XmlTransformationPipeline pipeline;
+  private final RecordReceiver target;
+  private final FileProcessor fileProcessor;
+  private final int workers;
+  private final int bufferSize;
+  private final ThreadPoolExecutor executor;
+  private final Deque<Future<ProcessingRecord>> reorderBuffer = new ArrayDeque<>();
+  private final AtomicLong workerTime = new AtomicLong();
+  private int records = 0;
+  private long documentStarted = 0;
+  private long handOffTime = 0;
+  private long transformationTime = 0;
+
+  /**
+   * Constructor.
+   *
+   * @param pipeline      the XSLT pipeline, used for transformations only, not for forwarding records
+   * @param target        receiver of the transformed records, in source order
+   * @param fileProcessor the file processor, for counting the records that failed to transform
+   * @param workers       number of transformation threads
+   */
+  public ParallelTransformationStage(XmlTransformationPipeline pipeline, RecordReceiver target,
+                                     FileProcessor fileProcessor, int workers) {
+    this.pipeline = pipeline;
+    this.target = target;
+    this.fileProcessor = fileProcessor;
+    this.workers = Math.max(1, workers);
+    this.bufferSize = this.workers * BUFFERED_RECORDS_PER_WORKER;
+    final String threadPrefix = "xslt-worker-" + POOL_COUNTER.incrementAndGet() + "-";
+    final AtomicInteger threadNumber = new AtomicInteger();
+    executor = new ThreadPoolExecutor(this.workers, this.workers, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<>(), runnable -> {
+          Thread thread = new Thread(runnable, threadPrefix + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    // Lets an idle stage release its threads, for example if a file failed to parse midway.
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Drops transformations possibly left behind by a previous document that failed midway.
+   */
+  @Override
+  public void startOfDocument() {
+    discardBuffer();
+  }
+
+  @Override
+  public void put(ProcessingRecord processingRecord) {
+    if (documentStarted == 0) {
+      documentStarted = System.nanoTime();
+      handOffTime = 0;
+    }
+    records++;
+    if (reorderBuffer.size() >= bufferSize) {
+      handOff(reorderBuffer.poll());
+    }
+    reorderBuffer.add(executor.submit(() -> {
+      long started = System.nanoTime();
+      pipeline.transformRecord(processingRecord);
+      workerTime.addAndGet(System.nanoTime() - started);
+      return processingRecord;
+    }));
+    while (!reorderBuffer.isEmpty() && reorderBuffer.peek().isDone()) {
+      handOff(reorderBuffer.poll());
+    }
+  }
+
+  @Override
+  public void endOfDocument() {
+    while (!reorderBuffer.isEmpty()) {
+      handOff(reorderBuffer.poll());
+    }
+    if (documentStarted > 0) {
+      transformationTime += System.nanoTime() - documentStarted - handOffTime;
+      documentStarted = 0;
+    }
+    target.endOfDocument();
+  }
+
+  private void handOff(Future<ProcessingRecord> transformation) {
+    ProcessingRecord processingRecord;
+    try {
+      processingRecord = transformation.get();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      discardBuffer();
+      throw new IllegalStateException("Interrupted while waiting for XSLT transformation of record", ie);
+    } catch (ExecutionException ee) {
+      if (ee.getCause() instanceof Error error) {
+        discardBuffer();
+        throw error;
+      }
+      logger.error("Transformation of record failed, skipping the record: {}", ee.getCause().getMessage());
+      fileProcessor.countFailedRecord();
+      return;
+    }
+    long handOffStarted = System.nanoTime();
+    target.put(processingRecord);
+    handOffTime += System.nanoTime() - handOffStarted;
+  }
+
+  private void discardBuffer() {
+    reorderBuffer.forEach(pending -> pending.cancel(true));
+    reorderBuffer.clear();
+    documentStarted = 0;
+  }
+
+  /**
+   * Stops taking new transformations and lets the worker threads end once the submitted ones are done.
+   */
+  public void close() {
+    executor.shutdown();
+  }
+
+  public int getWorkers() {
+    return workers;
+  }
+
+  /**
+   * Sum of the time the workers have spent transforming records, for comparison with the elapsed
+   * transformation time reported by {@link #getProcessingTime()}.
+   */
+  public long getWorkerTime() {
+    return workerTime.get();
+  }
+
+  /**
+   * Elapsed time of the transformation stage, not counting the time spent passing records on to the target.
+   */
+  @Override
+  public long getProcessingTime() {
+    return transformationTime;
+  }
+
+  @Override
+  public int getRecordsProcessed() {
+    return records;
+  }
+}
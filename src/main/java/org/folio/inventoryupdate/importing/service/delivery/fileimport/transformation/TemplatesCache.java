@@ -0,0 +1,114 @@
+package org.folio.inventoryupdate.importing.service.delivery.fileimport.transformation;
+
+import io.vertx.core.json.JsonObject;
+import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.inventoryupdate.importing.moduledata.Step;
+
+/**
+ * Module-wide cache of compiled XSLT stylesheets, shared by the import jobs of all channels.
+ *
+ * <p/>Entries are keyed by tenant, step ID, and the last update date of the step, so that a changed
+ * stylesheet is recompiled even if the explicit invalidation on step updates should be missed.
+ * Least recently used entries are evicted when the cache is full.
+ */
+public final class TemplatesCache {
+
+  public static final Logger logger = LogManager.getLogger("TransformationPipeline");
+  private static final int MAX_ENTRIES = 500;
+  private static final AtomicLong HITS = new AtomicLong();
+  private static final AtomicLong MISSES = new AtomicLong();
+  private static final AtomicLong EVICTIONS = new AtomicLong();
+  private static final Map<Key, Templates> CACHE = new LinkedHashMap<>(64, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Templates> eldest) {
+      if (size() > MAX_ENTRIES) {
+        EVICTIONS.incrementAndGet();
+        return true;
+      }
+      return false;
+    }
+  };
+
+  private TemplatesCache() {
+    throw new UnsupportedOperationException("Static cache");
+  }
+
+  /**
+   * Gets compiled templates for the step from the cache, or compiles and caches them.
+   *
+   * @param tenant      the tenant that owns the step
+   * @param step        the transformation step with the XSLT
+   * @param updatedDate date of the last update of the step, part of the cache key
+   * @param factory     factory to compile the stylesheet with, in case of a cache miss
+   * @return compiled stylesheet
+   * @throws TransformerConfigurationException if the stylesheet could not be compiled
+   */
+  public static Templates getTemplates(String tenant, Step step, String updatedDate, TransformerFactory factory)
+      throws TransformerConfigurationException {
+    Key key = new Key(tenant, step.getId(), updatedDate);
+    synchronized (CACHE) {
+      Templates templates = CACHE.get(key);
+      if (templates != null) {
+        HITS.incrementAndGet();
+        return templates;
+      }
+    }
+    MISSES.incrementAndGet();
+    Templates templates = factory.newTemplates(new StreamSource(new StringReader(step.getLineSeparatedXslt())));
+    synchronized (CACHE) {
+      CACHE.put(key, templates);
+    }
+    return templates;
+  }
+
+  /**
+   * Removes all compiled versions of the step from the cache.
+   */
+  public static void invalidate(String tenant, UUID stepId) {
+    synchronized (CACHE) {
+      if (CACHE.keySet().removeIf(key -> key.tenant().equals(tenant) && key.stepId().equals(stepId))) {
+        logger.debug("Removed compiled XSLT of step {} from templates cache", stepId);
+      }
+    }
+  }
+
+  /**
+   * Removes all compiled stylesheets of the tenant from the cache.
+   */
+  public static void clear(String tenant) {
+    synchronized (CACHE) {
+      CACHE.keySet().removeIf(key -> key.tenant().equals(tenant));
+    }
+  }
+
+  /**
+   * Gets cache counters, the number of entries for the given tenant, and the size of the cache in total.
+   */
+  public static JsonObject getStats(String tenant) {
+    long hits = HITS.get();
+    long misses = MISSES.get();
+    JsonObject stats = new JsonObject();
+    synchronized (CACHE) {
+      stats.put("tenantEntries", CACHE.keySet().stream().filter(key -> key.tenant().equals(tenant)).count());
+      stats.put("totalEntries", CACHE.size());
+    }
+    return stats.put("maxEntries", MAX_ENTRIES)
+        .put("hits", hits)
+        .put("misses", misses)
+        .put("evictions", EVICTIONS.get())
+        .put("hitRatio", hits + misses > 0 ? (double) hits / (hits + misses) : 0.0);
+  }
+
+  private record Key(String tenant, UUID stepId, String updatedDate) {
+  }
+}
@@ -26,20 +26,39 @@ public class XmlRecordsReader extends DefaultHandler implements RecordProvider,
   StringBuilder theCollectionElement = new StringBuilder();
   RecordReceiver target;
   final String xmlCollectionOfRecords;
+  final SourceFile xmlFile;
+  long recordsToSkip;
+  long sourcePosition;
 
-  public XmlRecordsReader(SourceFile xmlFile, RecordReceiver target) throws Exception {
-    this(xmlFile.getPayload(), target);
+  /**
+   * Reads the records from the file as a stream, without loading the entire file into memory.
+   */
+  public XmlRecordsReader(SourceFile xmlFile, RecordReceiver target) {
+    this.xmlFile = xmlFile;
+    this.xmlCollectionOfRecords = null;
+    this.target = target;
   }
 
   public XmlRecordsReader(String recordsSource, RecordReceiver target) {
+    this.xmlFile = null;
     this.xmlCollectionOfRecords = recordsSource;
     this.target = target;
   }
 
+  /**
+   * Parses past the given number of records at the start of the source without forwarding them, for resuming an
+   * import after the records that are already committed.
+   */
+  public XmlRecordsReader skippingRecords(long records) {
+    this.recordsToSkip = records;
+    return this;
+  }
+
   @Override
   public void provideRecords() throws ProcessingException {
-    try {
-      InputStream inputStream = new ByteArrayInputStream(xmlCollectionOfRecords.getBytes(StandardCharsets.UTF_8));
+    try (InputStream inputStream = xmlFile != null
+        ? xmlFile.openPayload()
+        : new ByteArrayInputStream(xmlCollectionOfRecords.getBytes(StandardCharsets.UTF_8))) {
       SecureSaxParser.get().parse(inputStream, this);
     } catch (ParserConfigurationException | SAXException | IOException e) {
       logger.error("SaxParsing error: {}", e.getMessage());
@@ -79,17 +98,27 @@ public class XmlRecordsReader extends DefaultHandler implements RecordProvider,
   public void endElement(String uri, String localName, String qqName) {
     theRecord.append("</").append(qqName).append(">");
     if (localName.equals("record")) {
-      String collectionOfOneRecord =
-          theCollectionElement
-          + System.lineSeparator()
-          + "  " + theRecord
-          + System.lineSeparator()
-          + "</collection>";
-      target.put(new ProcessingRecord(collectionOfOneRecord));
+      sourcePosition++;
+      if (sourcePosition > recordsToSkip) {
+        String collectionOfOneRecord =
+            theCollectionElement
+            + System.lineSeparator()
+            + "  " + theRecord
+            + System.lineSeparator()
+            + "</collection>";
+        ProcessingRecord processingRecord = new ProcessingRecord(collectionOfOneRecord);
+        processingRecord.setSourcePosition(sourcePosition);
+        target.put(processingRecord);
+      }
       theRecord = new StringBuilder();
     }
   }
 
+  @Override
+  public void startDocument() {
+    target.startOfDocument();
+  }
+
   @Override
   public void endDocument() {
     target.endOfDocument();
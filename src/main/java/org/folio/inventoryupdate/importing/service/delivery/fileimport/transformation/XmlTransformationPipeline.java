@@ -9,36 +9,53 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.folio.inventoryupdate.importing.moduledata.Metadata;
 import org.folio.inventoryupdate.importing.moduledata.Step;
 import org.folio.inventoryupdate.importing.moduledata.TransformationStep;
 import org.folio.inventoryupdate.importing.moduledata.database.Entity;
 import org.folio.inventoryupdate.importing.moduledata.database.EntityStorage;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.FileProcessor;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.ProcessingRecord;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.RecordReceiver;
 
 /**
  * An XSLT transformation pipeline with an XML to JSON conversion at the end.
+ *
+ * <p/>By default, each step parses the output of the previous step from a string and serializes its own output
+ * to a string. With chained steps, the steps are instead connected through SAX events, so that only the output
+ * of the last step is serialized.
  */
 public final class XmlTransformationPipeline implements RecordReceiver {
 
   public static final Logger logger = LogManager.getLogger("TransformationPipeline");
   private final List<Templates> listOfTemplates = new ArrayList<>();
+  private final List<String> stepScripts = new ArrayList<>();
+  private final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+  // Transformers for each step, reused by the thread that created them.
+  private final ThreadLocal<Transformer[]> transformers = new ThreadLocal<>();
   private RecordReceiver receiverOfTransformedRecord;
+  private FileProcessor fileProcessor;
   private int records = 0;
   private long transformationTime = 0;
   private boolean convertToJson = true;
+  private boolean chainSteps = false;
 
-  private XmlTransformationPipeline(JsonObject transformation) {
-    setTemplates(transformation);
+  private XmlTransformationPipeline(String tenant, JsonObject transformation) {
+    setTemplates(tenant, transformation);
   }
 
   public XmlTransformationPipeline withTarget(RecordReceiver receiver) {
@@ -48,11 +65,36 @@ public final class XmlTransformationPipeline implements RecordReceiver {
     return this;
   }
 
+  /**
+   * Sets the file processor to count records that fail to transform with.
+   */
+  public XmlTransformationPipeline forFileProcessor(FileProcessor processor) {
+    fileProcessor = processor;
+    return this;
+  }
+
   public XmlTransformationPipeline withXmlToJsonConversion(boolean convert) {
     convertToJson = convert;
     return this;
   }
 
+  /**
+   * Sets whether to stream the output of each step directly into the next step, rather than passing the
+   * intermediate results on as serialized XML.
+   */
+  public XmlTransformationPipeline withChainedSteps(boolean chain) {
+    chainSteps = chain && listOfTemplates.size() > 1
+        && transformerFactory.getFeature(SAXTransformerFactory.FEATURE);
+    return this;
+  }
+
+  /**
+   * Gets the XSLT of the steps, in the order they are run.
+   */
+  public List<String> getStepScripts() {
+    return stepScripts;
+  }
+
   public static Future<XmlTransformationPipeline> create(Vertx vertx, String tenant, UUID transformationId) {
     EntityStorage access = new EntityStorage(vertx, tenant);
     TransformationStep tsasDef = new TransformationStep();
@@ -70,46 +112,85 @@ public final class XmlTransformationPipeline implements RecordReceiver {
             o.getJsonObject("step").put("entityType", "xmlTransformationStep");
             json.getJsonArray("stepAssociations").add(o);
           }
-          return new XmlTransformationPipeline(json);
+          return new XmlTransformationPipeline(tenant, json);
         })
         .onFailure(handler -> logger.error("Problem retrieving steps {}", handler.getMessage()));
   }
 
   private String transform(String xmlRecord) {
+    if (chainSteps) {
+      try {
+        return transformChained(xmlRecord);
+      } catch (TransformerException e) {
+        // Runs the steps one by one to pass on the output of the steps up to the failing one, as without chaining.
+        transformers.remove();
+        logger.error("Error XSLT transforming the XML in chained steps: {}, retrying step by step", e.getMessage());
+      }
+    }
     String transformedRecord = xmlRecord;
-    for (Templates templates : listOfTemplates) {
-      transformedRecord = transform(transformedRecord, templates);
+    for (int step = 0; step < listOfTemplates.size(); step++) {
+      transformedRecord = transform(transformedRecord, step);
     }
     return transformedRecord;
   }
 
-  private String transform(String xmlRecord, Templates templates) {
+  private String transform(String xmlRecord, int step) {
     try {
       Source sourceXml = new StreamSource(new StringReader(xmlRecord));
       StreamResult resultXmlStream = new StreamResult(new StringWriter());
-      Transformer transformer = templates.newTransformer();
-      transformer.transform(sourceXml, resultXmlStream);
+      getTransformer(step).transform(sourceXml, resultXmlStream);
       return resultXmlStream.getWriter().toString();
     } catch (TransformerException e) {
+      transformers.remove();
       logger.error("Error XSLT transforming the XML: {}, passing on original XML", e.getMessage());
       return xmlRecord;
     }
   }
 
+  /**
+   * Runs all steps in one pass, with each step feeding its result tree as SAX events to the next step. The
+   * first step reuses the transformer of the thread. The following steps take handlers created for the record
+   * from the compiled templates, since a TransformerHandler is not serially reusable: it takes one document only.
+   */
+  private String transformChained(String xmlRecord) throws TransformerException {
+    SAXTransformerFactory saxTransformerFactory = (SAXTransformerFactory) transformerFactory;
+    StringWriter writer = new StringWriter();
+    Result result = new StreamResult(writer);
+    for (int step = listOfTemplates.size() - 1; step > 0; step--) {
+      TransformerHandler handler = saxTransformerFactory.newTransformerHandler(listOfTemplates.get(step));
+      handler.setResult(result);
+      result = new SAXResult(handler);
+    }
+    getTransformer(0).transform(new StreamSource(new StringReader(xmlRecord)), result);
+    return writer.toString();
+  }
+
+  private Transformer getTransformer(int step) throws TransformerConfigurationException {
+    Transformer[] threadTransformers = transformers.get();
+    if (threadTransformers == null) {
+      threadTransformers = new Transformer[listOfTemplates.size()];
+      transformers.set(threadTransformers);
+    }
+    if (threadTransformers[step] == null) {
+      threadTransformers[step] = listOfTemplates.get(step).newTransformer();
+    }
+    return threadTransformers[step];
+  }
+
   private JsonObject convertToJson(String xmlRecord) {
     return InventoryXmlToInventoryJson.convert(xmlRecord);
   }
 
-  private void setTemplates(JsonObject transformation) {
-    TransformerFactory transformerFactory = TransformerFactory.newInstance();
+  private void setTemplates(String tenant, JsonObject transformation) {
     for (Object o : transformation.getJsonArray("stepAssociations")) {
       JsonObject stepJson = ((JsonObject) o).getJsonObject("step");
       Step step = new Step().fromJson(stepJson);
       try {
         if (stepJson.getString("entityType").equals("xmlTransformationStep")) {
-          String script = step.getLineSeparatedXslt();
-          Source xslt = new StreamSource(new StringReader(script));
-          listOfTemplates.add(transformerFactory.newTemplates(xslt));
+          JsonObject metadata = stepJson.getJsonObject(Metadata.METADATA_PROPERTY, new JsonObject());
+          String lastUpdated = metadata.getString("updatedDate", metadata.getString("createdDate"));
+          listOfTemplates.add(TemplatesCache.getTemplates(tenant, step, lastUpdated, transformerFactory));
+          stepScripts.add(stepJson.getString("script", ""));
         }
       } catch (Exception e) {
         logger.error("Failed to parse the XSLT template sources for step {}: {}",
@@ -122,16 +203,34 @@ public final class XmlTransformationPipeline implements RecordReceiver {
   public void put(ProcessingRecord processingRecord) {
     final long transformationStarted = System.nanoTime();
     records++;
+    try {
+      transformRecord(processingRecord);
+    } catch (RuntimeException e) {
+      // Skips the record, like the parallel transformation stage does
+      logger.error("Transformation of record failed, skipping the record: {}", e.getMessage());
+      if (fileProcessor != null) {
+        fileProcessor.countFailedRecord();
+      }
+      return;
+    } finally {
+      transformationTime += System.nanoTime() - transformationStarted;
+    }
+    receiverOfTransformedRecord.put(processingRecord);
+  }
+
+  /**
+   * Transforms the record in place without forwarding it. Safe to call from multiple threads, since the
+   * compiled templates are thread-safe and each thread uses its own transformers.
+   */
+  public void transformRecord(ProcessingRecord processingRecord) {
     String transformedXmlRecord = transform(processingRecord.getRecordAsString());
     if (convertToJson) {
       JsonObject jsonRecord = convertToJson(transformedXmlRecord);
       processingRecord.setIsDeletion(jsonRecord.containsKey("delete"));
-      processingRecord.update(jsonRecord.encodePrettily());
+      processingRecord.update(jsonRecord);
     } else {
       processingRecord.update(transformedXmlRecord);
     }
-    transformationTime += System.nanoTime() - transformationStarted;
-    receiverOfTransformedRecord.put(processingRecord);
   }
 
   @Override
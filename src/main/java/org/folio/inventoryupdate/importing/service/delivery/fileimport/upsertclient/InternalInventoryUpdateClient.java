@@ -5,13 +5,20 @@ import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.RoutingContext;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.folio.inventoryupdate.updating.DeletePlan;
 import org.folio.inventoryupdate.updating.DeletePlanAllHRIDs;
 import org.folio.inventoryupdate.updating.InventoryQuery;
+import org.folio.inventoryupdate.updating.InventoryStorage;
 import org.folio.inventoryupdate.updating.QueryByHrid;
 import org.folio.inventoryupdate.updating.UpdatePlanAllHRIDs;
+import org.folio.inventoryupdate.updating.entities.FetchedRecords;
 import org.folio.inventoryupdate.updating.service.HandlersUpdating;
 
 public class InternalInventoryUpdateClient extends InventoryUpdateClient {
@@ -29,7 +36,54 @@ public class InternalInventoryUpdateClient extends InventoryUpdateClient {
   @Override
   public Future<UpdateResponse> inventoryDeletion(JsonObject theRecord) {
     InventoryQuery queryByInstanceHrid = new QueryByHrid(theRecord.getString("hrid"));
-    DeletePlan deletePlan = DeletePlanAllHRIDs.getDeletionPlan(queryByInstanceHrid);
+    return runDeletionPlan(DeletePlanAllHRIDs.getDeletionPlan(queryByInstanceHrid), theRecord);
+  }
+
+  /**
+   * Looks up the instances to delete, ten per request, and then deletes them concurrently. If the same instance
+   * is to be deleted more than once, the repeated deletions run after the first one, with their own lookups.
+   * If the combined lookup fails, each deletion looks up its own instance.
+   */
+  @Override
+  public Future<List<UpdateResponse>> inventoryDeletions(List<JsonObject> deletionRecords) {
+    if (deletionRecords.isEmpty()) {
+      return Future.succeededFuture(new ArrayList<>());
+    }
+    List<String> hrids = deletionRecords.stream()
+        .map(deletionRecord -> deletionRecord.getString("hrid"))
+        .filter(Objects::nonNull)
+        .distinct()
+        .toList();
+    InternalInventoryDeleteRequest lookupRequest =
+        new InternalInventoryDeleteRequest(vertx, routingContext, deletionRecords.getFirst());
+    return InventoryStorage.lookupInventoryRecordSetsByHrids(lookupRequest, hrids)
+        .recover(e -> {
+          logger.warn("Could not look up instances to delete together, looking up one by one: {}", e.getMessage());
+          return Future.succeededFuture(null);
+        })
+        .compose(existingRecordSets -> {
+          Map<String, Future<UpdateResponse>> latestDeletionByHrid = new HashMap<>();
+          List<Future<UpdateResponse>> deletions = new ArrayList<>();
+          for (JsonObject deletionRecord : deletionRecords) {
+            String hrid = deletionRecord.getString("hrid");
+            Future<UpdateResponse> previous = latestDeletionByHrid.get(hrid);
+            Future<UpdateResponse> deletion;
+            if (previous != null) {
+              deletion = previous.transform(na -> inventoryDeletion(deletionRecord));
+            } else if (existingRecordSets != null) {
+              deletion = runDeletionPlan(DeletePlanAllHRIDs.getDeletionPlan(new QueryByHrid(hrid))
+                  .withPrefetchedRecordSet(existingRecordSets.get(hrid)), deletionRecord);
+            } else {
+              deletion = inventoryDeletion(deletionRecord);
+            }
+            latestDeletionByHrid.put(hrid, deletion);
+            deletions.add(deletion);
+          }
+          return Future.join(deletions).map(done -> done.<UpdateResponse>list());
+        });
+  }
+
+  private Future<UpdateResponse> runDeletionPlan(DeletePlan deletePlan, JsonObject theRecord) {
     InternalInventoryDeleteRequest deleteRequest = new InternalInventoryDeleteRequest(vertx, routingContext, theRecord);
     return deletePlan.runDeletionPlan(deleteRequest).map(outcome -> {
       JsonObject outcomeJson = outcome.getJson();
@@ -47,9 +101,14 @@ public class InternalInventoryUpdateClient extends InventoryUpdateClient {
 
   @Override
   public Future<UpdateResponse> inventoryUpsert(JsonObject recordSets) {
+    return inventoryUpsert(recordSets, null);
+  }
+
+  @Override
+  public Future<UpdateResponse> inventoryUpsert(JsonObject recordSets, FetchedRecords prefetched) {
     InternalInventoryUpdateRequest req = new InternalInventoryUpdateRequest(vertx, routingContext, recordSets);
     HandlersUpdating upsertMethods = new HandlersUpdating();
-    return upsertMethods.doBatchUpsert(req, new UpdatePlanAllHRIDs()).map(
+    return upsertMethods.doBatchUpsert(req, new UpdatePlanAllHRIDs().withFetchedRecords(prefetched)).map(
             outcome -> {
               if (outcome.getStatusCode() == 207) {
                 logger.warn("Upsert issue: {}",
@@ -59,4 +118,14 @@ public class InternalInventoryUpdateClient extends InventoryUpdateClient {
             })
         .onFailure(e -> logger.error("Could not upsert batch: {}", e.getMessage()));
   }
+
+  @Override
+  public Future<FetchedRecords> prefetchUpsert(JsonObject recordSets) {
+    InternalInventoryUpdateRequest req = new InternalInventoryUpdateRequest(vertx, routingContext, recordSets);
+    return new UpdatePlanAllHRIDs().prefetch(req, recordSets.getJsonArray("inventoryRecordSets"))
+        .recover(e -> {
+          logger.warn("Could not prefetch records for upsert, fetching them with the upsert: {}", e.getMessage());
+          return Future.succeededFuture(null);
+        });
+  }
 }
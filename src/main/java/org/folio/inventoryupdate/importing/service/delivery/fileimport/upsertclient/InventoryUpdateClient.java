@@ -3,13 +3,37 @@ package org.folio.inventoryupdate.importing.service.delivery.fileimport.upsertcl
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import java.util.List;
+import org.folio.inventoryupdate.updating.entities.FetchedRecords;
 
 public abstract class InventoryUpdateClient {
 
   public abstract Future<UpdateResponse> inventoryDeletion(JsonObject theRecord);
 
+  /**
+   * Deletes many instances with their holdings records and items.
+   *
+   * @param deletionRecords deletion requests, in the order of the source file
+   * @return the responses of the deletions, in the order of the requests
+   */
+  public abstract Future<List<UpdateResponse>> inventoryDeletions(List<JsonObject> deletionRecords);
+
   public abstract Future<UpdateResponse> inventoryUpsert(JsonObject recordSets);
 
+  /**
+   * Upserts the record sets, taking existing records from the given prefetched records where there.
+   *
+   * @param prefetched records fetched for the record sets ahead of the upsert, or null to fetch all
+   */
+  public abstract Future<UpdateResponse> inventoryUpsert(JsonObject recordSets, FetchedRecords prefetched);
+
+  /**
+   * Fetches the existing records that an upsert of the record sets would look up, without writing anything.
+   *
+   * @return the fetched records, or null if the record sets could not be prefetched
+   */
+  public abstract Future<FetchedRecords> prefetchUpsert(JsonObject recordSets);
+
   public record UpdateResponse(int statusCode, JsonObject json) {
     public JsonObject getMetrics() {
       if (json != null) {
@@ -19,6 +19,7 @@ import org.folio.inventoryupdate.importing.service.ServiceRequest;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.FileListener;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.FileListeners;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.FileQueue;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.RecordFingerprints;
 
 public final class Channels extends EntityResponses {
 
@@ -254,4 +255,22 @@ public final class Channels extends EntityResponses {
       }
     });
   }
+
+  /**
+   * Deletes the fingerprints of the channel's source records, so that the next import of a record is not skipped
+   * even if the record is unchanged.
+   */
+  public static Future<Void> clearFingerprints(ServiceRequest request) {
+    String channelId = request.requestParam("id");
+    return getChannelByTagOrUuid(request, channelId).compose(channel -> {
+      if (channel != null) {
+        return RecordFingerprints.clear(request.entityStorage().getTenantPool(), channel.getId())
+            .compose(deleted -> responseText(request.routingContext(), 200)
+                .end("Cleared " + deleted + " fingerprint(s)").mapEmpty());
+      } else {
+        return responseText(request.routingContext(), 404)
+            .end("Could not find channel [" + channelId + "].").mapEmpty();
+      }
+    });
+  }
 }
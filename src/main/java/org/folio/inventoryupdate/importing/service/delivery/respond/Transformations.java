@@ -13,6 +13,7 @@ import org.folio.inventoryupdate.importing.moduledata.Transformation;
 import org.folio.inventoryupdate.importing.moduledata.TransformationStep;
 import org.folio.inventoryupdate.importing.moduledata.database.EntityStorage;
 import org.folio.inventoryupdate.importing.service.ServiceRequest;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.transformation.TemplatesCache;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.transformation.XmlRecordsReader;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.transformation.XmlTransformationEcho;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.transformation.XmlTransformationPipeline;
@@ -41,6 +42,7 @@ public final class Transformations extends EntityResponses {
       return request.entityStorage().updateEntity(id, step.withUpdatingUser(request.currentUser()))
           .onSuccess(result -> {
             if (result.rowCount() == 1) {
+              TemplatesCache.invalidate(request.tenant(), id);
               responseText(request.routingContext(), 204).end();
             } else {
               responseText(request.routingContext(), 404).end("Not found");
@@ -60,7 +62,8 @@ public final class Transformations extends EntityResponses {
   }
 
   public static Future<Void> deleteStep(ServiceRequest request) {
-    return deleteEntityAndRespond(request, new Step());
+    return deleteEntityAndRespond(request, new Step())
+        .onSuccess(na -> TemplatesCache.invalidate(request.tenant(), UUID.fromString(request.requestParam("id"))));
   }
 
   public static Future<Void> getScript(ServiceRequest request) {
@@ -86,6 +89,7 @@ public final class Transformations extends EntityResponses {
             if (getStep.result() != null) {
               Step step = (Step) getStep.result().withUpdatingUser(request.currentUser());
               step.updateScript(script, db)
+                  .onSuccess(na -> TemplatesCache.invalidate(request.tenant(), step.getId()))
                   .onComplete(na -> responseText(request.routingContext(), 204).end()).mapEmpty();
             } else {
               responseText(request.routingContext(), 404).end("Update script: Step not found").mapEmpty();
@@ -96,6 +100,11 @@ public final class Transformations extends EntityResponses {
     }
   }
 
+  public static Future<Void> getTemplatesCacheStats(ServiceRequest request) {
+    return responseJson(request.routingContext(), 200)
+        .end(TemplatesCache.getStats(request.tenant()).encodePrettily());
+  }
+
   public static Future<Void> postTransformation(ServiceRequest request) {
     Transformation transformation = new Transformation().fromJson(request.bodyAsJson());
     return request.entityStorage().storeEntity(transformation.withCreatingUser(request.currentUser()))
@@ -25,6 +25,9 @@ public abstract class DeletePlan {
   protected InventoryQuery instanceQuery;
   // Existing Inventory records matching either an incoming record set or a set of deletion identifiers
   protected InventoryRecordSet existingSet = null;
+  // Existing record set looked up ahead of planning, together with other record sets to delete
+  private JsonObject prefetchedRecordSet = null;
+  private boolean prefetched = false;
   protected static final Logger logger = LogManager.getLogger("inventory-update");
 
   protected DeletePlan(InventoryQuery existingInstanceQuery) {
@@ -35,6 +38,16 @@ public abstract class DeletePlan {
 
   public abstract Future<Void> doInventoryDelete(OkapiClient client);
 
+  /**
+   * Sets the existing record set to delete, as looked up in advance. A null record set means that the instance
+   * was not found.
+   */
+  public DeletePlan withPrefetchedRecordSet(JsonObject existingRecordSet) {
+    this.prefetchedRecordSet = existingRecordSet;
+    this.prefetched = true;
+    return this;
+  }
+
   public boolean isInstanceDeleting() {
     return foundExistingRecordSet() && existingSet.getInstance().getTransaction() == InventoryRecord.Transaction.DELETE;
   }
@@ -72,6 +85,10 @@ public abstract class DeletePlan {
   }
 
   protected Future<InventoryRecordSet> lookupExistingRecordSet(OkapiClient okapiClient, InventoryQuery instanceQuery) {
+    if (prefetched) {
+      return Future.succeededFuture(prefetchedRecordSet == null
+          ? null : InventoryRecordSet.makeExistingRecordSet(prefetchedRecordSet));
+    }
     Promise<InventoryRecordSet> promise = Promise.promise();
     InventoryStorage.lookupSingleInventoryRecordSet(okapiClient, instanceQuery).onComplete(recordSet -> {
       if (recordSet.succeeded()) {
@@ -113,25 +130,21 @@ public abstract class DeletePlan {
     return promise.future();
   }
 
-  List<Future<JsonObject>> deleteRelationsAndItems(OkapiClient okapiClient) {
-    List<Future<JsonObject>> deleteRelationsDeleteItems = new ArrayList<>();
+  List<Future<?>> deleteRelationsAndItems(OkapiClient okapiClient) {
+    List<Future<?>> deleteRelationsDeleteItems = new ArrayList<>();
     for (InstanceToInstanceRelation relation : instanceRelationsToDelete()) {
       deleteRelationsDeleteItems.add(InventoryStorage.deleteInventoryRecord(okapiClient, relation));
     }
-    for (Item item : itemsToDelete()) {
-      deleteRelationsDeleteItems.add(InventoryStorage.deleteInventoryRecord(okapiClient, item));
-    }
+    deleteRelationsDeleteItems.add(InventoryStorage.deleteInventoryRecords(okapiClient, itemsToDelete()));
     for (Item item : itemsToSilentlyUpdate()) {
       deleteRelationsDeleteItems.add(InventoryStorage.putInventoryRecordOutcomeLess(okapiClient, item));
     }
     return deleteRelationsDeleteItems;
   }
 
-  List<Future<JsonObject>> deleteHoldingsRecords(OkapiClient okapiClient) {
-    List<Future<JsonObject>> deleteHoldingsRecords = new ArrayList<>();
-    for (HoldingsRecord holdingsRecord : holdingsToDelete()) {
-      deleteHoldingsRecords.add(InventoryStorage.deleteInventoryRecord(okapiClient, holdingsRecord));
-    }
+  List<Future<?>> deleteHoldingsRecords(OkapiClient okapiClient) {
+    List<Future<?>> deleteHoldingsRecords = new ArrayList<>();
+    deleteHoldingsRecords.add(InventoryStorage.deleteInventoryRecords(okapiClient, holdingsToDelete()));
     for (HoldingsRecord holdingsRecord : holdingsRecordsToSilentlyUpdate()) {
       deleteHoldingsRecords.add(InventoryStorage.putInventoryRecordOutcomeLess(okapiClient, holdingsRecord));
     }
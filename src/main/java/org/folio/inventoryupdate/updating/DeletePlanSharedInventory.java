@@ -15,7 +15,6 @@ import static org.folio.inventoryupdate.updating.entities.InventoryRecordSet.*;
 public class DeletePlanSharedInventory extends DeletePlan {
   private RecordIdentifiers deletionIdentifiers;
   protected InventoryRecordSet updatingSet;
-  protected static final Map<String,String> locationsToInstitutionsMap = new HashMap<>();
 
   private DeletePlanSharedInventory(InventoryQuery existingInstanceQuery) {
     super(existingInstanceQuery);
@@ -55,7 +54,7 @@ public class DeletePlanSharedInventory extends DeletePlan {
             mapLocationsToInstitutions(okapiClient,updatingSet,existingSet).onComplete(handler -> {
               if (handler.succeeded()) {
                 // look for abandoned matches here
-                flagAndIdRecordsForInventoryUpdating(updatingSet,existingSet,deletionIdentifiers);
+                flagAndIdRecordsForInventoryUpdating(updatingSet,existingSet,deletionIdentifiers,handler.result());
                 promise.complete();
               } else {
                 promise.fail(ErrorReport.makeErrorReportFromJsonString(handler.cause().getMessage())
@@ -106,69 +105,47 @@ public class DeletePlanSharedInventory extends DeletePlan {
     }
   }
 
-  private static Future<Void> mapLocationsToInstitutions (OkapiClient okapiClient, InventoryRecordSet incomingSet, InventoryRecordSet existingSet) {
-    Promise<Void> mapReady = Promise.promise();
-    boolean missMappings = false;
-    List<HoldingsRecord> allHoldingsRecords = new ArrayList<>();
-    if (incomingSet != null) allHoldingsRecords.addAll(incomingSet.getHoldingsRecords());
-    if (existingSet != null) allHoldingsRecords.addAll(existingSet.getHoldingsRecords());
-    if (incomingSet != null) {
-      for (HoldingsRecord holdingsRecord : allHoldingsRecords) {
-        if (! (locationsToInstitutionsMap.containsKey(holdingsRecord.getPermanentLocationId()))) {
-          missMappings = true;
-          break;
-        }
-      }
+  private static Future<Map<String,String>> mapLocationsToInstitutions (OkapiClient okapiClient, InventoryRecordSet incomingSet, InventoryRecordSet existingSet) {
+    Set<String> locationIds = new HashSet<>();
+    if (incomingSet != null) incomingSet.getHoldingsRecords().forEach(h -> locationIds.add(h.getPermanentLocationId()));
+    if (existingSet != null) existingSet.getHoldingsRecords().forEach(h -> locationIds.add(h.getPermanentLocationId()));
+    locationIds.remove(null);
+    if (locationIds.isEmpty()) {
+      return Future.succeededFuture(new HashMap<>());
     }
-    if (missMappings) {
-      logger.debug("Miss mappings for at least one location, retrieving locations from Inventory storage");
-      InventoryStorage.getLocations(okapiClient).onComplete(gotLocations -> {
-        if (gotLocations.succeeded()) {
-          JsonArray locationsJson = gotLocations.result();
-          if (locationsJson == null || locationsJson.isEmpty()) {
-            mapReady.fail("Retrieved a null or zero length array of locations from storage. Cannot map locations to institutions.");
-          } else {
-            Iterator<?> locationsIterator = locationsJson.iterator();
-            while (locationsIterator.hasNext()) {
-              JsonObject location = (JsonObject) locationsIterator.next();
-              locationsToInstitutionsMap.put(location.getString("id"), location.getString(INSTITUTION_ID));
-
-            }
-            logger.debug("Updated a map of {} FOLIO locations to institutions.", locationsToInstitutionsMap.size());
-            mapReady.complete();
+    return ReferenceDataCache.of(okapiClient).institutionIdsByLocationId(okapiClient, locationIds)
+        .compose(locations -> {
+          if (locations.isEmpty()) {
+            return Future.failedFuture("Retrieved a null or zero length array of locations from storage. Cannot map locations to institutions.");
           }
-        } else {
-          mapReady.fail(gotLocations.cause().getMessage());
-        }
-      });
-    } else {
-      mapReady.complete();
-    }
-    return mapReady.future();
+          return Future.succeededFuture(locations);
+        });
   }
 
   protected static void flagAndIdRecordsForInventoryUpdating (
       InventoryRecordSet updatingSet,
       InventoryRecordSet existingSet,
-      RecordIdentifiers deletionIdentifiers) {
+      RecordIdentifiers deletionIdentifiers,
+      Map<String,String> institutionIdsByLocationId) {
     // Plan instance update/deletion
     if (existingSet != null) {
       updatingSet.getInstance().setTransition(InventoryRecord.Transaction.UPDATE);
-      flagExistingHoldingsAndItemsForDeletion(existingSet,deletionIdentifiers);
+      flagExistingHoldingsAndItemsForDeletion(existingSet,deletionIdentifiers,institutionIdsByLocationId);
     }
   }
 
   private static void flagExistingHoldingsAndItemsForDeletion (
       InventoryRecordSet existingSet,
-      RecordIdentifiers deletionIdentifiers) {
+      RecordIdentifiers deletionIdentifiers,
+      Map<String,String> institutionIdsByLocationId) {
     String institutionId = deletionIdentifiers.institutionId();
     List<HoldingsRecord> existingHoldingsRecords = new ArrayList<>();
     if (existingSet != null) {
       existingHoldingsRecords.addAll( existingSet.getHoldingsRecords() );
     }
     for (HoldingsRecord existingHoldingsRecord : existingHoldingsRecords) {
-      if (existingHoldingsRecord.getInstitutionId(locationsToInstitutionsMap) != null
-          && existingHoldingsRecord.getInstitutionId(locationsToInstitutionsMap)
+      if (existingHoldingsRecord.getInstitutionId(institutionIdsByLocationId) != null
+          && existingHoldingsRecord.getInstitutionId(institutionIdsByLocationId)
           .equals(institutionId)) {
         existingHoldingsRecord.setTransition(InventoryRecord.Transaction.DELETE);
         for (Item item : existingHoldingsRecord.getItems()) {
@@ -25,6 +25,7 @@ import io.vertx.core.json.JsonObject;
 
 /**
  * Static methods making low level HTTP requests to create and update records in Inventory Storage.
+ * The requests go through the {@link StorageLimiter} of the tenant, which bounds how many of them are in flight.
  */
 public class InventoryStorage {
 
@@ -58,12 +59,16 @@ public class InventoryStorage {
   public static final String ITEMS = "items";
   public static final String LOCATIONS = "locations";
 
+  // Records deleted per request in bulk deletes, keeps the query of UUIDs well within common URL length limits
+  private static final int DELETE_CHUNK_SIZE = 50;
+
   private InventoryStorage () {
     throw new IllegalStateException("Utility class");
   }
   public static Future<JsonObject> postInventoryRecord (OkapiClient okapiClient, InventoryRecord inventoryRecord) {
     Promise<JsonObject> promise = Promise.promise();
-    okapiClient.post(getApi(inventoryRecord.entityType()), inventoryRecord.asJsonString(), postResult -> {
+    String path = getApi(inventoryRecord.entityType());
+    limited(okapiClient, HttpMethod.POST, path, inventoryRecord.asJsonString()).onComplete(postResult -> {
       if (postResult.succeeded()) {
         String result = postResult.result();
         JsonObject responseJson = new JsonObject(result);
@@ -97,7 +102,8 @@ public class InventoryStorage {
       JsonObject request = new JsonObject();
       request.put(arrayName, jsonArrayFromInventoryRecordList(records));
       logger.debug("Posting request {}: to {}", request::encodePrettily, () ->getBatchApi(arrayName));
-      okapiClient.post(getBatchApi(arrayName) + "?upsert=true", request.encode(), postResult -> {
+      String path = getBatchApi(arrayName) + "?upsert=true";
+      limited(okapiClient, HttpMethod.POST, path, request.encode(), records.size()).onComplete(postResult -> {
         if (postResult.succeeded()) {
           for (InventoryRecord inventoryRecord : records) {
             inventoryRecord.complete();
@@ -134,7 +140,8 @@ public class InventoryStorage {
   public static Future<JsonObject> putInventoryRecord (OkapiClient okapiClient, InventoryRecord inventoryRecord) {
     Promise<JsonObject> promise = Promise.promise();
     logger.debug("Putting {}: {}", inventoryRecord::entityType, () -> inventoryRecord.asJson().encodePrettily());
-    okapiClient.request(HttpMethod.PUT, getApi(inventoryRecord.entityType())+"/"+inventoryRecord.getUUID(), inventoryRecord.asJsonString(), putResult -> {
+    String path = getApi(inventoryRecord.entityType())+"/"+inventoryRecord.getUUID();
+    limited(okapiClient, HttpMethod.PUT, path, inventoryRecord.asJsonString()).onComplete(putResult -> {
       if (putResult.succeeded()) {
         inventoryRecord.complete();
         promise.complete(inventoryRecord.asJson());
@@ -156,7 +163,8 @@ public class InventoryStorage {
   public static Future<JsonObject> putInventoryRecordOutcomeLess (OkapiClient okapiClient, InventoryRecord inventoryRecord) {
     Promise<JsonObject> promise = Promise.promise();
     logger.debug("Putting {}: {}", inventoryRecord::entityType, () -> inventoryRecord.asJson().encodePrettily());
-    okapiClient.request(HttpMethod.PUT, getApi(inventoryRecord.entityType())+"/"+inventoryRecord.getUUID(), inventoryRecord.asJsonString(), putResult -> {
+    String path = getApi(inventoryRecord.entityType())+"/"+inventoryRecord.getUUID();
+    limited(okapiClient, HttpMethod.PUT, path, inventoryRecord.asJsonString()).onComplete(putResult -> {
       if (putResult.failed()) {
         inventoryRecord.logError(okapiClient.getResponsebody(), okapiClient.getStatusCode(), ErrorReport.ErrorCategory.STORAGE, inventoryRecord.getOriginJson());
       }
@@ -167,7 +175,8 @@ public class InventoryStorage {
 
   public static Future<JsonObject> deleteInventoryRecord (OkapiClient okapiClient, InventoryRecord inventoryRecord) {
     Promise<JsonObject> promise = Promise.promise();
-    okapiClient.delete(getApi(inventoryRecord.entityType())+"/"+inventoryRecord.getUUID(), deleteResult -> {
+    String path = getApi(inventoryRecord.entityType())+"/"+inventoryRecord.getUUID();
+    limited(okapiClient, HttpMethod.DELETE, path, "").onComplete(deleteResult -> {
       if (deleteResult.succeeded()) {
         inventoryRecord.complete();
         promise.complete();
@@ -181,12 +190,58 @@ public class InventoryStorage {
 
   }
 
+  /**
+   * Deletes records of one entity type, with a query by the UUIDs of up to {@link #DELETE_CHUNK_SIZE} records per
+   * request. If a bulk delete fails, deletes the records of that request one by one, so that the failure is
+   * attributed to the records it concerns and the other records are still deleted.
+   */
+  public static Future<Void> deleteInventoryRecords(OkapiClient okapiClient, List<? extends InventoryRecord> records) {
+    List<Future<?>> deletes = new ArrayList<>();
+    for (int i = 0; i < records.size(); i += DELETE_CHUNK_SIZE) {
+      List<? extends InventoryRecord> chunk = records.subList(i, Math.min(i + DELETE_CHUNK_SIZE, records.size()));
+      if (chunk.size() == 1) {
+        deletes.add(deleteInventoryRecord(okapiClient, chunk.getFirst()));
+      } else {
+        deletes.add(deleteInventoryRecordsInBulk(okapiClient, chunk));
+      }
+    }
+    return Future.join(deletes).mapEmpty();
+  }
+
+  private static Future<Void> deleteInventoryRecordsInBulk(OkapiClient okapiClient,
+                                                           List<? extends InventoryRecord> records) {
+    if (records.stream().anyMatch(inventoryRecord -> !inventoryRecord.hasUUID())) {
+      return deleteInventoryRecordsOneByOne(okapiClient, records);
+    }
+    List<String> ids = records.stream().map(InventoryRecord::getUUID).toList();
+    String path = queryUri(getApi(records.getFirst().entityType()), new QueryByListOfIds(ID, ids));
+    return limited(okapiClient, HttpMethod.DELETE, path, "", ids.size())
+        .<Void>map(deleted -> {
+          records.forEach(InventoryRecord::complete);
+          return null;
+        })
+        .recover(e -> {
+          logger.debug("Bulk delete of {} {} records failed, deleting them one by one: {}",
+              records.size(), records.getFirst().entityType(), e.getMessage());
+          return deleteInventoryRecordsOneByOne(okapiClient, records);
+        });
+  }
+
+  private static Future<Void> deleteInventoryRecordsOneByOne(OkapiClient okapiClient,
+                                                             List<? extends InventoryRecord> records) {
+    List<Future<JsonObject>> deletes = new ArrayList<>();
+    for (InventoryRecord inventoryRecord : records) {
+      deletes.add(deleteInventoryRecord(okapiClient, inventoryRecord));
+    }
+    return Future.join(deletes).mapEmpty();
+  }
+
   public static Future<JsonObject> lookupInstance(OkapiClient okapiClient, InventoryQuery inventoryQuery) {
     if (inventoryQuery instanceof QueryByUUID queryByUUID) {
       // this reduces the lookup response time from 22 ms to 18 ms.
       return lookupInstance(okapiClient, queryByUUID);
     }
-    return okapiClient.get(queryUri(INSTANCE_STORAGE_PATH, inventoryQuery))
+    return limited(okapiClient, HttpMethod.GET, queryUri(INSTANCE_STORAGE_PATH, inventoryQuery), "")
         .map(json -> {
           JsonArray matchingInstances = new JsonObject(json).getJsonArray(INSTANCES);
           if (matchingInstances.isEmpty()) {
@@ -198,7 +253,7 @@ public class InventoryStorage {
   }
 
   public static Future<JsonObject> lookupInstance(OkapiClient okapiClient, QueryByUUID queryByUuid) {
-    return okapiClient.get(INSTANCE_STORAGE_PATH + "/" + queryByUuid.getUuid())
+    return limited(okapiClient, HttpMethod.GET, INSTANCE_STORAGE_PATH + "/" + queryByUuid.getUuid(), "")
         .map(JsonObject::new)
         .recover(e -> {
           if (okapiClient.getStatusCode() == 404) {
@@ -211,7 +266,8 @@ public class InventoryStorage {
 
   public static Future<JsonArray> lookupInstances (OkapiClient okapiClient, QueryByListOfIds inventoryQuery) {
     Promise<JsonArray> promise = Promise.promise();
-    okapiClient.get(INSTANCE_STORAGE_PATH+"?limit=100000&query="+inventoryQuery.getURLEncodedQueryString(), res -> {
+    String path = INSTANCE_STORAGE_PATH+"?limit=100000&query="+inventoryQuery.getURLEncodedQueryString();
+    limited(okapiClient, HttpMethod.GET, path, "", inventoryQuery.ids.size()).onComplete(res -> {
       if ( res.succeeded()) {
         JsonObject matchingInstances = new JsonObject(res.result());
         int recordCount = matchingInstances.getInteger(TOTAL_RECORDS);
@@ -236,7 +292,7 @@ public class InventoryStorage {
         + "&precedingTitles=true&succeedingTitles=true"
         + "&superInstanceRelationships=true&subInstanceRelationships=true"
         + "&limit=10&query=" + inventoryQuery.getURLEncodedQueryString();
-    return okapiClient.get(path)
+    return limited(okapiClient, HttpMethod.GET, path, "", inventoryQuery.ids.size())
         .map(result -> emptyToNull(new JsonObject(result).getJsonArray("instanceSets")))
         .recover(e -> failureFuture(e, Entity.INSTANCE, Transaction.GET, okapiClient.getStatusCode(), null));
   }
@@ -250,7 +306,8 @@ public class InventoryStorage {
 
   public static Future<JsonArray> lookupHoldingsRecords (OkapiClient okapiClient, QueryByListOfIds inventoryQuery) {
     Promise<JsonArray> promise = Promise.promise();
-    okapiClient.get(HOLDINGS_STORAGE_PATH+"?limit=100000&query="+inventoryQuery.getURLEncodedQueryString(), res -> {
+    String path = HOLDINGS_STORAGE_PATH+"?limit=100000&query="+inventoryQuery.getURLEncodedQueryString();
+    limited(okapiClient, HttpMethod.GET, path, "", inventoryQuery.ids.size()).onComplete(res -> {
       if ( res.succeeded()) {
         JsonObject holdingsRecords = new JsonObject(res.result());
         int recordCount = holdingsRecords.getInteger(TOTAL_RECORDS);
@@ -265,7 +322,7 @@ public class InventoryStorage {
                 Transaction.GET,
                 okapiClient.getStatusCode(),
                 promise,
-                HOLDINGS_STORAGE_PATH+"?limit=100000&query="+inventoryQuery.getURLEncodedQueryString());
+                path);
       }
     });
     return promise.future();
@@ -273,7 +330,8 @@ public class InventoryStorage {
 
   public static Future<JsonArray> lookupItems (OkapiClient okapiClient, QueryByListOfIds inventoryQuery) {
     Promise<JsonArray> promise = Promise.promise();
-    okapiClient.get(ITEM_STORAGE_PATH+"?limit=100000&query="+inventoryQuery.getURLEncodedQueryString(), res -> {
+    String path = ITEM_STORAGE_PATH+"?limit=100000&query="+inventoryQuery.getURLEncodedQueryString();
+    limited(okapiClient, HttpMethod.GET, path, "", inventoryQuery.ids.size()).onComplete(res -> {
       if ( res.succeeded()) {
         JsonObject items = new JsonObject(res.result());
         int recordCount = items.getInteger(TOTAL_RECORDS);
@@ -283,8 +341,7 @@ public class InventoryStorage {
           promise.complete(null);
         }
       } else {
-        failure(res.cause(), Entity.ITEM, Transaction.GET, okapiClient.getStatusCode(), promise,
-                ITEM_STORAGE_PATH+"?limit=100000&query="+inventoryQuery.getURLEncodedQueryString());
+        failure(res.cause(), Entity.ITEM, Transaction.GET, okapiClient.getStatusCode(), promise, path);
       }
     });
     return promise.future();
@@ -293,35 +350,66 @@ public class InventoryStorage {
 
 
   public static Future<JsonObject> lookupSingleInventoryRecordSet(OkapiClient okapiClient, InventoryQuery uniqueQuery) {
-    return okapiClient.get(INSTANCE_SET_PATH
+    return limited(okapiClient, HttpMethod.GET, INSTANCE_SET_PATH
         + "?instance=true&holdingsRecords=true&items=true"
         + "&precedingTitles=true&succeedingTitles=true"
         + "&superInstanceRelationships=true&subInstanceRelationships=true"
-        + "&limit=1&query=" + uniqueQuery.getURLEncodedQueryString())
+        + "&limit=1&query=" + uniqueQuery.getURLEncodedQueryString(), "")
         .map(result -> {
           var sets = new JsonObject(result).getJsonArray("instanceSets");
           if (sets.isEmpty()) {
             return null;
           }
-          var input = sets.getJsonObject(0);
-          var holdings = input.getJsonArray(HOLDINGS_RECORDS);
-          mergeItemsIntoHoldings(holdings, input.getJsonArray(ITEMS));
-          var precedingSucceeding = new JsonArray()
-              .addAll(input.getJsonArray("precedingTitles"))
-              .addAll(input.getJsonArray("succeedingTitles"));
-          var superSub = new JsonArray()
-              .addAll(input.getJsonArray("superInstanceRelationships"))
-              .addAll(input.getJsonArray("subInstanceRelationships"));
-          var instanceRelations = new JsonObject()
-              .put(InstanceReferences.EXISTING_PRECEDING_SUCCEEDING_TITLES, precedingSucceeding)
-              .put(InstanceReferences.EXISTING_PARENT_CHILD_RELATIONS, superSub);
-          return new JsonObject()
-              .put(InventoryRecordSet.INSTANCE, input.getJsonObject("instance"))
-              .put(InventoryRecordSet.HOLDINGS_RECORDS, holdings)
-              .put(InstanceReferences.INSTANCE_RELATIONS, instanceRelations);
+          return inventoryRecordSetFromInstanceSet(sets.getJsonObject(0));
         });
   }
 
+  /**
+   * Looks up the existing Inventory record sets of many instances, with up to 10 instances per request to the
+   * instance-set API, and the requests running concurrently.
+   * @param request the request providing clients for Inventory storage, one per concurrent lookup
+   * @param hrids HRIDs of the instances to look up
+   * @return the record sets found, by instance HRID, in the structure of the single record set lookup
+   */
+  public static Future<Map<String, JsonObject>> lookupInventoryRecordSetsByHrids(UpdateRequest request,
+                                                                                 List<String> hrids) {
+    List<Future<JsonArray>> lookups = new ArrayList<>();
+    for (int i = 0; i < hrids.size(); i += 10) {
+      lookups.add(lookupInstanceSets(request.getOkapiClient(),
+          new QueryByListOfIds("hrid", hrids.subList(i, Math.min(i + 10, hrids.size())))));
+    }
+    return Future.all(lookups).map(done -> {
+      Map<String, JsonObject> recordSets = new HashMap<>();
+      for (Future<JsonArray> lookup : lookups) {
+        if (lookup.result() != null) {
+          lookup.result().forEach(instanceSet -> {
+            JsonObject recordSet = inventoryRecordSetFromInstanceSet((JsonObject) instanceSet);
+            recordSets.put(recordSet.getJsonObject(InventoryRecordSet.INSTANCE).getString("hrid"), recordSet);
+          });
+        }
+      }
+      return recordSets;
+    });
+  }
+
+  private static JsonObject inventoryRecordSetFromInstanceSet(JsonObject input) {
+    var holdings = input.getJsonArray(HOLDINGS_RECORDS);
+    mergeItemsIntoHoldings(holdings, input.getJsonArray(ITEMS));
+    var precedingSucceeding = new JsonArray()
+        .addAll(input.getJsonArray("precedingTitles"))
+        .addAll(input.getJsonArray("succeedingTitles"));
+    var superSub = new JsonArray()
+        .addAll(input.getJsonArray("superInstanceRelationships"))
+        .addAll(input.getJsonArray("subInstanceRelationships"));
+    var instanceRelations = new JsonObject()
+        .put(InstanceReferences.EXISTING_PRECEDING_SUCCEEDING_TITLES, precedingSucceeding)
+        .put(InstanceReferences.EXISTING_PARENT_CHILD_RELATIONS, superSub);
+    return new JsonObject()
+        .put(InventoryRecordSet.INSTANCE, input.getJsonObject("instance"))
+        .put(InventoryRecordSet.HOLDINGS_RECORDS, holdings)
+        .put(InstanceReferences.INSTANCE_RELATIONS, instanceRelations);
+  }
+
   private static void mergeItemsIntoHoldings(JsonArray holdingsArray, JsonArray items) {
     if (holdingsArray.isEmpty() || items.isEmpty()) {
       return;
@@ -345,7 +433,7 @@ public class InventoryStorage {
 
   public static Future<JsonArray> getLocations(OkapiClient okapiClient)  {
     Promise<JsonArray> promise = Promise.promise();
-    okapiClient.get(LOCATION_STORAGE_PATH + "?limit=9999", locs -> {
+    limited(okapiClient, HttpMethod.GET, LOCATION_STORAGE_PATH + "?limit=9999", "").onComplete(locs -> {
       if (locs.succeeded()) {
         JsonObject response = new JsonObject(locs.result());
         JsonArray locationsJson = response.getJsonArray(LOCATIONS);
@@ -358,6 +446,23 @@ public class InventoryStorage {
     return promise.future();
   }
 
+  /**
+   * Makes a single request to storage for a single record, within the limit of concurrent requests for the tenant.
+   */
+  private static Future<String> limited(OkapiClient okapiClient, HttpMethod method, String path, String body) {
+    return limited(okapiClient, method, path, body, 1);
+  }
+
+  /**
+   * Makes a single request to storage, within the limit of concurrent requests for the tenant.
+   * @param records the number of records the request writes or looks up, telling its kind along with method and API
+   */
+  private static Future<String> limited(OkapiClient okapiClient, HttpMethod method, String path, String body,
+                                        int records) {
+    String kind = StorageLimiter.kindOf(method, path, records);
+    return StorageLimiter.of(okapiClient).submit(okapiClient, kind, () -> okapiClient.request(method, path, body));
+  }
+
   private static String getApi(Entity entityType) {
     String api = "";
     switch (entityType) {
@@ -74,6 +74,10 @@ public class InventoryUpdateOutcome {
     return errors.size() == 1;
   }
 
+  public List<ErrorReport> getErrors () {
+    return errors;
+  }
+
   public ErrorReport getError () {
     if (hasErrors()) {
       return errors.getFirst();
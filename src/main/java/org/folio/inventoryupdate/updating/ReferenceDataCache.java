@@ -0,0 +1,153 @@
+package org.folio.inventoryupdate.updating;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.OkapiClient;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Caches reference data from Inventory storage per tenant, currently the institutions of the locations, which the
+ * match key upserts and deletes need for telling which holdings records belong to which institution.
+ * The locations are loaded all at once and kept for a time-to-live. Before that, they are loaded again if a
+ * location is asked for that isn't cached -- but at most once every few seconds, so that references to locations
+ * that don't exist don't load the locations for every request.
+ */
+public class ReferenceDataCache {
+
+  private static final Logger logger = LogManager.getLogger("inventory-update");
+  public static final long DEFAULT_TTL_SECONDS = 300;
+  public static final int DEFAULT_MAX_LOCATIONS = 20000;
+  private static final long MIN_RELOAD_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+  private static final Map<String, ReferenceDataCache> CACHES = new ConcurrentHashMap<>();
+  private static long ttlNanos = TimeUnit.SECONDS.toNanos(DEFAULT_TTL_SECONDS);
+  private static int maxLocations = DEFAULT_MAX_LOCATIONS;
+
+  private final String tenant;
+  private Map<String, String> institutionIdsByLocationId;
+  private long loadedAt;
+  private Future<Map<String, String>> loading;
+  private long hits;
+  private long misses;
+  private long loads;
+
+  private ReferenceDataCache(String tenant) {
+    this.tenant = tenant;
+  }
+
+  /**
+   * Sets how long reference data is kept, and how many locations a tenant may have for them to be cached.
+   */
+  public static synchronized void configure(long ttlSeconds, int maxCachedLocations) {
+    ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(0, ttlSeconds));
+    maxLocations = Math.max(0, maxCachedLocations);
+    logger.info("Reference data cached for {} seconds, up to {} locations per tenant", ttlSeconds, maxLocations);
+  }
+
+  public static ReferenceDataCache forTenant(String tenant) {
+    return CACHES.computeIfAbsent(tenant == null ? "" : tenant, ReferenceDataCache::new);
+  }
+
+  /**
+   * Gets the cache of the tenant that the client makes requests for.
+   */
+  public static ReferenceDataCache of(OkapiClient okapiClient) {
+    return forTenant(StorageLimiter.of(okapiClient).getTenant());
+  }
+
+  /**
+   * Drops the cached reference data of all tenants, so that the next requests load it again.
+   */
+  public static void refreshAll() {
+    CACHES.values().forEach(ReferenceDataCache::refresh);
+  }
+
+  /**
+   * Drops the cached reference data, so that the next request loads it again.
+   */
+  public synchronized void refresh() {
+    institutionIdsByLocationId = null;
+  }
+
+  /**
+   * Gets the institution IDs of all locations, by location ID, loading them from storage if the cache has expired
+   * or is missing any of the given locations. Concurrent requests share one load.
+   * @param locationIds the locations needed by the caller
+   * @return the institutions of the locations, empty if storage has no locations
+   */
+  public Future<Map<String, String>> institutionIdsByLocationId(OkapiClient okapiClient,
+                                                               Collection<String> locationIds) {
+    synchronized (this) {
+      long now = System.nanoTime();
+      if (institutionIdsByLocationId != null && now - loadedAt < ttlNanos
+          && (cachesAll(locationIds) || now - loadedAt < MIN_RELOAD_INTERVAL_NANOS)) {
+        hits++;
+        return Future.succeededFuture(institutionIdsByLocationId);
+      }
+      misses++;
+      if (loading == null || loading.isComplete()) {
+        loading = loadLocations(okapiClient);
+      }
+      return loading;
+    }
+  }
+
+  private boolean cachesAll(Collection<String> locationIds) {
+    for (String locationId : locationIds) {
+      if (locationId != null && !institutionIdsByLocationId.containsKey(locationId)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private Future<Map<String, String>> loadLocations(OkapiClient okapiClient) {
+    long started = System.nanoTime();
+    return InventoryStorage.getLocations(okapiClient)
+        .map(locationsJson -> {
+          Map<String, String> institutionIds = new HashMap<>();
+          if (locationsJson != null) {
+            for (Object o : locationsJson) {
+              JsonObject location = (JsonObject) o;
+              institutionIds.put(location.getString("id"), location.getString("institutionId"));
+            }
+          }
+          Map<String, String> loaded = Collections.unmodifiableMap(institutionIds);
+          synchronized (this) {
+            loads++;
+            if (loaded.size() > maxLocations) {
+              logger.warn("Tenant [{}] has {} locations, more than the {} that are cached", tenant, loaded.size(),
+                  maxLocations);
+            } else if (!loaded.isEmpty()) {
+              institutionIdsByLocationId = loaded;
+              loadedAt = started;
+            }
+          }
+          logger.debug("Loaded a map of {} FOLIO locations to institutions for tenant [{}]", loaded.size(), tenant);
+          return loaded;
+        });
+  }
+
+  public synchronized JsonObject asJson() {
+    long lookups = hits + misses;
+    return new JsonObject()
+        .put("tenant", tenant)
+        .put("locations", institutionIdsByLocationId == null ? 0 : institutionIdsByLocationId.size())
+        .put("ageSeconds", institutionIdsByLocationId == null
+            ? null : TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - loadedAt))
+        .put("ttlSeconds", TimeUnit.NANOSECONDS.toSeconds(ttlNanos))
+        .put("maxLocations", maxLocations)
+        .put("hits", hits)
+        .put("misses", misses)
+        .put("hitRatio", lookups > 0 ? (double) hits / lookups : 0.0)
+        .put("loads", loads);
+  }
+}
@@ -0,0 +1,254 @@
+package org.folio.inventoryupdate.updating;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.OkapiClient;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Limits the number of requests to Inventory storage that are in flight at the same time, per tenant, and queues
+ * the requests beyond the limit.
+ * The limit adapts to how storage copes, between a floor and a ceiling: it grows by one for every limit's worth of
+ * requests that complete in good time, and shrinks by a quarter when a request is slow -- taking more than twice the
+ * lowest recent latency of its kind of request -- or fails with a server error, too many requests (429), or without
+ * a response. Requests are compared with requests of the same method and API that cover about as many records.
+ */
+public class StorageLimiter {
+
+  private static final Logger logger = LogManager.getLogger("inventory-update");
+  public static final int DEFAULT_FLOOR = 4;
+  public static final int DEFAULT_CEILING = 64;
+  private static final double SLOW_LATENCY_FACTOR = 2.0;
+  private static final double DECREASE_FACTOR = 0.75;
+  // Lets the lowest latency creep up, so that the limiter adjusts to storage getting slower for good
+  private static final double BASELINE_DRIFT = 1.01;
+  private static final Map<String, StorageLimiter> LIMITERS = new ConcurrentHashMap<>();
+  private static final Map<OkapiClient, StorageLimiter> CLIENTS = Collections.synchronizedMap(new WeakHashMap<>());
+  private static int floor = DEFAULT_FLOOR;
+  private static int ceiling = DEFAULT_CEILING;
+
+  private final String tenant;
+  private final Deque<QueuedRequest> queue = new ArrayDeque<>();
+  private final Map<String, Double> baselineNanos = new HashMap<>();
+  private double limit;
+  private int inFlight;
+  private boolean decreased;
+  private long lastDecrease;
+  private long requests;
+  private long queuedRequests;
+  private long slowOrFailedRequests;
+  private long totalQueueWaitNanos;
+  private long maxQueueWaitNanos;
+  private int peakInFlight;
+  private int peakQueue;
+
+  private StorageLimiter(String tenant) {
+    this.tenant = tenant;
+    this.limit = (floor + ceiling) / 2.0;
+  }
+
+  /**
+   * Sets the bounds of the number of concurrent requests per tenant.
+   */
+  public static synchronized void configure(int floorOfLimit, int ceilingOfLimit) {
+    floor = Math.max(1, floorOfLimit);
+    ceiling = Math.max(floor, ceilingOfLimit);
+    logger.info("Concurrent requests to Inventory storage limited to between {} and {} per tenant", floor, ceiling);
+    for (StorageLimiter limiter : LIMITERS.values()) {
+      limiter.clampLimit();
+    }
+  }
+
+  public static StorageLimiter forTenant(String tenant) {
+    return LIMITERS.computeIfAbsent(tenant == null ? "" : tenant, StorageLimiter::new);
+  }
+
+  /**
+   * Routes the requests of the client through the limiter of the tenant.
+   */
+  public static void attach(OkapiClient okapiClient, String tenant) {
+    CLIENTS.put(okapiClient, forTenant(tenant));
+  }
+
+  /**
+   * Gets the limiter that the client is attached to, or the limiter for requests without a tenant.
+   */
+  public static StorageLimiter of(OkapiClient okapiClient) {
+    StorageLimiter limiter = CLIENTS.get(okapiClient);
+    return limiter != null ? limiter : forTenant(null);
+  }
+
+  public String getTenant() {
+    return tenant;
+  }
+
+  /**
+   * Gets the kind of a request, for comparing its latency with that of similar requests: the method and API,
+   * regardless of query and record identifier, and the number of records it covers, rounded down to a power of two.
+   * A request for a single record, by ID or by a query with limit 1, is of another kind than a request for ten
+   * records, or a bulk request for fifty.
+   * @param records the number of records that the request writes or looks up
+   */
+  public static String kindOf(HttpMethod method, String path, int records) {
+    String api = path.replaceFirst("\\?.*$", "").replaceFirst("/[0-9a-fA-F-]{36}$", "");
+    return method + " " + api + (records > 1 ? " x" + Integer.highestOneBit(records) : "");
+  }
+
+  /**
+   * Sends the request when there is room for it under the limit.
+   * @param okapiClient the client making the request, for telling server errors from other failures
+   * @param kind the kind of request, for instance method and path, for comparing latencies of similar requests
+   * @param request sends the request, making a single call to storage
+   * @return the response to the request
+   */
+  public <T> Future<T> submit(OkapiClient okapiClient, String kind, Supplier<Future<T>> request) {
+    Promise<T> promise = Promise.promise();
+    QueuedRequest queuedRequest =
+        new QueuedRequest(Vertx.currentContext(), () -> send(okapiClient, kind, request, promise));
+    boolean sendNow;
+    synchronized (this) {
+      requests++;
+      sendNow = queue.isEmpty() && inFlight < (int) limit;
+      if (sendNow) {
+        inFlight++;
+        peakInFlight = Math.max(peakInFlight, inFlight);
+      } else {
+        queue.add(queuedRequest);
+        queuedRequests++;
+        peakQueue = Math.max(peakQueue, queue.size());
+      }
+    }
+    if (sendNow) {
+      queuedRequest.send.run();
+    }
+    return promise.future();
+  }
+
+  private <T> void send(OkapiClient okapiClient, String kind, Supplier<Future<T>> request, Promise<T> promise) {
+    long started = System.nanoTime();
+    Future<T> response;
+    try {
+      response = request.get();
+    } catch (RuntimeException e) {
+      response = Future.failedFuture(e);
+    }
+    response.onComplete(result -> {
+      done(kind, started, result.failed() && isOverloaded(okapiClient.getStatusCode()));
+      promise.handle(result);
+    });
+  }
+
+  private static boolean isOverloaded(int statusCode) {
+    // No status code means there was no response, for example a timeout
+    return statusCode >= 500 || statusCode == 429 || statusCode <= 0;
+  }
+
+  private void done(String kind, long started, boolean overloaded) {
+    long now = System.nanoTime();
+    List<QueuedRequest> next = new ArrayList<>();
+    synchronized (this) {
+      inFlight--;
+      adapt(kind, started, now - started, overloaded);
+      while (!queue.isEmpty() && inFlight < (int) limit) {
+        QueuedRequest queuedRequest = queue.poll();
+        long wait = now - queuedRequest.queuedAt;
+        totalQueueWaitNanos += wait;
+        maxQueueWaitNanos = Math.max(maxQueueWaitNanos, wait);
+        inFlight++;
+        peakInFlight = Math.max(peakInFlight, inFlight);
+        next.add(queuedRequest);
+      }
+    }
+    next.forEach(QueuedRequest::resume);
+  }
+
+  private void adapt(String kind, long started, long latency, boolean overloaded) {
+    double baseline = Math.min(latency, baselineNanos.getOrDefault(kind, (double) latency) * BASELINE_DRIFT);
+    baselineNanos.put(kind, baseline);
+    if (overloaded || latency > SLOW_LATENCY_FACTOR * baseline) {
+      slowOrFailedRequests++;
+      // Backs off once for requests that were sent at about the same time. Nano times may be negative, so they
+      // are compared by their difference, and only once there has been a decrease.
+      if (!decreased || started - lastDecrease > 0) {
+        limit = Math.max(floor, limit * DECREASE_FACTOR);
+        decreased = true;
+        lastDecrease = System.nanoTime();
+        logger.debug("Storage concurrency limit for tenant [{}] decreased to {}", tenant, (int) limit);
+      }
+    } else {
+      limit = Math.min(ceiling, limit + 1 / limit);
+    }
+  }
+
+  private synchronized void clampLimit() {
+    limit = Math.clamp(limit, floor, ceiling);
+  }
+
+  public synchronized JsonObject asJson() {
+    long dequeued = queuedRequests - queue.size();
+    return new JsonObject()
+        .put("tenant", tenant)
+        .put("limit", (int) limit)
+        .put("floor", floor)
+        .put("ceiling", ceiling)
+        .put("inFlight", inFlight)
+        .put("peakInFlight", peakInFlight)
+        .put("queued", queue.size())
+        .put("peakQueued", peakQueue)
+        .put("requests", requests)
+        .put("queuedRequests", queuedRequests)
+        .put("slowOrFailedRequests", slowOrFailedRequests)
+        .put("averageQueueWaitMs", dequeued > 0 ? totalQueueWaitNanos / dequeued / 1_000_000 : 0)
+        .put("maxQueueWaitMs", maxQueueWaitNanos / 1_000_000);
+  }
+
+  /**
+   * Gets a one-line summary of the queue waits, for job logs.
+   */
+  public synchronized String report() {
+    long dequeued = queuedRequests - queue.size();
+    return "Storage requests: " + requests + ", queued: " + queuedRequests
+        + (dequeued > 0 ? " (avg wait " + totalQueueWaitNanos / dequeued / 1_000_000 + " ms, max "
+        + maxQueueWaitNanos / 1_000_000 + " ms)" : "")
+        + ", concurrency limit now " + (int) limit + " (peak in flight " + peakInFlight + ").";
+  }
+
+  private static class QueuedRequest {
+    private final Context context;
+    private final Runnable send;
+    private final long queuedAt = System.nanoTime();
+
+    private QueuedRequest(Context context, Runnable send) {
+      this.context = context;
+      this.send = send;
+    }
+
+    /**
+     * Sends the request on the context it was submitted from.
+     */
+    private void resume() {
+      if (context != null) {
+        context.runOnContext(v -> send.run());
+      } else {
+        send.run();
+      }
+    }
+  }
+}
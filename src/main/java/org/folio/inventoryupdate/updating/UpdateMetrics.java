@@ -36,6 +36,7 @@ public class UpdateMetrics {
                         Outcome.COMPLETED,
                         Outcome.FAILED,
                         Outcome.SKIPPED,
+                        Outcome.UNCHANGED,
                         Outcome.PENDING
                 ))
                 {
@@ -158,6 +159,7 @@ public class UpdateMetrics {
         private int completed = 0;
         private int failed = 0;
         private int skipped = 0;
+        private int unchanged = 0;
         private int pending = 0;
         protected boolean touched = false;
 
@@ -173,6 +175,9 @@ public class UpdateMetrics {
                 case SKIPPED:
                     skipped++;
                     break;
+                case UNCHANGED:
+                    unchanged++;
+                    break;
                 case PENDING:
                     pending++;
                     break;
@@ -189,6 +194,8 @@ public class UpdateMetrics {
                     return failed;
                 case SKIPPED:
                     return skipped;
+                case UNCHANGED:
+                    return unchanged;
                 case PENDING:
                     return pending;
                 default:
@@ -209,6 +216,9 @@ public class UpdateMetrics {
                     case SKIPPED:
                         skipped += i;
                         break;
+                    case UNCHANGED:
+                        unchanged += i;
+                        break;
                     case PENDING:
                         pending += i;
                         break;
@@ -223,6 +233,7 @@ public class UpdateMetrics {
             metrics.put(Outcome.COMPLETED.name(), completed);
             metrics.put(Outcome.FAILED.name(), failed);
             metrics.put(Outcome.SKIPPED.name(), skipped);
+            metrics.put(Outcome.UNCHANGED.name(), unchanged);
             metrics.put(Outcome.PENDING.name(), pending);
             return metrics;
         }
@@ -258,6 +269,7 @@ public class UpdateMetrics {
                         Outcome.COMPLETED,
                         Outcome.FAILED,
                         Outcome.SKIPPED,
+                        Outcome.UNCHANGED,
                         Outcome.PENDING
                 ))
                 {
@@ -4,7 +4,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -50,6 +50,8 @@ public abstract class UpdatePlan {
     protected boolean isDeletion = false;
 
     protected Repository repository;
+    // Records fetched by an earlier, failed upsert of the record sets, or ahead of the upsert, if any
+    protected FetchedRecords fetchedRecords;
 
     protected UpdatePlan () {}
 
@@ -64,8 +66,32 @@ public abstract class UpdatePlan {
 
     public abstract Future<Void> doCreateInstanceRelations (OkapiClient okapiClient);
 
+    /**
+     * Sets records fetched for the record sets ahead of the upsert, to take instead of fetching them again.
+     */
+    public UpdatePlan withFetchedRecords(FetchedRecords fetched) {
+        fetchedRecords = fetched;
+        return this;
+    }
+
+    /**
+     * Fetches the existing records that an upsert of the record sets would look up, without writing anything.
+     * @return the fetched records, or null if the record sets don't pass validation
+     */
+    public Future<FetchedRecords> prefetch(UpdateRequest request, JsonArray inventoryRecordSets) {
+        if (!validateIncomingRecordSets(inventoryRecordSets).passed()) {
+            return Future.succeededFuture(null);
+        }
+        Repository prefetching = getNewRepository();
+        prefetching.setIncomingRecordSets(inventoryRecordSets);
+        return prefetching.buildRepositoryFromStorage(request).map(na -> prefetching.getFetchedRecords());
+    }
+
     public Future<InventoryUpdateOutcome> upsertBatch(UpdateRequest request, JsonArray inventoryRecordSets) {
         repository = getNewRepository();
+        if (fetchedRecords != null) {
+            repository.reuseFetchedRecords(fetchedRecords);
+        }
         Promise<InventoryUpdateOutcome> promise = Promise.promise();
         RequestValidation validations = validateIncomingRecordSets (inventoryRecordSets);
         final boolean batchOfOne = (inventoryRecordSets.size() == 1);
@@ -189,25 +215,85 @@ public abstract class UpdatePlan {
         return promise.future();
     }
 
-    protected Future<List<InventoryUpdateOutcome>> chainSingleRecordUpserts(UpdateRequest request, List<JsonArray> arraysOfOneRecordSet, BiFunction<UpdateRequest, JsonArray, Future<InventoryUpdateOutcome>> upsertMethod) {
-        Promise<List<InventoryUpdateOutcome>> promise = Promise.promise();
-        List<InventoryUpdateOutcome> outcomes = new ArrayList<>();
-        Future<InventoryUpdateOutcome> fut = Future.succeededFuture();
-        for (JsonArray arrayOfOneRecordSet : arraysOfOneRecordSet) {
-            fut = fut.compose(v -> {
-                // First time around, a null outcome is passed in
-                if (v != null) {
-                    outcomes.add(v);
-                }
-                return upsertMethod.apply(request, arrayOfOneRecordSet);
-            });
+    /**
+     * Upserts the record sets of a batch that failed as a whole, by splitting it in halves and upserting each half
+     * as a batch, splitting again the halves that fail, down to single record sets, so that the record sets that
+     * brought the batch down end up being upserted -- and reporting their errors -- one by one, while the rest are
+     * upserted in as few batches as possible.
+     * The halves are upserted at the same time if the plan finds that they cannot interfere with each other,
+     * otherwise one after the other. The upserts start from the records that the failed batch fetched from storage,
+     * except those of record sets that the failed batch wrote to.
+     * @param inventoryRecordSets the record sets of the failed batch
+     * @param newPlan supplies a plan for each upsert
+     * @return the outcomes of the upserts, in the order of the record sets
+     */
+    protected Future<List<InventoryUpdateOutcome>> bisectingUpserts(UpdateRequest request,
+                                                                    JsonArray inventoryRecordSets,
+                                                                    Supplier<UpdatePlan> newPlan) {
+        FetchedRecords fetched = repository == null ? null : repository.getFetchedRecordsNotWrittenTo();
+        return bisectingUpserts(request, inventoryRecordSets, newPlan, fetched);
+    }
+
+    private Future<List<InventoryUpdateOutcome>> bisectingUpserts(UpdateRequest request,
+                                                                  JsonArray inventoryRecordSets,
+                                                                  Supplier<UpdatePlan> newPlan,
+                                                                  FetchedRecords fetched) {
+        if (inventoryRecordSets.size() < 2) {
+            return upsertOrBisect(request, inventoryRecordSets, newPlan, fetched);
         }
-        fut.onComplete( result -> {
-            // capture the last outcome too
-            outcomes.add(result.result());
-            promise.complete(outcomes);
-        });
-        return promise.future();
+        int middle = inventoryRecordSets.size() / 2;
+        JsonArray firstHalf = new JsonArray(inventoryRecordSets.getList().subList(0, middle));
+        JsonArray secondHalf = new JsonArray(
+            inventoryRecordSets.getList().subList(middle, inventoryRecordSets.size()));
+        // Neither half can take records from the failed batch that the other half may write to
+        FetchedRecords fetchedForFirst = fetched == null ? null : fetched.withoutRecordsOf(secondHalf);
+        FetchedRecords fetchedForSecond = fetched == null ? null : fetched.withoutRecordsOf(firstHalf);
+        if (canUpsertConcurrently(firstHalf, secondHalf)) {
+            Future<List<InventoryUpdateOutcome>> first =
+                upsertOrBisect(request, firstHalf, newPlan, fetchedForFirst);
+            Future<List<InventoryUpdateOutcome>> second =
+                upsertOrBisect(request, secondHalf, newPlan, fetchedForSecond);
+            return Future.all(first, second).map(both -> concat(first.result(), second.result()));
+        } else {
+            return upsertOrBisect(request, firstHalf, newPlan, fetched).compose(first ->
+                upsertOrBisect(request, secondHalf, newPlan, fetchedForSecond)
+                    .map(second -> concat(first, second)));
+        }
+    }
+
+    private Future<List<InventoryUpdateOutcome>> upsertOrBisect(UpdateRequest request,
+                                                                JsonArray inventoryRecordSets,
+                                                                Supplier<UpdatePlan> newPlan,
+                                                                FetchedRecords fetched) {
+        UpdatePlan plan = newPlan.get();
+        plan.fetchedRecords = fetched;
+        Future<InventoryUpdateOutcome> upsert = plan.upsertBatch(request, inventoryRecordSets);
+        if (inventoryRecordSets.size() < 2) {
+            // A batch of one reports its errors in the outcome, any failure is unexpected
+            return upsert.recover(e -> Future.succeededFuture(
+                    new InventoryUpdateOutcome(ErrorReport.makeErrorReportFromJsonString(e.getMessage()))))
+                .map(List::of);
+        } else {
+            return upsert.map(List::of)
+                .recover(e -> bisectingUpserts(request, inventoryRecordSets, newPlan,
+                    plan.repository.getFetchedRecordsNotWrittenTo()));
+        }
+    }
+
+    private static List<InventoryUpdateOutcome> concat(List<InventoryUpdateOutcome> first,
+                                                       List<InventoryUpdateOutcome> second) {
+        List<InventoryUpdateOutcome> outcomes = new ArrayList<>(first);
+        outcomes.addAll(second);
+        return outcomes;
+    }
+
+    /**
+     * Checks if two parts of a batch can be upserted at the same time, which they can if they touch none of the same
+     * Inventory records.
+     * @return false unless the plan can tell that the record sets are independent of each other.
+     */
+    protected boolean canUpsertConcurrently(JsonArray recordSets, JsonArray otherRecordSets) {
+        return false;
     }
 
     public abstract RequestValidation validateIncomingRecordSet (JsonObject inventoryRecordSet);
@@ -283,23 +369,34 @@ public abstract class UpdatePlan {
     }
 
     public Future<Void> doUpdateInstancesAndHoldings(OkapiClient okapiClient) {
+        return doUpdateInstances(okapiClient).compose(instances -> doUpdateHoldings(okapiClient));
+    }
+
+    public Future<Void> doUpdateInstances(OkapiClient okapiClient) {
         Promise<Void> promise = Promise.promise();
         InventoryStorage.postInstances(okapiClient,repository.getInstancesToUpdate())
             .onComplete(instances -> {
               if (instances.succeeded()) {
-                InventoryStorage.postHoldingsRecords(okapiClient,repository.getHoldingsToUpdate())
-                    .onComplete(holdings -> {
-                      if (holdings.succeeded()) {
-                        promise.complete();
-                      } else {
-                        logger.error("Error updating holdings records: {}", holdings.cause().getMessage());
-                        promise.fail(holdings.cause().getMessage());
-                    }});
+                promise.complete();
               } else {
                 logger.error("Error updating instance records: {}", instances.cause().getMessage());
                 promise.fail(instances.cause().getMessage());
-             }
-        });
+              }
+            });
+        return promise.future();
+    }
+
+    public Future<Void> doUpdateHoldings(OkapiClient okapiClient) {
+        Promise<Void> promise = Promise.promise();
+        InventoryStorage.postHoldingsRecords(okapiClient,repository.getHoldingsToUpdate())
+            .onComplete(holdings -> {
+              if (holdings.succeeded()) {
+                promise.complete();
+              } else {
+                logger.error("Error updating holdings records: {}", holdings.cause().getMessage());
+                promise.fail(holdings.cause().getMessage());
+              }
+            });
         return promise.future();
     }
 
@@ -332,22 +429,19 @@ public abstract class UpdatePlan {
 
   public Future<Void> doDeleteRelationsItemsHoldings(OkapiClient okapiClient) {
         Promise<Void> promise = Promise.promise();
-        List<Future<JsonObject>> deleteRelationsDeleteItems = new ArrayList<>();
+        List<Future<?>> deleteRelationsDeleteItems = new ArrayList<>();
         for (InstanceToInstanceRelation relation : repository.getInstanceRelationsToDelete()) {
             deleteRelationsDeleteItems.add(InventoryStorage.deleteInventoryRecord(okapiClient,relation));
         }
-        for (Item item : repository.getItemsToDelete()) {
-            deleteRelationsDeleteItems.add(InventoryStorage.deleteInventoryRecord(okapiClient, item));
-        }
+        deleteRelationsDeleteItems.add(InventoryStorage.deleteInventoryRecords(okapiClient, repository.getItemsToDelete()));
         for (Item item : repository.getDeletingItemsToSilentlyUpdate()) {
             deleteRelationsDeleteItems.add(InventoryStorage.putInventoryRecordOutcomeLess(okapiClient,item));
         }
         Future.join(deleteRelationsDeleteItems).onComplete ( relationshipsAndItemsDeleted -> {
             if (relationshipsAndItemsDeleted.succeeded()) {
-                List<Future<JsonObject>> deleteHoldingsRecords = new ArrayList<>();
-                for (HoldingsRecord holdingsRecord : repository.getHoldingsToDelete()) {
-                    deleteHoldingsRecords.add(InventoryStorage.deleteInventoryRecord(okapiClient, holdingsRecord));
-                }
+                List<Future<?>> deleteHoldingsRecords = new ArrayList<>();
+                deleteHoldingsRecords.add(
+                    InventoryStorage.deleteInventoryRecords(okapiClient, repository.getHoldingsToDelete()));
                 for (HoldingsRecord holdingsRecord : repository.getDeletingHoldingsToSilentlyUpdate()) {
                    deleteHoldingsRecords.add(InventoryStorage.putInventoryRecordOutcomeLess(okapiClient, holdingsRecord));
                 }
@@ -369,6 +463,42 @@ public abstract class UpdatePlan {
 
 
 
+    /**
+     * Runs a storage operation once the operations it depends on are done. If any of the operations that it
+     * requires to succeed has failed, the operation is skipped and fails with the cause of the first such failure.
+     * @param operation the storage operation
+     * @param requiredToSucceed operations that must succeed for the operation to run
+     * @param requiredToComplete operations that must be done, successfully or not, before the operation runs
+     */
+    protected static Future<Void> runAfter(Supplier<Future<Void>> operation,
+                                           List<Future<Void>> requiredToSucceed,
+                                           List<Future<Void>> requiredToComplete) {
+        List<Future<Void>> required = new ArrayList<>(requiredToSucceed);
+        required.addAll(requiredToComplete);
+        return Future.join(required).transform(done -> {
+            for (Future<Void> requirement : requiredToSucceed) {
+                if (requirement.failed()) {
+                    return Future.failedFuture(requirement.cause());
+                }
+            }
+            return operation.get();
+        });
+    }
+
+    /**
+     * Waits for all the storage operations to be done, and fails with the first failure in the order given, if any.
+     */
+    protected static Future<Void> firstFailureOf(List<Future<Void>> operations) {
+        return Future.join(operations).transform(done -> {
+            for (Future<Void> operation : operations) {
+                if (operation.failed()) {
+                    return Future.failedFuture(operation.cause().getMessage());
+                }
+            }
+            return Future.succeededFuture();
+        });
+    }
+
     /* END OF UPDATE METHODS */
 
 
@@ -1,9 +1,13 @@
 package org.folio.inventoryupdate.updating;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
@@ -37,12 +41,37 @@ public class UpdatePlanAllHRIDs extends UpdatePlan {
 
     @Override
     public Future<List<InventoryUpdateOutcome>> multipleSingleRecordUpserts(UpdateRequest request, JsonArray inventoryRecordSets) {
-        List<JsonArray> arraysOfOneRecordSet = new ArrayList<>();
-        for (Object o : inventoryRecordSets) {
-            JsonArray batchOfOne = new JsonArray().add(o);
-            arraysOfOneRecordSet.add(batchOfOne);
+        return bisectingUpserts(request, inventoryRecordSets, UpdatePlanAllHRIDs::new);
+    }
+
+    /**
+     * Record sets are independent if they share no instance, holdings or item HRIDs, and have no instance
+     * relations, which could involve instances of the other record sets.
+     */
+    @Override
+    protected boolean canUpsertConcurrently(JsonArray recordSets, JsonArray otherRecordSets) {
+        Set<String> hrids = collectHridsOrNull(recordSets);
+        Set<String> otherHrids = collectHridsOrNull(otherRecordSets);
+        return hrids != null && otherHrids != null && Collections.disjoint(hrids, otherHrids);
+    }
+
+    private static Set<String> collectHridsOrNull(JsonArray inventoryRecordSets) {
+        Set<String> hrids = new HashSet<>();
+        for (Object recordSetObject : inventoryRecordSets) {
+            JsonObject recordSet = (JsonObject) recordSetObject;
+            if (recordSet.containsKey(InstanceReferences.INSTANCE_RELATIONS)) {
+                return null;
+            }
+            hrids.add("instance:" + recordSet.getJsonObject(INSTANCE).getString(HRID_IDENTIFIER_KEY));
+            for (Object holdingsObject : recordSet.getJsonArray(HOLDINGS_RECORDS, new JsonArray())) {
+                JsonObject holdingsRecord = (JsonObject) holdingsObject;
+                hrids.add("holdings:" + holdingsRecord.getString(HRID_IDENTIFIER_KEY));
+                for (Object itemObject : holdingsRecord.getJsonArray(ITEMS, new JsonArray())) {
+                    hrids.add("item:" + ((JsonObject) itemObject).getString(HRID_IDENTIFIER_KEY));
+                }
+            }
         }
-        return chainSingleRecordUpserts(request, arraysOfOneRecordSet, new UpdatePlanAllHRIDs()::upsertBatch);
+        return hrids;
     }
 
     @Override
@@ -263,9 +292,27 @@ public class UpdatePlanAllHRIDs extends UpdatePlan {
             for (Item item : items) {
               planToCreateNewItemOnMoveExistingOver(item, rules);
             }
+            // Holdings and items moved between instances or holdings records now have their new references
+            planToSkipUnchangedRecords(incomingSet);
         }
     }
 
+  /**
+   * Marks records planned for update as unchanged if the update would not change them in storage, so that they
+   * are not written again.
+   */
+  private static void planToSkipUnchangedRecords(InventoryRecordSet incomingSet) {
+    List<InventoryRecord> updatingRecords = new ArrayList<>();
+    updatingRecords.add(incomingSet.getInstance());
+    updatingRecords.addAll(incomingSet.getHoldingsRecords());
+    updatingRecords.addAll(incomingSet.getItems());
+    for (InventoryRecord updatingRecord : updatingRecords) {
+      if (updatingRecord.isUpdating() && updatingRecord.isUnchangedInStorage()) {
+        updatingRecord.skipUnchanged();
+      }
+    }
+  }
+
   private void planToCreateNewItemOnMoveExistingOver(Item item, ProcessingInstructionsUpsert rules) {
     if (repository.existingItemsByHrid.containsKey(item.getHRID())) {
         // Import from different Instance
@@ -351,65 +398,86 @@ public class UpdatePlanAllHRIDs extends UpdatePlan {
 
     // EXECUTE CREATES, UPDATES, DELETES.
 
+    /**
+     * Runs the storage operations as a graph, each operation starting once the operations it depends on are done,
+     * and operations that don't depend on each other at the same time.
+     * Holdings records are created after the instances, and items after the deletes, which come after all other
+     * creates and updates. Holdings records are updated after the instances, and after instance creates too if any
+     * of them move to a new instance. Items are updated after the creates and updates of their holdings records and
+     * instances, if any. Instance relations are created after the instances and holdings records.
+     */
     public Future<Void> doInventoryUpdates(OkapiClient okapiClient) {
-        Promise<Void> promise = Promise.promise();
-        doCreateRecordsWithDependants(okapiClient).onComplete(prerequisitesCreated ->
-          doUpdateInstancesAndHoldings(okapiClient).onComplete(instancesAndHoldingsUpdated ->
-            doUpdateItems(okapiClient).onComplete(itemsUpdated -> {
-              if (prerequisitesCreated.succeeded()) {
-                doCreateInstanceRelations(okapiClient).onComplete(relationsCreated -> {
-                  if (instancesAndHoldingsUpdated.succeeded() && itemsUpdated.succeeded()) {
-                    doDeleteRelationsItemsHoldings(okapiClient).onComplete(deletes -> {
-                      if (deletes.succeeded()) {
-                        doCreateItems(okapiClient). onComplete(itemsCreated -> {
-                          if (itemsCreated.succeeded()) {
-                            if (relationsCreated.succeeded()) {
-                              promise.complete();
-                            } else {
-                              promise.fail(relationsCreated.cause().getMessage());
-                            }
-                          } else {
-                            promise.fail(itemsCreated.cause().getMessage());
-                          }
-                        });
-                      } else {
-                        promise.fail(deletes.cause().getMessage());
-                      }
-                    });
-                  } else {
-                    if (prerequisitesCreated.failed()) {
-                      promise.fail(prerequisitesCreated.cause().getMessage());
-                    } else if (instancesAndHoldingsUpdated.failed()) {
-                      promise.fail(instancesAndHoldingsUpdated.cause().getMessage());
-                    } else if (itemsUpdated.failed()) {
-                      promise.fail(itemsUpdated.cause().getMessage());
+        Future<Void> instancesCreated = doCreateNewInstances(okapiClient);
+        Future<Void> prerequisitesCreated =
+            runAfter(() -> doCreateNewHoldings(okapiClient), List.of(instancesCreated), List.of());
+        Future<Void> instancesUpdated = doUpdateInstances(okapiClient);
+        Future<Void> instancesAndHoldingsUpdated = runAfter(() -> doUpdateHoldings(okapiClient),
+            List.of(instancesUpdated),
+            holdingsUpdatesDependOnInstanceCreates() ? List.of(instancesCreated) : List.of());
+        List<Future<Void>> itemUpdatesAwait = new ArrayList<>();
+        if (itemUpdatesDependOn(InventoryRecord::isCreating)) {
+            itemUpdatesAwait.add(prerequisitesCreated);
+        }
+        if (itemUpdatesDependOn(inventoryRecord -> inventoryRecord.isUpdating() && !inventoryRecord.unchanged())) {
+            itemUpdatesAwait.add(instancesAndHoldingsUpdated);
+        }
+        Future<Void> itemsUpdated = runAfter(() -> doUpdateItems(okapiClient), List.of(), itemUpdatesAwait);
+        Future<Void> relationsCreated =
+            runAfter(() -> doCreateInstanceRelations(okapiClient), List.of(prerequisitesCreated), List.of());
+        Future<Void> deletes = runAfter(() -> doDeleteRelationsItemsHoldings(okapiClient),
+            List.of(prerequisitesCreated, instancesAndHoldingsUpdated, itemsUpdated),
+            repository.getInstanceRelationsToDelete().isEmpty() ? List.of() : List.of(relationsCreated));
+        Future<Void> itemsCreated = runAfter(() -> doCreateItems(okapiClient), List.of(deletes), List.of());
+        return firstFailureOf(List.of(prerequisitesCreated, instancesAndHoldingsUpdated, itemsUpdated,
+            deletes, itemsCreated, relationsCreated));
+    }
+
+    /**
+     * Checks if any holdings record to update belongs to an instance to create.
+     */
+    private boolean holdingsUpdatesDependOnInstanceCreates() {
+        for (PairedRecordSets pair : repository.getPairsOfRecordSets()) {
+            if (pair.hasIncomingRecordSet() && pair.getIncomingRecordSet().getInstance().isCreating()) {
+                for (HoldingsRecord holdingsRecord : pair.getIncomingRecordSet().getHoldingsRecords()) {
+                    if (holdingsRecord.isUpdating() && !holdingsRecord.unchanged()) {
+                        return true;
                     }
-                  }
-                });
-              } else {
-                promise.fail(prerequisitesCreated.cause().getMessage());
-              }
-            })));
-        return promise.future();
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any item to update belongs to a holdings record or an instance that is written as per the given
+     * test. A failed write of those skips the item.
+     */
+    private boolean itemUpdatesDependOn(Predicate<InventoryRecord> writing) {
+        for (PairedRecordSets pair : repository.getPairsOfRecordSets()) {
+            if (pair.hasIncomingRecordSet()) {
+                Instance instance = pair.getIncomingRecordSet().getInstance();
+                for (HoldingsRecord holdingsRecord : pair.getIncomingRecordSet().getHoldingsRecords()) {
+                    for (Item item : holdingsRecord.getItems()) {
+                        if (item.isUpdating() && !item.unchanged()
+                            && (writing.test(holdingsRecord) || writing.test(instance))) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
     }
 
     public Future<Void> doCreateInstanceRelations(OkapiClient okapiClient){
         Promise<Void> promise = Promise.promise();
 
-        List<Future<JsonObject>> provisionalInstancesFutures = new ArrayList<>();
-        for (Instance instance : ((RepositoryByHrids) repository).provisionalInstancesByHrid.values()) {
-          provisionalInstancesFutures.add(
-              InventoryStorage.postInventoryRecord(
-                  okapiClient, instance));
-
-        }
-        Future.join(provisionalInstancesFutures).onComplete(allProvisionalInstancesCreated -> {
+        List<Instance> provisionalInstances =
+            new ArrayList<>(((RepositoryByHrids) repository).provisionalInstancesByHrid.values());
+        createProvisionalInstances(okapiClient, provisionalInstances).onComplete(allProvisionalInstancesCreated -> {
             if (allProvisionalInstancesCreated.succeeded()) {
-                List<Future<JsonObject>> createFutures = new ArrayList<>();
-                for (InstanceToInstanceRelation relation : repository.getInstanceRelationsToCreate()) {
-                    createFutures.add(InventoryStorage.postInventoryRecord(okapiClient, relation));
-                }
-                Future.join(createFutures).onComplete( allRelationsCreated -> {
+                List<InstanceToInstanceRelation> relations = repository.getInstanceRelationsToCreate();
+                createInstanceRelations(okapiClient, relations).onComplete( allRelationsCreated -> {
                     if (allRelationsCreated.succeeded()) {
                         promise.complete();
                     } else {
@@ -429,6 +497,68 @@ public class UpdatePlanAllHRIDs extends UpdatePlan {
         });
         return promise.future();
     }
+
+    /**
+     * Creates the provisional instances in one batch request. If the batch fails, creates them one by one, to get
+     * the good ones created and the outcome and error of each failing one registered.
+     * Provisional instances that failed already, for missing mandatory properties, are not sent to storage.
+     */
+    private static Future<Void> createProvisionalInstances(OkapiClient okapiClient, List<Instance> instances) {
+        List<Future<JsonObject>> invalidInstances = new ArrayList<>();
+        List<Instance> validInstances = new ArrayList<>();
+        for (Instance instance : instances) {
+            if (instance.failed()) {
+                invalidInstances.add(Future.failedFuture(instance.getErrorAsJson().encodePrettily()));
+            } else {
+                validInstances.add(instance);
+            }
+        }
+        Future<Void> created = validInstances.size() > 1
+            ? InventoryStorage.postInstances(okapiClient, validInstances)
+                .recover(batchFailed -> createOneByOne(okapiClient, validInstances))
+            : createOneByOne(okapiClient, validInstances);
+        List<Future<?>> all = new ArrayList<>(invalidInstances);
+        all.add(created);
+        return Future.join(all).mapEmpty();
+    }
+
+    private static Future<Void> createOneByOne(OkapiClient okapiClient, List<? extends InventoryRecord> records) {
+        List<Future<JsonObject>> createFutures = new ArrayList<>();
+        for (InventoryRecord inventoryRecord : records) {
+            createFutures.add(InventoryStorage.postInventoryRecord(okapiClient, inventoryRecord));
+        }
+        return Future.join(createFutures).mapEmpty();
+    }
+
+    /**
+     * Creates the instance relations, with one request per distinct relation, since storage has no batch APIs for
+     * relationships and title successions. Two record sets in a batch can declare the same relation from each end,
+     * as parent and child, or as preceding and succeeding title; the relation is then created once and both get the
+     * outcome.
+     */
+    private static Future<Void> createInstanceRelations(OkapiClient okapiClient,
+                                                        List<InstanceToInstanceRelation> relations) {
+        Map<InstanceToInstanceRelation, List<InstanceToInstanceRelation>> distinctRelations = new LinkedHashMap<>();
+        for (InstanceToInstanceRelation relation : relations) {
+            distinctRelations.computeIfAbsent(relation, k -> new ArrayList<>()).add(relation);
+        }
+        List<Future<JsonObject>> createFutures = new ArrayList<>();
+        for (Map.Entry<InstanceToInstanceRelation, List<InstanceToInstanceRelation>> distinct
+            : distinctRelations.entrySet()) {
+            InstanceToInstanceRelation relation = distinct.getKey();
+            createFutures.add(InventoryStorage.postInventoryRecord(okapiClient, relation)
+                .onComplete(created -> {
+                    for (InstanceToInstanceRelation duplicate : distinct.getValue()) {
+                        if (relation.failed()) {
+                            duplicate.fail();
+                        } else {
+                            duplicate.complete();
+                        }
+                    }
+                }));
+        }
+        return Future.join(createFutures).mapEmpty();
+    }
     // END OF STORAGE METHODS
 
 }
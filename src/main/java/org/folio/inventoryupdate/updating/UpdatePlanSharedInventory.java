@@ -1,7 +1,6 @@
 package org.folio.inventoryupdate.updating;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -30,11 +29,6 @@ import static org.folio.inventoryupdate.updating.entities.InventoryRecordSet.*;
 
 public class UpdatePlanSharedInventory extends UpdatePlan {
 
-  static final Map<String, String> LOCATIONS_TO_INSTITUTIONS_MAP = new HashMap<>();
-  public static Map<String, String> locationsToInstitutionsMap () {
-    return LOCATIONS_TO_INSTITUTIONS_MAP;
-  }
-
   public UpdatePlanSharedInventory() {
     repository = new RepositoryByMatchKey();
   }
@@ -87,6 +81,8 @@ public class UpdatePlanSharedInventory extends UpdatePlan {
 
   @Override
   public UpdatePlan planInventoryUpdates() {
+    Map<String, String> institutionIdsByLocationId =
+        ((RepositoryByMatchKey) repository).getInstitutionIdsByLocationId();
     for (PairedRecordSets pair : repository.getPairsOfRecordSets()) {
       Instance secondaryInstance = null;
       if (pair.hasIncomingRecordSet()) {
@@ -100,14 +96,14 @@ public class UpdatePlanSharedInventory extends UpdatePlan {
           }
         }
       }
-      planInstanceHoldingsAndItems(pair, secondaryInstance);
+      planInstanceHoldingsAndItems(pair, secondaryInstance, institutionIdsByLocationId);
     }
     return this;
 
   }
 
   private static void planInstanceHoldingsAndItems(
-      PairedRecordSets pair, Instance secondaryInstance) {
+      PairedRecordSets pair, Instance secondaryInstance, Map<String, String> institutionIdsByLocationId) {
     if (pair.hasExistingRecordSet()) {
       JsonObject mergedInstance = mergeInstances(pair.getExistingRecordSet().getInstance().asJson(),
           pair.getIncomingRecordSet().getInstance().asJson());
@@ -116,7 +112,8 @@ public class UpdatePlanSharedInventory extends UpdatePlan {
     flagAndIdRecordsForInventoryUpdating(
         pair.getIncomingRecordSet(),
         pair.getExistingRecordSet(),
-        secondaryInstance);
+        secondaryInstance,
+        institutionIdsByLocationId);
 
   }
 
@@ -176,22 +173,20 @@ public class UpdatePlanSharedInventory extends UpdatePlan {
 
   @Override
   public Future<List<InventoryUpdateOutcome>> multipleSingleRecordUpserts(UpdateRequest request, JsonArray inventoryRecordSets) {
-    List<JsonArray> arraysOfOneRecordSet = new ArrayList<>();
-    for (Object o : inventoryRecordSets) {
-      JsonArray batchOfOne = new JsonArray().add(o);
-      arraysOfOneRecordSet.add(batchOfOne);
-    }
-    return chainSingleRecordUpserts(request, arraysOfOneRecordSet, new UpdatePlanSharedInventory()::upsertBatch);
+    // Record sets with the same match key in different halves would compete to create the same instance,
+    // so the halves are upserted one after the other.
+    return bisectingUpserts(request, inventoryRecordSets, UpdatePlanSharedInventory::new);
   }
 
   protected static void flagAndIdRecordsForInventoryUpdating(
       InventoryRecordSet updatingSet,
       InventoryRecordSet existingSet,
-      Instance secondaryInstance) {
+      Instance secondaryInstance,
+      Map<String, String> institutionIdsByLocationId) {
     prepareTheUpdatingInstance(updatingSet, existingSet);
     if (existingSet != null || secondaryInstance != null) {
       // Plan to clean out existing holdings and items
-      flagExistingHoldingsAndItemsForDeletion(updatingSet, existingSet, secondaryInstance);
+      flagExistingHoldingsAndItemsForDeletion(updatingSet, existingSet, secondaryInstance, institutionIdsByLocationId);
     }
     if (updatingSet != null) {
       // Plan to (re-)create holdings and items
@@ -212,8 +207,9 @@ public class UpdatePlanSharedInventory extends UpdatePlan {
   private static void flagExistingHoldingsAndItemsForDeletion(
       InventoryRecordSet updatingSet,
       InventoryRecordSet existingSet,
-      Instance secondaryInstance) {
-    String institutionId = updatingSet.getInstitutionIdFromArbitraryHoldingsRecord(LOCATIONS_TO_INSTITUTIONS_MAP);
+      Instance secondaryInstance,
+      Map<String, String> institutionIdsByLocationId) {
+    String institutionId = updatingSet.getInstitutionIdFromArbitraryHoldingsRecord(institutionIdsByLocationId);
     List<HoldingsRecord> existingHoldingsRecords = new ArrayList<>();
     if (existingSet != null) {
       existingHoldingsRecords.addAll(existingSet.getHoldingsRecords());
@@ -222,8 +218,8 @@ public class UpdatePlanSharedInventory extends UpdatePlan {
       existingHoldingsRecords.addAll(secondaryInstance.getHoldingsRecords());
     }
     for (HoldingsRecord existingHoldingsRecord : existingHoldingsRecords) {
-      if (existingHoldingsRecord.getInstitutionId(LOCATIONS_TO_INSTITUTIONS_MAP) != null
-          && existingHoldingsRecord.getInstitutionId(LOCATIONS_TO_INSTITUTIONS_MAP)
+      if (existingHoldingsRecord.getInstitutionId(institutionIdsByLocationId) != null
+          && existingHoldingsRecord.getInstitutionId(institutionIdsByLocationId)
           .equals(institutionId)) {
         existingHoldingsRecord.setTransition(Transaction.DELETE);
         for (Item item : existingHoldingsRecord.getItems()) {
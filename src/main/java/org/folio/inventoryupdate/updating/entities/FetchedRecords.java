@@ -0,0 +1,182 @@
+package org.folio.inventoryupdate.updating.entities;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.folio.inventoryupdate.updating.entities.InventoryRecordSet.*;
+
+/**
+ * Records that a repository fetched from storage, as they were returned, by the identifiers they were looked up by.
+ * An identifier that maps to null was looked up but not found.
+ * If a batch upsert fails, the repositories for upserting parts of the batch start from the records fetched for the
+ * batch, less the records that the failed upsert wrote to, and only fetch the records that are not there.
+ */
+public class FetchedRecords {
+
+  final Map<String, JsonObject> instanceSetsByHrid = new HashMap<>();
+  final Map<String, JsonObject> holdingsRecordsByHrid = new HashMap<>();
+  final Map<String, JsonObject> itemsByHrid = new HashMap<>();
+  final Map<String, JsonObject> referencedInstancesByHrid = new HashMap<>();
+  final Map<String, JsonObject> referencedInstancesByUUID = new HashMap<>();
+
+  FetchedRecords copy() {
+    return without(Collections.emptySet(), Collections.emptySet(), Collections.emptySet(), false);
+  }
+
+  /**
+   * Tells if any holdings records or items were fetched by HRID that do not belong to any of the fetched instance
+   * sets, that is, if the upsert moves records from other instances.
+   */
+  public boolean hasRecordsOutsideInstanceSets() {
+    FetchedRecords inside = withoutRecordsOutsideInstanceSets();
+    return inside.holdingsRecordsByHrid.size() < holdingsRecordsByHrid.size()
+        || inside.itemsByHrid.size() < itemsByHrid.size();
+  }
+
+  /**
+   * Copies the fetched records, except those that upserting the given record sets may write to.
+   */
+  public FetchedRecords withoutRecordsOf(JsonArray inventoryRecordSets) {
+    Set<String> instanceHrids = new HashSet<>();
+    Set<String> holdingsRecordHrids = new HashSet<>();
+    Set<String> itemHrids = new HashSet<>();
+    boolean instanceRelations = false;
+    for (Object o : inventoryRecordSets) {
+      JsonObject recordSet = (JsonObject) o;
+      instanceRelations = instanceRelations || recordSet.containsKey(InstanceReferences.INSTANCE_RELATIONS);
+      JsonObject instance = recordSet.getJsonObject(INSTANCE);
+      if (instance != null) {
+        instanceHrids.add(instance.getString(HRID_IDENTIFIER_KEY));
+      }
+      for (Object holdingsObject : recordSet.getJsonArray(HOLDINGS_RECORDS, new JsonArray())) {
+        JsonObject holdingsRecord = (JsonObject) holdingsObject;
+        holdingsRecordHrids.add(holdingsRecord.getString(HRID_IDENTIFIER_KEY));
+        for (Object item : holdingsRecord.getJsonArray(ITEMS, new JsonArray())) {
+          itemHrids.add(((JsonObject) item).getString(HRID_IDENTIFIER_KEY));
+        }
+      }
+    }
+    return without(instanceHrids, holdingsRecordHrids, itemHrids, instanceRelations);
+  }
+
+  /**
+   * Copies the fetched records, except holdings records and items fetched by HRID that do not belong to any of the
+   * fetched instance sets. Those are records to be moved from other instances, which other upserts may have
+   * moved or deleted with their instances since they were fetched.
+   */
+  public FetchedRecords withoutRecordsOutsideInstanceSets() {
+    Set<String> instanceIds = new HashSet<>();
+    Set<String> holdingsRecordIds = new HashSet<>();
+    for (JsonObject instanceSet : instanceSetsByHrid.values()) {
+      if (instanceSet != null) {
+        instanceIds.add(instanceSet.getJsonObject(INSTANCE).getString("id"));
+        for (Object holdingsRecord : instanceSet.getJsonArray(HOLDINGS_RECORDS, new JsonArray())) {
+          holdingsRecordIds.add(((JsonObject) holdingsRecord).getString("id"));
+        }
+      }
+    }
+    FetchedRecords copy = copy();
+    copy.holdingsRecordsByHrid.values().removeIf(
+        holdingsRecord -> holdingsRecord != null && !instanceIds.contains(holdingsRecord.getString("instanceId")));
+    copy.itemsByHrid.values().removeIf(
+        item -> item != null && !holdingsRecordIds.contains(item.getString("holdingsRecordId")));
+    return copy;
+  }
+
+  /**
+   * Copies the fetched records, except the records with the given HRIDs and the instance sets containing any of
+   * them. If instance relations were written, any fetched instance set or referenced instance may be stale, and
+   * none of them are copied.
+   */
+  FetchedRecords without(Set<String> instanceHrids, Set<String> holdingsRecordHrids, Set<String> itemHrids,
+                         boolean instanceRelationsWritten) {
+    FetchedRecords copy = new FetchedRecords();
+    copyExcept(holdingsRecordsByHrid, holdingsRecordHrids, copy.holdingsRecordsByHrid);
+    copyExcept(itemsByHrid, itemHrids, copy.itemsByHrid);
+    if (!instanceRelationsWritten) {
+      copyExcept(referencedInstancesByHrid, instanceHrids, copy.referencedInstancesByHrid);
+      for (Map.Entry<String, JsonObject> instance : referencedInstancesByUUID.entrySet()) {
+        // An instance not found by UUID may have been created with that UUID
+        if (instance.getValue() != null
+            && !instanceHrids.contains(instance.getValue().getString(HRID_IDENTIFIER_KEY))) {
+          copy.referencedInstancesByUUID.put(instance.getKey(), instance.getValue());
+        }
+      }
+      for (Map.Entry<String, JsonObject> instanceSet : instanceSetsByHrid.entrySet()) {
+        if (!instanceHrids.contains(instanceSet.getKey())
+            && !containsAny(instanceSet.getValue(), HOLDINGS_RECORDS, holdingsRecordHrids)
+            && !containsAny(instanceSet.getValue(), ITEMS, itemHrids)) {
+          copy.instanceSetsByHrid.put(instanceSet.getKey(), instanceSet.getValue());
+        }
+      }
+    }
+    return copy;
+  }
+
+  private static void copyExcept(Map<String, JsonObject> records, Set<String> hrids, Map<String, JsonObject> copy) {
+    for (Map.Entry<String, JsonObject> fetched : records.entrySet()) {
+      if (!hrids.contains(fetched.getKey())) {
+        copy.put(fetched.getKey(), fetched.getValue());
+      }
+    }
+  }
+
+  private static boolean containsAny(JsonObject instanceSet, String arrayName, Set<String> hrids) {
+    if (instanceSet == null || instanceSet.getJsonArray(arrayName) == null) {
+      return false;
+    }
+    for (Object o : instanceSet.getJsonArray(arrayName)) {
+      if (hrids.contains(((JsonObject) o).getString(HRID_IDENTIFIER_KEY))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Passes copies of the fetched records with the given identifiers to `stash`.
+   * @return the identifiers that were not looked up yet
+   */
+  static List<String> stashFetched(List<String> identifiers, Map<String, JsonObject> fetched,
+                                   Consumer<JsonObject> stash) {
+    List<String> notFetched = new ArrayList<>();
+    for (String identifier : identifiers) {
+      if (fetched.containsKey(identifier)) {
+        if (fetched.get(identifier) != null) {
+          stash.accept(fetched.get(identifier).copy());
+        }
+      } else {
+        notFetched.add(identifier);
+      }
+    }
+    return notFetched;
+  }
+
+  /**
+   * Registers the result of looking up records by the given identifiers.
+   * @param records the records found, or null if none
+   * @param identifierKey the property of the records holding the identifier
+   */
+  static void registerFetched(Collection<String> identifiers, JsonArray records, String identifierKey,
+                              Map<String, JsonObject> fetched) {
+    for (String identifier : identifiers) {
+      fetched.putIfAbsent(identifier, null);
+    }
+    if (records != null) {
+      for (Object o : records) {
+        JsonObject fetchedRecord = ((JsonObject) o).copy();
+        fetched.put(fetchedRecord.getString(identifierKey), fetchedRecord);
+      }
+    }
+  }
+}
@@ -92,6 +92,15 @@ public class HoldingsRecord extends InventoryRecord {
         jsonRecord.remove("holdingsInstance");
     }
 
+    /**
+     * Storage computes the effective location of the holdings record from its permanent and temporary locations
+     * @param jsonRecord The record from Inventory storage, or the record planned to be put
+     */
+    @Override
+    public void removeStorageGeneratedProperties(JsonObject jsonRecord) {
+        jsonRecord.remove("effectiveLocationId");
+    }
+
   @Override
   public void prepareCheckedDeletion() {
     setTransition(Transaction.DELETE);
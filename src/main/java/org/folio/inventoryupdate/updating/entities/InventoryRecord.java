@@ -38,7 +38,8 @@ public abstract class InventoryRecord {
         PENDING,
         COMPLETED,
         FAILED,
-        SKIPPED
+        SKIPPED,
+        UNCHANGED
     }
 
     public enum Entity {
@@ -59,7 +60,10 @@ public abstract class InventoryRecord {
 
     protected JsonObject jsonRecord = new JsonObject();
     protected JsonObject originJson;
+    // The record in storage that this record was overlaid onto, if any
+    protected JsonObject storedJson;
     public static final String VERSION = "_version";
+    public static final String METADATA = "metadata";
     protected ErrorReport error;
     protected Entity entityType;
     protected Transaction transaction = Transaction.UNKNOWN;
@@ -176,6 +180,14 @@ public abstract class InventoryRecord {
   public void removeGetPropertiesDisallowedInPut(JsonObject jsonRecord) {
     }
 
+    /**
+     * Removes properties that storage computes from other properties of the record, and that an update therefore
+     * doesn't set directly.
+     * @param jsonRecord The record from Inventory storage, or the record planned to be put
+     */
+    public void removeStorageGeneratedProperties(JsonObject jsonRecord) {
+    }
+
     public void removeProperty(String propertyName) {
       jsonRecord.remove(propertyName);
     }
@@ -190,6 +202,7 @@ public abstract class InventoryRecord {
      */
     public void applyOverlays(InventoryRecord existingRecord, ProcessingInstructionsUpsert.EntityInstructions instr) {
 
+      storedJson = existingRecord.jsonRecord;
       setUUID(existingRecord.getUUID());
       setVersion(existingRecord.getVersion());
 
@@ -217,6 +230,29 @@ public abstract class InventoryRecord {
       }
     }
 
+    /**
+     * Checks if this record, once overlaid onto an existing record, is the same as the existing record, disregarding
+     * metadata, version, properties that storage computes, and properties that storage returns but does not accept in
+     * an update. Must be checked after
+     * the record's references to other records (instance ID, holdings record ID) are resolved, so that a record moving
+     * to another instance or holdings record is not taken for unchanged.
+     * @return true if updating the record would not change it in storage
+     */
+    public boolean isUnchangedInStorage() {
+      if (storedJson == null) {
+        return false;
+      }
+      JsonObject stored = storedJson.copy();
+      JsonObject planned = jsonRecord.copy();
+      for (JsonObject json : List.of(stored, planned)) {
+        removeGetPropertiesDisallowedInPut(json);
+        removeStorageGeneratedProperties(json);
+        json.remove(METADATA);
+        json.remove(VERSION);
+      }
+      return planned.equals(stored);
+    }
+
     public JsonObject asJson() {
         return jsonRecord;
     }
@@ -257,6 +293,14 @@ public abstract class InventoryRecord {
         return this.outcome == Outcome.SKIPPED;
     }
 
+    public void skipUnchanged() {
+        this.outcome = Outcome.UNCHANGED;
+    }
+
+    public boolean unchanged() {
+        return this.outcome == Outcome.UNCHANGED;
+    }
+
     public void prepareCheckedDeletion () {
     }
 
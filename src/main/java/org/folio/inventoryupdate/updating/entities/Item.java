@@ -55,6 +55,21 @@ public class Item extends InventoryRecord {
     return jsonRecord.getJsonObject("status").getString("name");
   }
 
+  /**
+   * Storage computes the effective location, call number and shelving order of the item, and dates its status.
+   * @param jsonRecord The record from Inventory storage, or the record planned to be put
+   */
+  @Override
+  public void removeStorageGeneratedProperties(JsonObject jsonRecord) {
+    jsonRecord.remove("effectiveLocationId");
+    jsonRecord.remove("effectiveCallNumberComponents");
+    jsonRecord.remove("effectiveShelvingOrder");
+    JsonObject status = jsonRecord.getJsonObject("status");
+    if (status != null) {
+      status.remove("date");
+    }
+  }
+
   @Override
   public void applyOverlays(InventoryRecord existingRecord, ProcessingInstructionsUpsert.EntityInstructions instr) {
     Item existingItem = (Item) existingRecord;
@@ -11,8 +11,10 @@ import org.folio.inventoryupdate.updating.UpdateRequest;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.folio.inventoryupdate.updating.entities.InventoryRecordSet.*;
 
@@ -34,6 +36,9 @@ public abstract class Repository {
   // List of incoming record sets paired with existing record sets
   protected final List<PairedRecordSets> pairsOfRecordSets = new ArrayList<>();
 
+  // Records fetched from storage, possibly by an earlier, failed upsert of the record sets
+  protected FetchedRecords fetchedRecords = new FetchedRecords();
+
   public void setIncomingRecordSets (JsonArray incomingInventoryRecordSets) {
     for (Object inventoryRecordSet : incomingInventoryRecordSets) {
       PairedRecordSets pair = new PairedRecordSets();
@@ -46,6 +51,66 @@ public abstract class Repository {
 
   public abstract Future<Void> buildRepositoryFromStorage(UpdateRequest request);
 
+  /**
+   * Lets the repository take records from an earlier fetch instead of fetching them again.
+   */
+  public void reuseFetchedRecords(FetchedRecords fetchedRecords) {
+    // Copied, since the repository adds the records it fetches
+    this.fetchedRecords = fetchedRecords.copy();
+  }
+
+  /**
+   * Gets the records fetched for this repository, for instance to reuse them in a repository for the same record sets.
+   */
+  public FetchedRecords getFetchedRecords() {
+    return fetchedRecords;
+  }
+
+  /**
+   * Gets the records fetched for this repository, less all records of the record sets that the upsert wrote
+   * anything to. To be called after a failed upsert, for retrying the record sets without fetching all of them again.
+   */
+  public FetchedRecords getFetchedRecordsNotWrittenTo() {
+    Set<String> instanceHrids = new HashSet<>();
+    Set<String> holdingsRecordHrids = new HashSet<>();
+    Set<String> itemHrids = new HashSet<>();
+    for (PairedRecordSets pair : pairsOfRecordSets) {
+      List<InventoryRecordSet> recordSets = new ArrayList<>();
+      if (pair.hasIncomingRecordSet()) {
+        recordSets.add(pair.getIncomingRecordSet());
+      }
+      if (pair.hasExistingRecordSet()) {
+        recordSets.add(pair.getExistingRecordSet());
+      }
+      if (recordSets.stream().anyMatch(Repository::wroteToRecordSet)) {
+        for (InventoryRecordSet recordSet : recordSets) {
+          instanceHrids.add(recordSet.getInstance().getHRID());
+          recordSet.getHoldingsRecords().forEach(holdingsRecord -> holdingsRecordHrids.add(holdingsRecord.getHRID()));
+          recordSet.getItems().forEach(item -> itemHrids.add(item.getHRID()));
+        }
+      }
+    }
+    return fetchedRecords.without(instanceHrids, holdingsRecordHrids, itemHrids, wroteInstanceRelations());
+  }
+
+  private static boolean wroteToRecordSet(InventoryRecordSet recordSet) {
+    List<InventoryRecord> records = new ArrayList<>();
+    records.add(recordSet.getInstance());
+    records.addAll(recordSet.getHoldingsRecords());
+    records.addAll(recordSet.getItems());
+    return records.stream().anyMatch(Repository::wroteTo);
+  }
+
+  protected static boolean wroteTo(InventoryRecord inventoryRecord) {
+    return inventoryRecord.getOutcome() == InventoryRecord.Outcome.COMPLETED
+        || Boolean.TRUE.equals(inventoryRecord.updateSilently);
+  }
+
+  protected boolean wroteInstanceRelations() {
+    return getInstanceRelationsToCreate().stream().anyMatch(Repository::wroteTo)
+        || getInstanceRelationsToDelete().stream().anyMatch(Repository::wroteTo);
+  }
+
   protected abstract void setExistingRecordSets();
 
   protected Future<Void> requestHoldingsRecordsByInstanceIds(UpdateRequest request,
@@ -197,7 +262,7 @@ public abstract class Repository {
     for (PairedRecordSets pair : pairsOfRecordSets) {
       if (pair.hasIncomingRecordSet()) {
         Instance instance = pair.getIncomingRecordSet().getInstance();
-        if (instance.isUpdating()) {
+        if (instance.isUpdating() && !instance.unchanged()) {
           list.add(instance);
         }
       }
@@ -224,7 +289,7 @@ public abstract class Repository {
     for (PairedRecordSets pair : pairsOfRecordSets) {
       if (pair.hasIncomingRecordSet()) {
         for (HoldingsRecord holdingsRecord : pair.getIncomingRecordSet().getHoldingsRecords()) {
-          if (holdingsRecord.isUpdating()) {
+          if (holdingsRecord.isUpdating() && !holdingsRecord.unchanged()) {
             list.add(holdingsRecord);
           }
         }
@@ -267,7 +332,7 @@ public abstract class Repository {
     for (PairedRecordSets pair : pairsOfRecordSets) {
       if (pair.hasIncomingRecordSet()) {
         for (Item item : pair.getIncomingRecordSet().getItems()) {
-          if (item.isUpdating()) {
+          if (item.isUpdating() && !item.unchanged()) {
             list.add(item);
           }
         }
@@ -29,20 +29,35 @@ public class RepositoryByHrids extends Repository {
   public final Map<String,Instance> provisionalInstancesByHrid = new HashMap<>();
 
   public Future<Void> buildRepositoryFromStorage (UpdateRequest request) {
+    // Take what was already fetched, if anything, and look up the rest
+    List<String> instanceHrids = FetchedRecords.stashFetched(getIncomingInstanceHRIDs(),
+        fetchedRecords.instanceSetsByHrid, this::stashInstanceSet);
+    List<String> holdingsRecordHrids = FetchedRecords.stashFetched(getIncomingHoldingsRecordHRIDs(),
+        fetchedRecords.holdingsRecordsByHrid,
+        holdingsRecord -> stashExistingHoldingsRecords(new JsonArray().add(holdingsRecord)));
+    List<String> itemHrids = FetchedRecords.stashFetched(getIncomingItemHRIDs(),
+        fetchedRecords.itemsByHrid, item -> stashExistingItems(new JsonArray().add(item)));
+    List<String> referencedInstanceHrids = FetchedRecords.stashFetched(getIncomingReferencedInstanceHrids(),
+        fetchedRecords.referencedInstancesByHrid,
+        instance -> stashReferencedInstances(new JsonArray().add(instance)));
+    List<String> referencedInstanceIds = FetchedRecords.stashFetched(getIncomingReferencedInstanceIds(),
+        fetchedRecords.referencedInstancesByUUID,
+        instance -> stashReferencedInstances(new JsonArray().add(instance)));
+
     List<Future<Void>> existingRecordsByHridsFutures = new ArrayList<>();
-    for (List<String> idList : getSubListsOfTen(getIncomingInstanceHRIDs())) {
+    for (List<String> idList : getSubListsOfTen(instanceHrids)) {
       existingRecordsByHridsFutures.add(requestInstanceSetsByHRIDs(request, idList));
     }
-    for (List<String> idList : getSubListsOfFifty(getIncomingHoldingsRecordHRIDs())) {
+    for (List<String> idList : getSubListsOfFifty(holdingsRecordHrids)) {
       existingRecordsByHridsFutures.add(requestHoldingsRecordsByHRIDs(request, idList));
     }
-    for (List<String> idList : getSubListsOfFifty(getIncomingItemHRIDs())) {
+    for (List<String> idList : getSubListsOfFifty(itemHrids)) {
       existingRecordsByHridsFutures.add(requestItemsByHRIDs(request, idList));
     }
-    for (List<String> idList : getSubListsOfFifty(getIncomingReferencedInstanceHrids())) {
+    for (List<String> idList : getSubListsOfFifty(referencedInstanceHrids)) {
       existingRecordsByHridsFutures.add(requestReferencedInstancesByHRIDs(request, idList));
     }
-    for (List<String> idList : getSubListsOfFifty(getIncomingReferencedInstanceIds())) {
+    for (List<String> idList : getSubListsOfFifty(referencedInstanceIds)) {
       existingRecordsByHridsFutures.add(requestReferencedInstancesByUUIDs(request, idList));
     }
     return Future.join(existingRecordsByHridsFutures)
@@ -79,10 +94,26 @@ public class RepositoryByHrids extends Repository {
   private Future<Void> requestInstanceSetsByHRIDs(UpdateRequest updateRequest,
                                                   List<String> hrids) {
     return InventoryStorage.lookupInstanceSets(updateRequest.getOkapiClient(), new QueryByListOfIds("hrid", hrids))
-        .onSuccess(this::stashInstanceSets)
+        .onSuccess(instanceSets -> {
+          registerFetchedInstanceSets(hrids, instanceSets);
+          stashInstanceSets(instanceSets);
+        })
         .mapEmpty();
   }
 
+  private void registerFetchedInstanceSets(List<String> hrids, JsonArray instanceSets) {
+    for (String hrid : hrids) {
+      fetchedRecords.instanceSetsByHrid.putIfAbsent(hrid, null);
+    }
+    if (instanceSets != null) {
+      for (Object o : instanceSets) {
+        JsonObject instanceSet = ((JsonObject) o).copy();
+        fetchedRecords.instanceSetsByHrid.put(
+            instanceSet.getJsonObject(INSTANCE).getString(HRID_IDENTIFIER_KEY), instanceSet);
+      }
+    }
+  }
+
   private void stashInstanceSets(JsonArray instanceSets) {
     if (instanceSets == null) {
       return;
@@ -145,6 +176,8 @@ public class RepositoryByHrids extends Repository {
                     new QueryByListOfIds("hrid", hrids))
             .onComplete(instances -> {
               if (instances.succeeded()) {
+                FetchedRecords.registerFetched(hrids, instances.result(), HRID_IDENTIFIER_KEY,
+                    fetchedRecords.referencedInstancesByHrid);
                 if (instances.result() != null) {
                   stashReferencedInstances(instances);
                 }
@@ -158,7 +191,11 @@ public class RepositoryByHrids extends Repository {
   }
 
   private void stashReferencedInstances(AsyncResult<JsonArray> instances) {
-    for (Object o : instances.result()) {
+    stashReferencedInstances(instances.result());
+  }
+
+  private void stashReferencedInstances(JsonArray instances) {
+    for (Object o : instances) {
       Instance instance = new Instance((JsonObject) o);
       referencedInstancesByHrid.put(instance.getHRID(), instance);
       referencedInstancesByUUID.put(instance.getUUID(), instance);
@@ -172,6 +209,8 @@ public class RepositoryByHrids extends Repository {
                     new QueryByListOfIds("id", uuids))
             .onComplete(instances -> {
               if (instances.succeeded()) {
+                FetchedRecords.registerFetched(uuids, instances.result(), "id",
+                    fetchedRecords.referencedInstancesByUUID);
                 if (instances.result() != null) {
                   stashReferencedInstances(instances);
                 }
@@ -191,6 +230,8 @@ public class RepositoryByHrids extends Repository {
                     new QueryByListOfIds("hrid", hrids))
             .onComplete(records -> {
               if (records.succeeded()) {
+                FetchedRecords.registerFetched(hrids, records.result(), HRID_IDENTIFIER_KEY,
+                    fetchedRecords.holdingsRecordsByHrid);
                 if (records.result() != null) {
                   stashExistingHoldingsRecords(records);
                 }
@@ -213,6 +254,8 @@ public class RepositoryByHrids extends Repository {
                     new QueryByListOfIds("hrid", hrids))
             .onComplete(records -> {
               if (records.succeeded()) {
+                FetchedRecords.registerFetched(hrids, records.result(), HRID_IDENTIFIER_KEY,
+                    fetchedRecords.itemsByHrid);
                 if (records.result() != null) {
                   stashExistingItems(records);
                 }
@@ -233,6 +276,12 @@ public class RepositoryByHrids extends Repository {
     return hrids;
   }
 
+  @Override
+  protected boolean wroteInstanceRelations() {
+    return super.wroteInstanceRelations()
+        || provisionalInstancesByHrid.values().stream().anyMatch(Repository::wroteTo);
+  }
+
   public Instance getCreatingInstanceByHrid (String hrid) {
     for (Instance instance : getInstancesToCreate()) {
       if (instance.getHRID().equals(hrid) && !instance.failed()) {
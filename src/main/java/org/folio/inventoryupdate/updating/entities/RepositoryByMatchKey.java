@@ -2,26 +2,28 @@ package org.folio.inventoryupdate.updating.entities;
 
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import org.folio.inventoryupdate.updating.ErrorReport;
 import org.folio.inventoryupdate.updating.InventoryStorage;
 import org.folio.inventoryupdate.updating.QueryByListOfIds;
 import org.folio.inventoryupdate.updating.QueryShiftingMatchKey;
-import org.folio.inventoryupdate.updating.UpdatePlanSharedInventory;
+import org.folio.inventoryupdate.updating.ReferenceDataCache;
 import org.folio.inventoryupdate.updating.UpdateRequest;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
 public class RepositoryByMatchKey extends Repository {
 
   protected final Map<String,Instance> existingInstancesByMatchKey = new HashMap<>();
   public final Map<String,Instance> secondaryInstancesByLocalIdentifier = new HashMap<>();
+  // Institutions of the locations of the holdings records, from the reference data cache of the tenant
+  private Map<String,String> institutionIdsByLocationId = new HashMap<>();
 
   @Override
   public Future<Void> buildRepositoryFromStorage (UpdateRequest request) {
@@ -147,34 +149,28 @@ public class RepositoryByMatchKey extends Repository {
   }
 
   private Future<Void> mapLocationsToInstitutionIds (UpdateRequest request) {
-    Promise<Void> mapReady = Promise.promise();
-    boolean missMappings = false;
+    Set<String> locationIds = new HashSet<>();
     for (PairedRecordSets pair : pairsOfRecordSets) {
       if (pair.hasIncomingRecordSet()) {
         for (HoldingsRecord holdings : pair.getIncomingRecordSet().getHoldingsRecords()) {
-          if (!UpdatePlanSharedInventory.locationsToInstitutionsMap()
-                  .containsKey(holdings.getPermanentLocationId())) {
-            missMappings = true;
-            break;
-          }
+          locationIds.add(holdings.getPermanentLocationId());
         }
       }
       if (pair.hasExistingRecordSet()) {
-        for (HoldingsRecord holdings : pair.getIncomingRecordSet().getHoldingsRecords()) {
-          if (!UpdatePlanSharedInventory.locationsToInstitutionsMap()
-                  .containsKey(holdings.getPermanentLocationId())) {
-            missMappings = true;
-            break;
-          }
+        for (HoldingsRecord holdings : pair.getExistingRecordSet().getHoldingsRecords()) {
+          locationIds.add(holdings.getPermanentLocationId());
         }
       }
     }
-    if (missMappings) {
-      InventoryStorage.getLocations(request.getOkapiClient()).onComplete(gotLocations -> {
-        if (gotLocations.succeeded()) {
-          JsonArray locationsJson = gotLocations.result();
-          if (locationsJson == null || locationsJson.isEmpty()) {
-            mapReady.fail(
+    locationIds.remove(null);
+    if (locationIds.isEmpty()) {
+      return Future.succeededFuture();
+    }
+    return ReferenceDataCache.of(request.getOkapiClient())
+        .institutionIdsByLocationId(request.getOkapiClient(), locationIds)
+        .compose(locations -> {
+          if (locations.isEmpty()) {
+            return Future.failedFuture(
                     new ErrorReport(
                             ErrorReport.ErrorCategory.STORAGE,
                             ErrorReport.INTERNAL_SERVER_ERROR,
@@ -182,22 +178,14 @@ public class RepositoryByMatchKey extends Repository {
                             .setEntityType(InventoryRecord.Entity.LOCATION)
                             .setTransaction(InventoryRecord.Transaction.GET.name())
                             .asJsonString());
-          } else {
-            Iterator<?> locationsIterator = locationsJson.iterator();
-            while (locationsIterator.hasNext()) {
-              JsonObject location = (JsonObject) locationsIterator.next();
-              UpdatePlanSharedInventory.locationsToInstitutionsMap().put(location.getString("id"), location.getString("institutionId"));
-            }
-            mapReady.complete();
           }
-        } else {
-          mapReady.fail(gotLocations.cause().getMessage());
-        }
-      });
-    } else {
-      mapReady.complete();
-    }
-    return mapReady.future();
+          institutionIdsByLocationId = locations;
+          return Future.succeededFuture();
+        });
+  }
+
+  public Map<String, String> getInstitutionIdsByLocationId() {
+    return institutionIdsByLocationId;
   }
 
   @Override
@@ -7,6 +7,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.folio.inventoryupdate.updating.DeletePlanAllHRIDs;
 import org.folio.inventoryupdate.updating.DeletePlanSharedInventory;
+import org.folio.inventoryupdate.updating.ErrorReport;
 import org.folio.inventoryupdate.updating.InventoryQuery;
 import org.folio.inventoryupdate.updating.InventoryUpdateOutcome;
 import org.folio.inventoryupdate.updating.QueryByHrid;
@@ -84,7 +85,7 @@ public class HandlersUpdating {
       if (update.succeeded()) {
         promise.complete(update.result());
       } else {
-        logger.error("A batch upsert failed, bringing down all records of the batch. Switching to record-by-record updates");
+        logger.error("A batch upsert failed, bringing down all records of the batch. Retrying the batch in parts");
         UpdateMetrics accumulatedStats = new UpdateMetrics();
         JsonArray accumulatedErrorReport = new JsonArray();
         InventoryUpdateOutcome compositeOutcome = new InventoryUpdateOutcome();
@@ -94,8 +95,8 @@ public class HandlersUpdating {
                 if (outcome.hasMetrics()) {
                   accumulatedStats.add(outcome.getMetrics());
                 }
-                if (outcome.hasError()) {
-                  accumulatedErrorReport.add(outcome.getError().asJson());
+                for (ErrorReport error : outcome.getErrors()) {
+                  accumulatedErrorReport.add(error.asJson());
                 }
               }
               compositeOutcome.setMetrics(accumulatedStats);
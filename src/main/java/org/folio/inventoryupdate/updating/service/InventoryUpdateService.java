@@ -2,13 +2,17 @@ package org.folio.inventoryupdate.updating.service;
 
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.openapi.router.RouterBuilder;
 import io.vertx.openapi.contract.OpenAPIContract;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.folio.inventoryupdate.updating.ReferenceDataCache;
+import org.folio.inventoryupdate.updating.StorageLimiter;
 import org.folio.inventoryupdate.updating.UpdateRequest;
+import org.folio.okapi.common.XOkapiHeaders;
 import org.folio.tlib.RouterCreator;
 import org.folio.tlib.TenantInitHooks;
 
@@ -24,6 +28,8 @@ public class InventoryUpdateService implements RouterCreator, TenantInitHooks {
 
   public static final Logger logger = LogManager.getLogger("inventory-update");
   public static final String HEALTH_CHECK = "/admin/health";
+  public static final String STORAGE_CONCURRENCY = "/admin/storage-concurrency";
+  public static final String REFERENCE_DATA = "/admin/reference-data";
 
   HandlersUpdating updating = new HandlersUpdating();
   HandlersFetching fetching = new HandlersFetching();
@@ -37,6 +43,9 @@ public class InventoryUpdateService implements RouterCreator, TenantInitHooks {
           handlers(vertx, routerBuilder);
           Router router = routerBuilder.createRouter();
           router.route(HEALTH_CHECK).handler(InventoryUpdateService::handleHealthCheck);
+          router.get(STORAGE_CONCURRENCY).handler(InventoryUpdateService::handleStorageConcurrency);
+          router.get(REFERENCE_DATA).handler(InventoryUpdateService::handleReferenceData);
+          router.delete(REFERENCE_DATA).handler(InventoryUpdateService::handleReferenceDataRefresh);
           router.route("/*").handler(InventoryUpdateService::handleUnrecognizedPath);
           return router;
         }).onSuccess(res -> logger.info("OpenAPI contract parsed."));
@@ -74,6 +83,45 @@ public class InventoryUpdateService implements RouterCreator, TenantInitHooks {
     responseJson(routingContext, OK).end("{ \"status\": \"UP\" }");
   }
 
+  /**
+   * Shows the limiter of concurrent storage requests of the tenant of the request.
+   */
+  public static void handleStorageConcurrency(RoutingContext routingContext) {
+    String tenant = routingContext.request().getHeader(XOkapiHeaders.TENANT);
+    if (tenant == null) {
+      responseError(routingContext, 400, "Missing header " + XOkapiHeaders.TENANT);
+      return;
+    }
+    responseJson(routingContext, OK).end(
+        new JsonObject().put("storageConcurrency", StorageLimiter.forTenant(tenant).asJson()).encodePrettily());
+  }
+
+  /**
+   * Shows the reference data cache of the tenant of the request.
+   */
+  public static void handleReferenceData(RoutingContext routingContext) {
+    String tenant = routingContext.request().getHeader(XOkapiHeaders.TENANT);
+    if (tenant == null) {
+      responseError(routingContext, 400, "Missing header " + XOkapiHeaders.TENANT);
+      return;
+    }
+    responseJson(routingContext, OK).end(
+        new JsonObject().put("referenceData", ReferenceDataCache.forTenant(tenant).asJson()).encodePrettily());
+  }
+
+  /**
+   * Drops the cached reference data of the tenant of the request.
+   */
+  public static void handleReferenceDataRefresh(RoutingContext routingContext) {
+    String tenant = routingContext.request().getHeader(XOkapiHeaders.TENANT);
+    if (tenant == null) {
+      responseError(routingContext, 400, "Missing header " + XOkapiHeaders.TENANT);
+      return;
+    }
+    ReferenceDataCache.forTenant(tenant).refresh();
+    routingContext.response().setStatusCode(204).end();
+  }
+
   public static void handleUnrecognizedPath(RoutingContext routingContext) {
     responseError(routingContext, NOT_FOUND, "No Service found for requested path " + routingContext.request().path());
   }
@@ -6,6 +6,8 @@ import static org.junit.Assert.assertTrue;
 
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
 import java.net.URI;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -111,7 +113,7 @@ public class HtmlDirectoryHarvesterTest {
 
   private Channel channel(String harvestUrl) {
     return new Channel(UUID.randomUUID(), "Channel", "channel", "XML", UUID.randomUUID(), harvestUrl, null,
-        true, true) {
+        true, true, null, null, null, null, null) {
       @Override
       public Future<Integer> setLastHarvested(String lastHarvested, EntityStorage configStorage) {
         return Future.succeededFuture(1);
@@ -133,6 +135,17 @@ public class HtmlDirectoryHarvesterTest {
       return Future.succeededFuture();
     }
 
+    @Override
+    public Future<Void> push(String fileName, String timeStamp, ReadStream<Buffer> payload) {
+      fileNames.add(fileName);
+      return Future.succeededFuture();
+    }
+
+    @Override
+    public Future<Void> onFilePushed(Runnable handler) {
+      return Future.failedFuture("No notifications");
+    }
+
     @Override
     public Future<Boolean> hasFileInProcess() {
       return Future.succeededFuture(false);
@@ -9,6 +9,7 @@ import static org.folio.inventoryupdate.unittests.fixtures.Service.PATH_STEPS;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import io.restassured.RestAssured;
@@ -43,7 +44,9 @@ import org.folio.inventoryupdate.importing.foliodata.SettingsClient;
 import org.folio.inventoryupdate.importing.moduledata.Channel;
 import org.folio.inventoryupdate.importing.moduledata.database.DatabaseInit;
 import org.folio.inventoryupdate.importing.moduledata.database.Util;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.ChannelRuntime;
 import org.folio.inventoryupdate.importing.service.delivery.fileimport.FileListeners;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.XmlFileProcessor;
 import org.folio.inventoryupdate.importing.service.delivery.respond.Channels;
 import org.folio.inventoryupdate.importing.service.delivery.respond.JobsAndMonitoring;
 import org.folio.inventoryupdate.importing.service.delivery.respond.Transformations;
@@ -134,6 +137,10 @@ public class ImportTests extends InventoryUpdateTestBase {
   }
 
   private void configureSamplePipeline() {
+    configureSamplePipeline(Files.JSON_CHANNEL);
+  }
+
+  private void configureSamplePipeline(JsonObject channel) {
     postJsonObject(Service.PATH_TRANSFORMATIONS, Files.JSON_TRANSFORMATION_CONFIG);
 
     JsonObject step = new JsonObject();
@@ -146,7 +153,7 @@ public class ImportTests extends InventoryUpdateTestBase {
         .put("transformationId", Files.JSON_TRANSFORMATION_CONFIG.getString("id"))
         .put("position", "1");
     postJsonObject(Service.PATH_TSAS, tsa);
-    postJsonObject(Service.PATH_CHANNELS, Files.JSON_CHANNEL);
+    postJsonObject(Service.PATH_CHANNELS, channel);
   }
 
   private void configureSamplePipeline2() {
@@ -749,6 +756,30 @@ public class ImportTests extends InventoryUpdateTestBase {
     assertEquals(true, channelAtLast.getBoolean("commissioned"));
   }
 
+  @Test
+  public void takesOverChannelWhenLeaseOfOtherInstanceExpires() throws Exception {
+    postJsonObject(Service.PATH_TRANSFORMATIONS, Files.JSON_TRANSFORMATION_CONFIG);
+    String channelId = Files.JSON_CHANNEL.getString("id");
+    postJsonObject(Service.PATH_CHANNELS, Files.JSON_CHANNEL.copy().put("enabled", false));
+    // Another module instance holds the lease of the channel, so this instance never gets it
+    executeSql("INSERT INTO %s.channel_lease (channel_id, owner, expires) "
+        + "VALUES ('" + channelId + "', 'other-instance', now() + INTERVAL '30 seconds')");
+    given()
+        .baseUri(BASE_URI_INVENTORY_UPDATE)
+        .header(Service.OKAPI_TENANT)
+        .header(Service.OKAPI_URL)
+        .header(Service.OKAPI_TOKEN)
+        .post("/inventory-import/channels/" + channelId + "/commission")
+        .then().statusCode(200);
+    assertFalse(FileListeners.hasFileListener(Service.TENANT, UUID.fromString(channelId)));
+
+    // The other instance goes down and its lease expires
+    executeSql("UPDATE %s.channel_lease SET expires = now() - INTERVAL '1 minute'");
+    FileListeners.takeOverOrphanedChannels(Service.TENANT)
+        .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+    assertTrue(FileListeners.hasFileListener(Service.TENANT, UUID.fromString(channelId)));
+  }
+
   @Test
   public void canDeCommissionAndCommissionChannel () {
     postJsonObject(Service.PATH_TRANSFORMATIONS, Files.JSON_TRANSFORMATION_CONFIG);
@@ -908,6 +939,11 @@ public class ImportTests extends InventoryUpdateTestBase {
     JsonObject json = InventoryXmlToInventoryJson.convert(Files.XML_INVENTORY_RECORD_SET);
     assertThat(json.getJsonObject("instance"), notNullValue());
     assertThat(json.getJsonArray("holdingsRecords").size(), is(1));
+    assertThat(json.getJsonObject("instance").getString("hrid"), is("123"));
+    assertThat(json.getJsonObject("instance").getJsonArray("instanceFormatIds").getString(0),
+        is("8d511d33-5e85-4c5d-9bce-6e3c9cd0c324"));
+    assertThat(json.getJsonObject("processing").getJsonObject("item").getJsonObject("status")
+        .getJsonArray("ifStatusWas").getJsonObject(1).getString("name"), is("Available"));
   }
 
   @Test
@@ -1057,6 +1093,29 @@ public class ImportTests extends InventoryUpdateTestBase {
         Files.XML_INVENTORY_RECORD_SET,404);
   }
 
+  @Test
+  public void willReuseCompiledXsltUntilStepIsUpdated() {
+    configureSamplePipeline();
+    String channelTag = Files.JSON_CHANNEL.getString("tag");
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelTag + "/try-transformation",
+        Files.XML_INVENTORY_RECORD_SET, 200);
+    getRecords(Service.PATH_TEMPLATES_CACHE).body("tenantEntries", is(1));
+    int hits = getRecords(Service.PATH_TEMPLATES_CACHE).extract().path("hits");
+    int misses = getRecords(Service.PATH_TEMPLATES_CACHE).extract().path("misses");
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelTag + "/try-transformation",
+        Files.XML_INVENTORY_RECORD_SET, 200);
+    getRecords(Service.PATH_TEMPLATES_CACHE)
+        .body("hits", is(hits + 1))
+        .body("misses", is(misses));
+    putXml(Service.PATH_STEPS + "/" + STEP_ID + "/script", Files.XSLT_COPY_XML_DOC);
+    await().until(() -> getRecords(Service.PATH_TEMPLATES_CACHE).extract().path("tenantEntries"), is(0));
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelTag + "/try-transformation",
+        Files.XML_INVENTORY_RECORD_SET, 200);
+    getRecords(Service.PATH_TEMPLATES_CACHE)
+        .body("misses", is(misses + 1))
+        .body("tenantEntries", is(1));
+  }
+
   @Test
   public void cannotUploadSourceXmlToDisabledChannel() {
     configureSamplePipeline();
@@ -1244,6 +1303,224 @@ public class ImportTests extends InventoryUpdateTestBase {
     assertThat("Instances in storage", fakeFolioApis.instanceStorage.getRecords().size(), is(198));
   }
 
+  @Test
+  public void canInterleaveUpsertsAndDeletesWithConcurrentBatches() {
+    configureSamplePipeline(Files.JSON_CHANNEL.copy().put("concurrentBatches", 3));
+    String channelId = Files.JSON_CHANNEL.getString("id");
+    getRecordById(Service.PATH_CHANNELS, channelId).body("concurrentBatches", is(3));
+    // Slow storage down, for batches to be in flight at the same time
+    fakeFolioApis.setResponseDelay(50);
+
+    Files.filesOfInventoryXmlRecords(1, 500, "200")
+        .forEach(xml -> postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", xml, 200));
+    // Deletes of records that were upserted in earlier batches of the same file
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload",
+        Files.createCollectionOfInventoryXmlRecordsWithDeletes(1, 500, "200", 50, 250, 251, 499), 200);
+    await().until(() -> getTotalRecords(Service.PATH_IMPORT_JOBS), is(1));
+    String jobId = getRecords(Service.PATH_IMPORT_JOBS).extract().path("importJobs[0].id");
+    String started = getRecordById(Service.PATH_IMPORT_JOBS, jobId).extract().path("started");
+    await().until(() -> getRecordById(Service.PATH_IMPORT_JOBS, jobId).extract().path("finished"), greaterThan(started));
+    assertThat("Instances in storage", fakeFolioApis.instanceStorage.getRecords().size(), is(496));
+    // Each batch here either creates or updates its instances, in one request, so overlapping requests are from
+    // different batches
+    assertThat("Instance batch requests in flight at the same time",
+        fakeFolioApis.getMaxRequestsInFlight("POST", FakeFolioApisForImporting.INSTANCE_STORAGE_BATCH_PATH),
+        greaterThan(1));
+  }
+
+  @Test
+  public void concurrentBatchesDoNotLoseHoldingsMovedFromInstanceOfEarlierBatch() {
+    configureSamplePipeline(Files.JSON_CHANNEL.copy().put("concurrentBatches", 3));
+    String channelId = Files.JSON_CHANNEL.getString("id");
+    getRecordById(Service.PATH_CHANNELS, channelId).body("concurrentBatches", is(3));
+    Files.CollectionOfXmlRecords initial = new Files.CollectionOfXmlRecords();
+    initial.addUpsertRecordWithHoldingsRecord(1, "H-1", "200");
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", initial.asXmlString(), 200);
+    await().until(() -> fakeFolioApis.holdingsStorage.getRecords().size(), is(1));
+    fakeFolioApis.setResponseDelay(50);
+
+    // The first batch leaves the holdings record out of instance 1, a later batch moves it to instance 150
+    Files.CollectionOfXmlRecords moving = new Files.CollectionOfXmlRecords();
+    for (int i = 1; i <= 300; i++) {
+      if (i == 150) {
+        moving.addUpsertRecordWithHoldingsRecord(i, "H-1", "200");
+      } else {
+        moving.addUpsertRecord(i, "200");
+      }
+    }
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", moving.asXmlString(), 200);
+    await().until(() -> fakeFolioApis.instanceStorage.getRecords().size(), is(300));
+    await().until(() -> getTotalRecords(Service.PATH_JOB_LOGS), is(8));
+    String instanceId = fakeFolioApis.instanceStorage.getRecords().stream()
+        .filter(instance -> "150".equals(instance.getJson().getString("hrid")))
+        .findFirst().orElseThrow().getJson().getString("id");
+    await().until(() -> fakeFolioApis.holdingsStorage.getRecords().stream()
+        .map(holdingsRecord -> holdingsRecord.getJson().getString("instanceId")).toList(), contains(instanceId));
+  }
+
+  @Test
+  public void canDeleteManyInstancesInOneBatch() {
+    configureSamplePipeline();
+    String channelId = Files.JSON_CHANNEL.getString("id");
+    getRecordById(Service.PATH_CHANNELS, channelId);
+
+    Files.filesOfInventoryXmlRecords(1, 100, "200")
+        .forEach(xml -> postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", xml, 200));
+    await().until(() -> getTotalRecords(Service.PATH_JOB_LOGS), is(4));
+    assertThat("Instances in storage", fakeFolioApis.instanceStorage.getRecords().size(), is(100));
+    // 25 deletes, including one of a non-existing instance, among upserts of the remaining instances
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload",
+        Files.createCollectionOfInventoryXmlRecordsWithDeletes(1, 101, "200",
+            2, 6, 10, 14, 18, 22, 26, 30, 34, 38, 42, 46, 50, 54, 58, 62, 66, 70, 74, 78, 82, 86, 90, 94, 101), 200);
+    await().until(() -> getTotalRecords(Service.PATH_IMPORT_JOBS), is(2));
+    await().until(() -> getTotalRecords(Service.PATH_JOB_LOGS), greaterThan(4));
+    await().until(() -> fakeFolioApis.instanceStorage.getRecords().size(), is(76));
+  }
+
+  @Test
+  public void fileImportThreadsAreSharedFairlyBetweenTenants() {
+    ChannelRuntime.configure(4, 2, 1);
+    try {
+      Future<Void> firstOfA = ChannelRuntime.admitFileImport(vertx.getOrCreateContext(), "tenant_a");
+      Future<Void> secondOfA = ChannelRuntime.admitFileImport(vertx.getOrCreateContext(), "tenant_a");
+      Future<Void> firstOfB = ChannelRuntime.admitFileImport(vertx.getOrCreateContext(), "tenant_b");
+      await().until(() -> firstOfA.succeeded() && firstOfB.succeeded());
+      // Tenant A is held at its quota, even though it asked first
+      assertThat("Second file of tenant A admitted", secondOfA.isComplete(), is(false));
+      assertThat("Files importing for tenant A", ChannelRuntime.fileImportsOf("tenant_a"), is(1));
+      ChannelRuntime.releaseFileImport("tenant_a");
+      await().until(secondOfA::succeeded);
+      ChannelRuntime.releaseFileImport("tenant_a");
+      ChannelRuntime.releaseFileImport("tenant_b");
+      assertThat("Files importing for tenant A", ChannelRuntime.fileImportsOf("tenant_a"), is(0));
+    } finally {
+      ChannelRuntime.configure(ChannelRuntime.DEFAULT_LISTENER_POOL_SIZE,
+          ChannelRuntime.DEFAULT_FILE_IMPORT_POOL_SIZE, ChannelRuntime.DEFAULT_FILE_IMPORTS_PER_TENANT);
+    }
+  }
+
+  @Test
+  public void doesNotSkipRecordRevertedLaterInSameFile() {
+    configureSamplePipeline(Files.JSON_CHANNEL.copy().put("recordIdentifierElement", "hrid"));
+    String channelId = Files.JSON_CHANNEL.getString("id");
+    getRecordById(Service.PATH_CHANNELS, channelId).body("recordIdentifierElement", is("hrid"));
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload",
+        Files.createCollectionOfInventoryXmlRecordsWithDeletes(1, 2, "200"), 200);
+    await().until(() -> getTotalRecords(Service.PATH_JOB_LOGS), is(4));
+
+    // Record 1 changes, then changes back to what was imported, before the fingerprint of the change is saved
+    Files.CollectionOfXmlRecords collection = new Files.CollectionOfXmlRecords();
+    collection.addUpsertRecord(1, "200");
+    collection.addUpsertRecord(2, "200");
+    collection.addUpsertRecord(1, "200");
+    String sourceFile = collection.asXmlString().replaceFirst("Title 1<", "Title B<");
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", sourceFile, 200);
+    await().until(() -> getTotalRecords(Service.PATH_JOB_LOGS), is(8));
+    assertThat("Titles in storage", fakeFolioApis.instanceStorage.getRecords().stream()
+        .map(instance -> instance.getJson().getString("title")).toList(), containsInAnyOrder("Title 1", "Title 2"));
+  }
+
+  @Test
+  public void canSkipUnchangedSourceRecordsAndClearFingerprints() {
+    configureSamplePipeline(Files.JSON_CHANNEL.copy().put("recordIdentifierElement", "hrid"));
+    String channelId = Files.JSON_CHANNEL.getString("id");
+    getRecordById(Service.PATH_CHANNELS, channelId).body("recordIdentifierElement", is("hrid"));
+    String sourceFile = Files.createCollectionOfInventoryXmlRecordsWithDeletes(1, 100, "200");
+
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", sourceFile, 200);
+    await().until(() -> getTotalRecords(Service.PATH_JOB_LOGS), is(4));
+    assertThat("Instances in storage", fakeFolioApis.instanceStorage.getRecords().size(), is(100));
+    fakeFolioApis.instanceStorage.getRecords().forEach(instance -> instance.getJson().put("title", "Edited"));
+
+    // Unchanged records are skipped, leaving the edits in place
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", sourceFile, 200);
+    await().until(() -> getTotalRecords(Service.PATH_JOB_LOGS), is(8));
+    assertThat("Edited instances", fakeFolioApis.instanceStorage.getRecords().stream()
+        .filter(instance -> "Edited".equals(instance.getJson().getString("title"))).count(), is(100L));
+
+    // A revised step makes the same source records import again
+    putXml(Service.PATH_STEPS + "/" + STEP_ID + "/script",
+        Files.XSLT_COPY_XML_DOC.replace("</xsl:stylesheet>", "<!-- revised --></xsl:stylesheet>"));
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", sourceFile, 200);
+    await().until(() -> getTotalRecords(Service.PATH_JOB_LOGS), is(12));
+    assertThat("Edited instances", fakeFolioApis.instanceStorage.getRecords().stream()
+        .filter(instance -> "Edited".equals(instance.getJson().getString("title"))).count(), is(0L));
+    fakeFolioApis.instanceStorage.getRecords().forEach(instance -> instance.getJson().put("title", "Edited"));
+
+    given()
+        .baseUri(BASE_URI_INVENTORY_UPDATE)
+        .header(Service.OKAPI_TENANT)
+        .header(Service.OKAPI_URL)
+        .header(Service.OKAPI_TOKEN)
+        .post("/inventory-import/channels/" + channelId + "/clear-fingerprints")
+        .then().statusCode(200);
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", sourceFile, 200);
+    await().until(() -> getTotalRecords(Service.PATH_JOB_LOGS), is(16));
+    assertThat("Edited instances", fakeFolioApis.instanceStorage.getRecords().stream()
+        .filter(instance -> "Edited".equals(instance.getJson().getString("title"))).count(), is(0L));
+  }
+
+  @Test
+  public void willFileInvalidRecordsAndImportTheOthers() {
+    configureSamplePipeline();
+    String channelId = Files.JSON_CHANNEL.getString("id");
+    getRecordById(Service.PATH_CHANNELS, channelId);
+
+    Files.CollectionOfXmlRecords collection = new Files.CollectionOfXmlRecords();
+    for (int i = 1; i <= 100; i++) {
+      if (i % 25 == 0) {
+        collection.addUpsertRecordWithoutHrid(i, "200");
+      } else {
+        collection.addUpsertRecord(i, "200");
+      }
+    }
+    // Repeats an HRID of the same batch
+    collection.addUpsertRecord(10, "200");
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", collection.asXmlString(), 200);
+    await().until(() -> getTotalRecords(Service.PATH_JOB_LOGS), is(4));
+    assertThat("Instances in storage", fakeFolioApis.instanceStorage.getRecords().size(), is(96));
+    await().until(() -> getTotalRecords(Service.PATH_FAILED_RECORDS), is(4));
+    getRecords(PATH_FAILED_RECORDS).body("failedRecords[0].recordErrors[0].message",
+        equalTo("HRID is missing or empty."));
+  }
+
+  @Test
+  public void canBoundBatchSizesAndReportThemInJobLog() {
+    configureSamplePipeline(Files.JSON_CHANNEL.copy().put("minBatchSize", 5).put("maxBatchSize", 20));
+    String channelId = Files.JSON_CHANNEL.getString("id");
+    getRecordById(Service.PATH_CHANNELS, channelId).body("maxBatchSize", is(20));
+
+    Files.filesOfInventoryXmlRecords(1, 100, "200")
+        .forEach(xml -> postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", xml, 200));
+    await().until(() -> getTotalRecords(Service.PATH_JOB_LOGS), is(4));
+    assertThat("Instances in storage", fakeFolioApis.instanceStorage.getRecords().size(), is(100));
+    assertThat(getTotalRecords(Service.PATH_JOB_LOGS + "?query=line=File #1 and line=bounds 5-20"), is(1));
+  }
+
+  @Test
+  public void canUpdateRecordsPrefetchedByBatchesWaitingForTheirTurn() {
+    configureSamplePipeline(Files.JSON_CHANNEL.copy()
+        .put("minBatchSize", 10).put("maxBatchSize", 10).put("concurrentBatches", 1));
+    String channelId = Files.JSON_CHANNEL.getString("id");
+    getRecordById(Service.PATH_CHANNELS, channelId).body("maxBatchSize", is(10));
+    String sourceFile = Files.createCollectionOfInventoryXmlRecordsWithDeletes(1, 100, "200");
+
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", sourceFile, 200);
+    await().until(() -> getTotalRecords(Service.PATH_JOB_LOGS), is(4));
+    assertThat("Instances in storage", fakeFolioApis.instanceStorage.getRecords().size(), is(100));
+    // Each batch after the first fetches its existing records while the batch ahead of it writes, which storage
+    // responding slowly makes sure of
+    fakeFolioApis.setResponseDelay(50);
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", sourceFile, 200);
+    await().until(() -> getTotalRecords(Service.PATH_JOB_LOGS), is(8));
+    assertThat("Instances in storage", fakeFolioApis.instanceStorage.getRecords().size(), is(100));
+    assertThat("Instances updated once", fakeFolioApis.instanceStorage.getRecords().stream()
+        .filter(instance -> instance.getVersion() == 2).count(), is(100L));
+    XmlFileProcessor fileProcessor = (XmlFileProcessor) FileListeners.getFileListener(
+        Service.TENANT, UUID.fromString(channelId)).getProcessor();
+    assertThat("Batches prefetched", fileProcessor.getPrefetchedBatches(), greaterThan(0));
+  }
+
   @Test
   public void handlesDeleteOfNonExistingInstance() {
     configureSamplePipeline();
@@ -1284,6 +1561,94 @@ public class ImportTests extends InventoryUpdateTestBase {
     assertThat("Instances in storage", fakeFolioApis.instanceStorage.getRecords().size(), is(500));
   }
 
+  @Test
+  public void canImportMultipleXmlSourceFilesWithParallelTransformation() {
+    configureSamplePipeline(Files.JSON_CHANNEL.copy().put("transformationWorkers", 4));
+    String channelId = Files.JSON_CHANNEL.getString("id");
+    getRecordById(Service.PATH_CHANNELS, channelId).body("transformationWorkers", is(4));
+
+    Files.filesOfInventoryXmlRecords(5, 100, "204")
+        .forEach(xml -> postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", xml, 200));
+
+    await().until(() -> getTotalRecords(Service.PATH_IMPORT_JOBS), is(1));
+    String jobId = getRecords(Service.PATH_IMPORT_JOBS).extract().path("importJobs[0].id");
+    String started = getRecordById(Service.PATH_IMPORT_JOBS, jobId).extract().path("started");
+    await().until(() -> getRecordById(Service.PATH_IMPORT_JOBS, jobId).extract().path("finished"), greaterThan(started));
+    getRecordById(Service.PATH_IMPORT_JOBS, jobId).body("amountImported", is(500));
+    assertThat("Instances in storage", fakeFolioApis.instanceStorage.getRecords().size(), is(500));
+  }
+
+  @Test
+  public void canImportXmlSourceFilesThroughChainedSteps() {
+    configureSamplePipeline(Files.JSON_CHANNEL.copy().put("transformationWorkers", 2));
+    putXml(Service.PATH_STEPS + "/" + STEP_ID + "/script", Files.XSLT_PREFIX_TITLE);
+    JsonObject step = new JsonObject()
+        .put("id", UUID.randomUUID().toString())
+        .put("name", "second step")
+        .put("script", Files.XSLT_SUFFIX_TITLE);
+    postJsonObject(Service.PATH_STEPS, step);
+    postJsonObject(Service.PATH_TSAS, new JsonObject()
+        .put("stepId", step.getString("id"))
+        .put("transformationId", Files.JSON_TRANSFORMATION_CONFIG.getString("id"))
+        .put("position", "2"));
+    String channelId = Files.JSON_CHANNEL.getString("id");
+
+    Files.filesOfInventoryXmlRecords(2, 100, "204")
+        .forEach(xml -> postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", xml, 200));
+
+    await().until(() -> getTotalRecords(Service.PATH_IMPORT_JOBS), is(1));
+    String jobId = getRecords(Service.PATH_IMPORT_JOBS).extract().path("importJobs[0].id");
+    String started = getRecordById(Service.PATH_IMPORT_JOBS, jobId).extract().path("started");
+    await().until(() -> getRecordById(Service.PATH_IMPORT_JOBS, jobId).extract().path("finished"), greaterThan(started));
+    getRecordById(Service.PATH_IMPORT_JOBS, jobId).body("amountImported", is(200));
+    assertThat("Instances in storage", fakeFolioApis.instanceStorage.getRecords().size(), is(200));
+    // The second step transformed the output of the first step
+    fakeFolioApis.instanceStorage.getRecords().forEach(instance ->
+        assertThat("Title after both steps", instance.getJson().getString("title"),
+            matchesPattern("Step one: Title \\d+, step two")));
+  }
+
+  @Test
+  public void canImportSourceFileLargerThanPayloadChunk() {
+    configureSamplePipeline();
+    String channelId = Files.JSON_CHANNEL.getString("id");
+    String sourceFile = Files.createCollectionOfInventoryXmlRecordsWithDeletes(1, 6000, "204");
+    assertThat("Source file spans multiple payload chunks", sourceFile.length(), greaterThan(1024 * 1024));
+
+    postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", sourceFile, 200);
+
+    await().until(() -> getTotalRecords(Service.PATH_IMPORT_JOBS), is(1));
+    String jobId = getRecords(Service.PATH_IMPORT_JOBS).extract().path("importJobs[0].id");
+    String started = getRecordById(Service.PATH_IMPORT_JOBS, jobId).extract().path("started");
+    await().until(() -> getRecordById(Service.PATH_IMPORT_JOBS, jobId).extract().path("finished"), greaterThan(started));
+    getRecordById(Service.PATH_IMPORT_JOBS, jobId).body("amountImported", is(6000));
+    assertThat("Instances in storage", fakeFolioApis.instanceStorage.getRecords().size(), is(6000));
+  }
+
+  @Test
+  public void purgeDeletesQueuedSourceFilePayloads() throws Exception {
+    postJsonObject(Service.PATH_TRANSFORMATIONS, Files.JSON_TRANSFORMATION_CONFIG);
+    String channelId = Files.JSON_CHANNEL.getString("id");
+    postJsonObject(Service.PATH_CHANNELS, Files.JSON_CHANNEL);
+    given()
+        .baseUri(BASE_URI_INVENTORY_UPDATE)
+        .header(Service.OKAPI_TENANT)
+        .header(Service.OKAPI_URL)
+        .header(Service.OKAPI_TOKEN)
+        .post("/inventory-import/channels/" + channelId + "/no-listen")
+        .then().statusCode(200);
+    long largeObjectsBefore = countLargeObjects();
+    Files.filesOfInventoryXmlRecords(3, 100, "204")
+        .forEach(xml -> postSourceXml(Service.PATH_CHANNELS + "/" + channelId + "/upload", xml, 200));
+    assertThat("Payloads of queued files", countLargeObjects(), is(largeObjectsBefore + 3));
+
+    tenantOp(Service.TENANT, new JsonObject()
+        .put("module_from", "mod-inventory-update-1.0.0")
+        .put("purge", true), null);
+    assertThat("Payloads left after purge", countLargeObjects(), is(largeObjectsBefore));
+    initSchema();
+  }
+
   @Test
   public void canHarvestXmlSourceFiles() {
     configureSamplePipeline();
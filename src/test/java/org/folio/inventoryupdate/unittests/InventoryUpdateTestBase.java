@@ -5,6 +5,7 @@ import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import org.folio.inventoryupdate.unittests.fakestorage.FakeApis;
 import org.folio.inventoryupdate.MainVerticle;
+import org.folio.inventoryupdate.updating.ReferenceDataCache;
 import org.folio.inventoryupdate.unittests.fakestorage.FakeFolioApisForImporting;
 import org.folio.inventoryupdate.unittests.fakestorage.RecordStorage;
 import org.folio.inventoryupdate.unittests.fakestorage.entities.InputInstance;
@@ -75,6 +76,7 @@ public abstract class InventoryUpdateTestBase {
   public static final String COMPLETED = org.folio.inventoryupdate.updating.entities.InventoryRecord.Outcome.COMPLETED.name();
   public static final String FAILED = org.folio.inventoryupdate.updating.entities.InventoryRecord.Outcome.FAILED.name();
   public static final String SKIPPED = org.folio.inventoryupdate.updating.entities.InventoryRecord.Outcome.SKIPPED.name();
+  public static final String UNCHANGED = org.folio.inventoryupdate.updating.entities.InventoryRecord.Outcome.UNCHANGED.name();
 
   public static final String HOLDINGS_RECORD = org.folio.inventoryupdate.updating.entities.InventoryRecord.Entity.HOLDINGS_RECORD.name();
   public static final String INSTANCE = org.folio.inventoryupdate.updating.entities.InventoryRecord.Entity.INSTANCE.name();
@@ -125,11 +127,16 @@ public abstract class InventoryUpdateTestBase {
     fakeFolioApis.instanceRelationshipStorage.clearEnforcedFailures();
     fakeFolioApis.instanceStorage.clearEnforcedFailures();
     fakeFolioApis.locationStorage.clearEnforcedFailures();
+    fakeFolioApis.itemStorage.generateProperties = false;
+    fakeFolioApis.holdingsStorage.generateProperties = false;
+    fakeFolioApis.resetRequestCounts();
+    fakeFolioApis.setResponseDelay(0);
 
     fakeFolioApis.locationStorage.insert(
         new InputLocation().setId(LOCATION_ID_1).setInstitutionId(INSTITUTION_ID_1));
     fakeFolioApis.locationStorage.insert(
         new InputLocation().setId(LOCATION_ID_2).setInstitutionId(INSTITUTION_ID_2));
+    ReferenceDataCache.refreshAll();
   }
 
   @After
@@ -318,4 +325,23 @@ public abstract class InventoryUpdateTestBase {
         .execute(Tuple.of(channelId, name, tag, type, transformationId, enabled, listening, harvestUrl))
         .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
   }
+
+  /**
+   * Runs an SQL statement in the tenant's schema, which the statement refers to as %s.
+   */
+  protected void executeSql(String sql) throws Exception {
+    TenantPgPool pool = TenantPgPool.pool(vertx, Service.TENANT);
+    pool.getPool()
+        .query(sql.formatted(pool.getSchema()))
+        .execute()
+        .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+  }
+
+  protected long countLargeObjects() throws Exception {
+    return TenantPgPool.pool(vertx, Service.TENANT).getPool()
+        .query("SELECT count(*) AS objects FROM pg_largeobject_metadata")
+        .execute()
+        .map(rows -> rows.iterator().next().getLong("objects"))
+        .toCompletionStage().toCompletableFuture().get(10, TimeUnit.SECONDS);
+  }
 }
@@ -0,0 +1,123 @@
+package org.folio.inventoryupdate.unittests;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.FileProcessor;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.ProcessingRecord;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.RecordReceiver;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.transformation.ParallelTransformationStage;
+import org.folio.inventoryupdate.importing.service.delivery.fileimport.transformation.XmlTransformationPipeline;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the parallel transformation stage with a pipeline that upper-cases the records, and fails on records
+ * containing "bad". The pipeline otherwise runs as is, so that it can also transform the records by itself.
+ */
+class ParallelTransformationStageTest {
+
+  private final List<String> received = new ArrayList<>();
+  private XmlTransformationPipeline pipeline;
+  private RecordReceiver target;
+  private FileProcessor fileProcessor;
+  private ParallelTransformationStage stage;
+
+  @BeforeEach
+  void createStage() {
+    pipeline = mock(XmlTransformationPipeline.class, CALLS_REAL_METHODS);
+    doAnswer(invocation -> {
+      ProcessingRecord processingRecord = invocation.getArgument(0);
+      if (processingRecord.getOriginalRecordAsString().contains("bad")) {
+        throw new IllegalArgumentException("Cannot transform " + processingRecord.getOriginalRecordAsString());
+      }
+      processingRecord.update(processingRecord.getOriginalRecordAsString().toUpperCase());
+      return null;
+    }).when(pipeline).transformRecord(any());
+    target = new RecordReceiver() {
+      @Override
+      public void put(ProcessingRecord processingRecord) {
+        received.add(processingRecord.getRecordAsString());
+      }
+
+      @Override
+      public void endOfDocument() {
+        received.add("END");
+      }
+
+      @Override
+      public long getProcessingTime() {
+        return 0;
+      }
+
+      @Override
+      public int getRecordsProcessed() {
+        return received.size();
+      }
+    };
+    fileProcessor = mock(FileProcessor.class);
+    stage = new ParallelTransformationStage(pipeline, target, fileProcessor, 3);
+  }
+
+  @Test
+  void forwardsTransformedRecordsInSourceOrder() {
+    stage.startOfDocument();
+    for (String source : List.of("a", "b", "c", "d", "e", "f", "g", "h", "i", "j", "k", "l", "m", "n")) {
+      stage.put(new ProcessingRecord(source));
+    }
+    stage.endOfDocument();
+    assertThat(received, contains("A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", "L", "M", "N", "END"));
+    verify(fileProcessor, times(0)).countFailedRecord();
+    stage.close();
+  }
+
+  @Test
+  void skipsAndCountsRecordsThatFailToTransform() {
+    stage.startOfDocument();
+    for (String source : List.of("a", "bad1", "c", "d", "bad2", "f")) {
+      stage.put(new ProcessingRecord(source));
+    }
+    stage.endOfDocument();
+    assertThat(received, contains("A", "C", "D", "F", "END"));
+    assertThat(stage.getRecordsProcessed(), is(6));
+    verify(fileProcessor, times(2)).countFailedRecord();
+    stage.close();
+  }
+
+  @Test
+  void skipsAndCountsTheSameRecordsAsThePipelineByItself() {
+    List<String> sources = List.of("a", "bad1", "c", "bad2");
+    stage.startOfDocument();
+    sources.forEach(source -> stage.put(new ProcessingRecord(source)));
+    stage.endOfDocument();
+    stage.close();
+    List<String> receivedInParallel = new ArrayList<>(received);
+    received.clear();
+
+    pipeline.withTarget(target).forFileProcessor(fileProcessor);
+    pipeline.startOfDocument();
+    sources.forEach(source -> pipeline.put(new ProcessingRecord(source)));
+    pipeline.endOfDocument();
+    assertThat(received, is(receivedInParallel));
+    assertThat(pipeline.getRecordsProcessed(), is(4));
+    verify(fileProcessor, times(4)).countFailedRecord();
+  }
+
+  @Test
+  void takesNoRecordsOnceClosed() {
+    stage.close();
+    ProcessingRecord processingRecord = new ProcessingRecord("a");
+    assertThrows(RejectedExecutionException.class, () -> stage.put(processingRecord));
+  }
+}
@@ -0,0 +1,150 @@
+package org.folio.inventoryupdate.unittests;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.http.HttpMethod;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.folio.inventoryupdate.updating.StorageLimiter;
+import org.folio.okapi.common.OkapiClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Tests the adaptive limit of concurrent storage requests. Requests that succeed are each given a kind of their
+ * own, so that they are never slow compared to the fastest earlier request of the same kind.
+ */
+class StorageLimiterTest {
+
+  private static final int INITIAL_LIMIT = (StorageLimiter.DEFAULT_FLOOR + StorageLimiter.DEFAULT_CEILING) / 2;
+
+  @BeforeEach
+  void defaultBounds() {
+    StorageLimiter.configure(StorageLimiter.DEFAULT_FLOOR, StorageLimiter.DEFAULT_CEILING);
+  }
+
+  @AfterEach
+  void restoreBounds() {
+    StorageLimiter.configure(StorageLimiter.DEFAULT_FLOOR, StorageLimiter.DEFAULT_CEILING);
+  }
+
+  private static StorageLimiter newLimiter() {
+    return StorageLimiter.forTenant("limiter_test_" + UUID.randomUUID());
+  }
+
+  private static OkapiClient respondingWith(int statusCode) {
+    OkapiClient okapiClient = mock(OkapiClient.class);
+    when(okapiClient.getStatusCode()).thenReturn(statusCode);
+    return okapiClient;
+  }
+
+  private static int limitOf(StorageLimiter limiter) {
+    return limiter.asJson().getInteger("limit");
+  }
+
+  private static void succeed(StorageLimiter limiter, int requests) {
+    OkapiClient okapiClient = respondingWith(200);
+    for (int i = 0; i < requests; i++) {
+      limiter.submit(okapiClient, "GET /records/" + i, () -> Future.succeededFuture("OK"));
+    }
+  }
+
+  private static void fail(StorageLimiter limiter, int statusCode) {
+    limiter.submit(respondingWith(statusCode), "PUT /records", () -> Future.failedFuture("Failed"));
+  }
+
+  @Test
+  void limitIncreasesWhenRequestsSucceed() {
+    StorageLimiter limiter = newLimiter();
+    assertThat(limitOf(limiter), is(INITIAL_LIMIT));
+    succeed(limiter, 100);
+    assertThat(limitOf(limiter), greaterThan(INITIAL_LIMIT));
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {429, 500, 503, 0, -1})
+  void limitDecreasesOnFirstOverloadResponse(int statusCode) {
+    StorageLimiter limiter = newLimiter();
+    fail(limiter, statusCode);
+    assertThat(limitOf(limiter), is((int) (INITIAL_LIMIT * 0.75)));
+  }
+
+  @Test
+  void limitDoesNotDecreaseOnClientErrors() {
+    StorageLimiter limiter = newLimiter();
+    fail(limiter, 404);
+    fail(limiter, 422);
+    assertThat(limitOf(limiter), is(INITIAL_LIMIT));
+  }
+
+  @Test
+  void limitDecreasesOnceForRequestsSentTogether() {
+    StorageLimiter limiter = newLimiter();
+    Promise<String> first = Promise.promise();
+    Promise<String> second = Promise.promise();
+    limiter.submit(respondingWith(503), "PUT /records", first::future);
+    limiter.submit(respondingWith(503), "PUT /records", second::future);
+    first.fail("Failed");
+    second.fail("Failed");
+    assertThat(limitOf(limiter), is((int) (INITIAL_LIMIT * 0.75)));
+    // A request sent after the decrease can decrease the limit again
+    fail(limiter, 503);
+    assertThat(limitOf(limiter), lessThan((int) (INITIAL_LIMIT * 0.75)));
+  }
+
+  @Test
+  void requestsForDifferentNumbersOfRecordsAreOfDifferentKinds() {
+    String instanceSets = "/inventory-view/instance-set?instance=true&limit=10&query=hrid%3D%3D%28a%20or%20b%29";
+    assertThat(StorageLimiter.kindOf(HttpMethod.GET, instanceSets, 1),
+        not(StorageLimiter.kindOf(HttpMethod.GET, instanceSets, 10)));
+    assertThat(StorageLimiter.kindOf(HttpMethod.GET, instanceSets, 10),
+        is(StorageLimiter.kindOf(HttpMethod.GET, instanceSets.replace("a%20or%20b", "c%20or%20d"), 9)));
+    assertThat(StorageLimiter.kindOf(HttpMethod.DELETE, "/item-storage/items/" + UUID.randomUUID(), 1),
+        not(StorageLimiter.kindOf(HttpMethod.DELETE, "/item-storage/items?query=id%3D%3D%28a%29", 50)));
+    assertThat(StorageLimiter.kindOf(HttpMethod.DELETE, "/item-storage/items/" + UUID.randomUUID(), 1),
+        is(StorageLimiter.kindOf(HttpMethod.DELETE, "/item-storage/items/" + UUID.randomUUID(), 1)));
+  }
+
+  @Test
+  void limitDoesNotDecreaseWhenLargeRequestsTakeLongerThanSmallOnes() throws InterruptedException {
+    StorageLimiter limiter = newLimiter();
+    OkapiClient okapiClient = respondingWith(200);
+    String path = "/holdings-storage/holdings?limit=100000&query=hrid%3D%3D%28a%29";
+    for (int round = 0; round < 5; round++) {
+      limiter.submit(okapiClient, StorageLimiter.kindOf(HttpMethod.GET, path, 1), () -> Future.succeededFuture("OK"));
+      List<Promise<String>> lookups = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        Promise<String> lookup = Promise.promise();
+        lookups.add(lookup);
+        limiter.submit(okapiClient, StorageLimiter.kindOf(HttpMethod.GET, path, 50), lookup::future);
+      }
+      Thread.sleep(20);
+      lookups.forEach(lookup -> lookup.complete("OK"));
+    }
+    assertThat(limitOf(limiter), not(lessThan(INITIAL_LIMIT)));
+  }
+
+  @Test
+  void limitStaysWithinFloorAndCeiling() {
+    StorageLimiter.configure(2, 10);
+    StorageLimiter limiter = newLimiter();
+    for (int i = 0; i < 50; i++) {
+      fail(limiter, 503);
+    }
+    assertThat(limitOf(limiter), is(2));
+    succeed(limiter, 1000);
+    assertThat(limitOf(limiter), is(10));
+  }
+}
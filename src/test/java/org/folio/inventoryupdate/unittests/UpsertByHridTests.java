@@ -21,6 +21,7 @@ import org.junit.Test;
 
 import static org.folio.inventoryupdate.unittests.fakestorage.FakeApis.post;
 import static org.folio.inventoryupdate.unittests.fakestorage.FakeFolioApisForImporting.HOLDINGS_STORAGE_PATH;
+import static org.folio.inventoryupdate.unittests.fakestorage.FakeFolioApisForImporting.INSTANCE_SET_PATH;
 import static org.folio.inventoryupdate.unittests.fakestorage.FakeFolioApisForImporting.INSTANCE_STORAGE_PATH;
 import static org.folio.inventoryupdate.unittests.fakestorage.FakeFolioApisForImporting.ITEM_STORAGE_PATH;
 import static org.folio.inventoryupdate.unittests.fakestorage.FakeFolioApisForImporting.ORDER_LINES_STORAGE_PATH;
@@ -82,6 +83,77 @@ public class UpsertByHridTests extends InventoryUpdateTestBase {
         "Number of instance records after PUT expected: 100" );
   }
 
+  @Test
+  public void batchByHridWithOneErrorWillReportTheErrorAndMetricsOfAllRecordSets (TestContext testContext) {
+    BatchOfInventoryRecordSets batch = new BatchOfInventoryRecordSets();
+    for (int i=0; i<100; i++) {
+      InputInstance instance = new InputInstance()
+          .setTitle("New title " + i)
+          .setHrid("in"+i)
+          .setInstanceTypeId("12345");
+      if (i!=37) {
+        instance.setSource("test");
+      }
+      batch.addRecordSet(new InventoryRecordSet(instance));
+    }
+    JsonObject responseJson = new JsonObject(batchUpsertByHrid(207,batch.getJson()).asString());
+    testContext.assertEquals(responseJson.getJsonArray("errors").size(), 1,
+        "Response should contain one error report " + responseJson.encodePrettily());
+    testContext.assertEquals(getMetric(responseJson, INSTANCE, CREATE, COMPLETED), 99,
+        "Upsert metrics response should report [99] instances created " + responseJson.encodePrettily());
+    testContext.assertEquals(getMetric(responseJson, INSTANCE, CREATE, FAILED), 1,
+        "Upsert metrics response should report [1] instance create failed " + responseJson.encodePrettily());
+  }
+
+  @Test
+  public void batchByHridWithOneErrorWillNotFetchRecordSetsAgainWhenRetryingInParts (TestContext testContext) {
+    BatchOfInventoryRecordSets batch = new BatchOfInventoryRecordSets();
+    for (int i=0; i<8; i++) {
+      InputInstance instance = new InputInstance()
+          .setTitle("New title " + i)
+          .setHrid("in"+i)
+          .setInstanceTypeId("12345");
+      if (i!=5) {
+        instance.setSource("test");
+      }
+      batch.addRecordSet(new InventoryRecordSet(instance));
+    }
+    JsonObject responseJson = new JsonObject(batchUpsertByHrid(207,batch.getJson()).asString());
+    testContext.assertEquals(responseJson.getJsonArray("errors").size(), 1,
+        "Response should contain one error report " + responseJson.encodePrettily());
+    testContext.assertEquals(getRecordsFromStorage(INSTANCE_STORAGE_PATH, null).getInteger("totalRecords"), 7,
+        "Number of instance records after PUT expected: 7");
+    // The failed batch wrote nothing, so the retries of its parts took the instance sets it fetched
+    testContext.assertEquals(fakeFolioApis.getRequestCount("GET", INSTANCE_SET_PATH), 1,
+        "Instance sets should be fetched once for the batch and its retries");
+  }
+
+  @Test
+  public void batchByHridWithOneErrorWillFetchRecordSetsWrittenByTheFailedBatchAgain (TestContext testContext) {
+    BatchOfInventoryRecordSets batch = new BatchOfInventoryRecordSets();
+    for (int i=0; i<8; i++) {
+      InputHoldingsRecord holdingsRecord = new InputHoldingsRecord().setHrid("H" + i + "-1");
+      if (i!=5) {
+        holdingsRecord.setPermanentLocationId(LOCATION_ID_1);
+      }
+      batch.addRecordSet(new JsonObject()
+          .put("instance", new InputInstance()
+              .setTitle("New title " + i).setSource("test").setHrid("in" + i).setInstanceTypeId("12345").getJson())
+          .put("holdingsRecords", new JsonArray().add(holdingsRecord.getJson().put("items", new JsonArray()))));
+    }
+    JsonObject responseJson = new JsonObject(batchUpsertByHrid(207,batch.getJson()).asString());
+    // Had the retries taken the instances that the failed batch created for not found, they would have failed on
+    // creating them again
+    testContext.assertEquals(responseJson.getJsonArray("errors").size(), 1,
+        "Response should contain one error report " + responseJson.encodePrettily());
+    testContext.assertEquals(getRecordsFromStorage(INSTANCE_STORAGE_PATH, null).getInteger("totalRecords"), 8,
+        "Number of instance records after PUT expected: 8");
+    testContext.assertEquals(getRecordsFromStorage(HOLDINGS_STORAGE_PATH, null).getInteger("totalRecords"), 7,
+        "Number of holdings records after PUT expected: 7");
+    testContext.assertTrue(fakeFolioApis.getRequestCount("GET", INSTANCE_SET_PATH) > 1,
+        "Instance sets written by the failed batch should be fetched again for the retries");
+  }
+
   @Test
   public void batchByHridWithOneMissingHridWillCreate99NewInstances (TestContext testContext) {
     createInitialInstanceWithHrid1();
@@ -1759,6 +1831,98 @@ public class UpsertByHridTests extends InventoryUpdateTestBase {
 
   }
 
+  @Test
+  public void upsertByHridWillCreateProvisionalInstancesForRelationsInBatch(TestContext testContext) {
+    BatchOfInventoryRecordSets batch = new BatchOfInventoryRecordSets();
+    for (String[] childAndParent : new String[][] {{"002-1", "001-1"}, {"002-2", "001-2"}}) {
+      batch.addRecordSet(new JsonObject()
+          .put("instance",
+              new InputInstance().setTitle("Child InputInstance").setInstanceTypeId("12345")
+                  .setHrid(childAndParent[0]).setSource("test").getJson())
+          .put("instanceRelations", new JsonObject()
+              .put("parentInstances", new JsonArray()
+                  .add(new InputInstanceRelationship().setInstanceIdentifierHrid(childAndParent[1])
+                      .setProvisionalInstance(
+                          new InputInstance()
+                              .setTitle("Provisional Instance")
+                              .setSource("MARC")
+                              .setInstanceTypeId("12345").getJson()).getJson()))));
+    }
+
+    JsonObject response = new JsonObject(batchUpsertByHrid(200, batch.getJson()).asString());
+    testContext.assertEquals(getMetric(response, INSTANCE_RELATIONSHIP, CREATE, COMPLETED), 2,
+        "Upsert metrics response should report [2] instance relationships successfully created " + response.encodePrettily());
+    testContext.assertEquals(getMetric(response, INSTANCE_RELATIONSHIP, PROVISIONAL_INSTANCE, COMPLETED), 2,
+        "Upsert metrics response should report [2] provisional instances successfully created " + response.encodePrettily());
+    JsonObject instancesAfterUpsertJson = getRecordsFromStorage(INSTANCE_STORAGE_PATH, null);
+    testContext.assertEquals(instancesAfterUpsertJson.getInteger("totalRecords"), 4,
+        "After upsert with provisional instances the total number of instances should be [4] " + instancesAfterUpsertJson.encodePrettily() );
+    testContext.assertEquals(fakeFolioApis.getRequestCount("POST", INSTANCE_STORAGE_PATH), 0,
+        "Provisional instances should be created with a batch request, not one by one");
+  }
+
+  @Test
+  public void upsertByHridWillCreateProvisionalInstancesOneByOneIfTheBatchFails(TestContext testContext) {
+    createInitialInstanceWithHrid1();
+    // The first provisional instance takes the HRID of an existing instance, which fails the batch of both
+    Response childResponse = upsertByHrid(207, new JsonObject()
+        .put("instance",
+            new InputInstance().setTitle("Child InputInstance").setInstanceTypeId("12345").setHrid("002").setSource("test").getJson())
+        .put("instanceRelations", new JsonObject()
+            .put("parentInstances", new JsonArray()
+                .add(new InputInstanceRelationship().setInstanceIdentifierHrid("001-1")
+                    .setProvisionalInstance(
+                        new InputInstance()
+                            .setTitle("Provisional Instance")
+                            .setHrid("1")
+                            .setSource("MARC")
+                            .setInstanceTypeId("12345").getJson()).getJson())
+                .add(new InputInstanceRelationship().setInstanceIdentifierHrid("001-2")
+                    .setProvisionalInstance(
+                        new InputInstance()
+                            .setTitle("Provisional Instance")
+                            .setSource("MARC")
+                            .setInstanceTypeId("12345").getJson()).getJson()))));
+
+    JsonObject responseJson = new JsonObject(childResponse.getBody().asString());
+    testContext.assertEquals(fakeFolioApis.getRequestCount("POST", INSTANCE_STORAGE_PATH), 2,
+        "After the batch failed, both provisional instances should be posted one by one");
+    testContext.assertEquals(getMetric(responseJson, INSTANCE_RELATIONSHIP, PROVISIONAL_INSTANCE, COMPLETED), 1,
+        "Upsert metrics response should report [1] provisional instance successfully created " + responseJson.encodePrettily());
+    JsonObject provisionalInstanceJson = getRecordsFromStorage(INSTANCE_STORAGE_PATH, "hrid==\"001-2\"");
+    testContext.assertEquals(provisionalInstanceJson.getInteger("totalRecords"), 1,
+        "The valid provisional instance should be created although the batch failed " + provisionalInstanceJson.encodePrettily());
+    JsonObject instancesAfterUpsertJson = getRecordsFromStorage(INSTANCE_STORAGE_PATH, null);
+    testContext.assertEquals(instancesAfterUpsertJson.getInteger("totalRecords"), 3,
+        "After upsert with one failing provisional instance the total number of instances should be [3] " + instancesAfterUpsertJson.encodePrettily() );
+  }
+
+  @Test
+  public void upsertByHridWillPostRelationDeclaredFromBothEndsInBatchOnce(TestContext testContext) {
+    BatchOfInventoryRecordSets batch = new BatchOfInventoryRecordSets();
+    batch.addRecordSet(new JsonObject()
+        .put("instance",
+            new InputInstance().setTitle("Parent InputInstance").setInstanceTypeId("12345").setHrid("001").setSource("test").getJson())
+        .put("instanceRelations", new JsonObject()
+            .put("childInstances", new JsonArray()
+                .add(new InputInstanceRelationship().setInstanceIdentifierHrid("002").getJson()))));
+    batch.addRecordSet(new JsonObject()
+        .put("instance",
+            new InputInstance().setTitle("Child InputInstance").setInstanceTypeId("12345").setHrid("002").setSource("test").getJson())
+        .put("instanceRelations", new JsonObject()
+            .put("parentInstances", new JsonArray()
+                .add(new InputInstanceRelationship().setInstanceIdentifierHrid("001").getJson()))));
+
+    JsonObject response = new JsonObject(batchUpsertByHrid(200, batch.getJson()).asString());
+    testContext.assertEquals(fakeFolioApis.getRequestCount("POST", FakeFolioApisForImporting.INSTANCE_RELATIONSHIP_STORAGE_PATH), 1,
+        "The relation declared by both record sets should be posted once");
+    testContext.assertEquals(getMetric(response, INSTANCE_RELATIONSHIP, CREATE, COMPLETED), 2,
+        "Upsert metrics response should report the relation as created for both record sets " + response.encodePrettily());
+    JsonObject relationshipsAfterUpsertJson = getRecordsFromStorage(FakeFolioApisForImporting.INSTANCE_RELATIONSHIP_STORAGE_PATH, null);
+    testContext.assertEquals(relationshipsAfterUpsertJson.getInteger("totalRecords"), 1,
+        "After upsert the total number of relationship records should be [1] " + relationshipsAfterUpsertJson.encodePrettily() );
+  }
+
   @Test
   public void upsertByHridWillNotCreateProvisionalInstanceIfTheRegularInstanceIsCreatedInBatch(TestContext testContext) {
     String childHrid1 = "002-1";
@@ -2776,6 +2940,34 @@ public class UpsertByHridTests extends InventoryUpdateTestBase {
     assertEquals(400, upsertByHrid(400, new JsonObject().put("invalid", "No Instance here")).getStatusCode());
   }
 
+  @Test
+  public void storageConcurrencyShowsTheLimiterOfTheTenantOfTheRequest (TestContext testContext) {
+    upsertByHrid(new JsonObject().put("instance",
+        new InputInstance().setTitle("Initial InputInstance").setInstanceTypeId("12345").setHrid("001").setSource("test").getJson()));
+    JsonObject limiter = new JsonObject(RestAssured.given()
+        .baseUri(BASE_URI_INVENTORY_UPDATE)
+        .header(OKAPI_TENANT_HEADER)
+        .get("/admin/storage-concurrency")
+        .then()
+        .statusCode(200).extract().response().asString()).getJsonObject("storageConcurrency");
+    testContext.assertEquals(limiter.getString("tenant"), TENANT,
+        "Storage concurrency should be shown for the tenant of the request " + limiter.encodePrettily());
+    testContext.assertTrue(limiter.getLong("requests") > 0,
+        "Storage concurrency should count the requests of the upsert " + limiter.encodePrettily());
+
+    RestAssured.given()
+        .baseUri(BASE_URI_INVENTORY_UPDATE)
+        .get("/admin/storage-concurrency")
+        .then()
+        .statusCode(400);
+    RestAssured.given()
+        .baseUri(BASE_URI_INVENTORY_UPDATE)
+        .header(OKAPI_TENANT_HEADER)
+        .post("/admin/storage-concurrency")
+        .then()
+        .statusCode(404);
+  }
+
   @Test
   public void testSendingNonJson (TestContext testContext) {
     RestAssured.port = PORT_INVENTORY_UPDATE;
@@ -2912,6 +3104,43 @@ public class UpsertByHridTests extends InventoryUpdateTestBase {
 
   }
 
+  @Test
+  public void failedHoldingsCreateWillNotHoldBackUpdatesOfOtherItems (TestContext testContext) {
+    JsonObject inventoryRecordSet = new JsonObject()
+        .put("instance",
+            new InputInstance().setTitle("Initial InputInstance").setInstanceTypeId("12345").setHrid("001").setSource("test").getJson())
+        .put("holdingsRecords", new JsonArray()
+            .add(new InputHoldingsRecord().setHrid("HOL-001").setPermanentLocationId(LOCATION_ID_1).setCallNumber("test-cn-1").getJson()
+                .put("items", new JsonArray()
+                    .add(new InputItem().setHrid("ITM-001")
+                        .setStatus(STATUS_UNKNOWN)
+                        .setMaterialTypeId(MATERIAL_TYPE_TEXT)
+                        .setBarcode("BC-001").getJson()))));
+    upsertByHrid(inventoryRecordSet);
+    inventoryRecordSet.getJsonArray("holdingsRecords").getJsonObject(0).getJsonArray("items").getJsonObject(0)
+        .put("barcode", "updated");
+    inventoryRecordSet.getJsonArray("holdingsRecords")
+        .add(new InputHoldingsRecord().setHrid("HOL-002").setPermanentLocationId(LOCATION_ID_1).setCallNumber("test-cn-2").getJson()
+            .put("items", new JsonArray()
+                .add(new InputItem().setHrid("ITM-002")
+                    .setStatus(STATUS_UNKNOWN)
+                    .setMaterialTypeId(MATERIAL_TYPE_TEXT)
+                    .setBarcode("BC-002").getJson())));
+    fakeFolioApis.holdingsStorage.failOnCreate = true;
+    Response response = upsertByHrid(207, inventoryRecordSet);
+    JsonObject responseJson = new JsonObject(response.getBody().asString());
+
+    testContext.assertEquals(getMetric(responseJson, HOLDINGS_RECORD, CREATE , FAILED), 1,
+        "Upsert metrics response should report [1] holdings record create failure (forced) " + responseJson.encodePrettily());
+    testContext.assertEquals(getMetric(responseJson, ITEM, CREATE , SKIPPED), 1,
+        "Upsert metrics response should report [1] item create skipped " + responseJson.encodePrettily());
+    testContext.assertEquals(getMetric(responseJson, ITEM, UPDATE , COMPLETED), 1,
+        "Upsert metrics response should report [1] item successfully updated " + responseJson.encodePrettily());
+    testContext.assertEquals(getRecordsFromStorage(ITEM_STORAGE_PATH, null).getJsonArray("items")
+            .getJsonObject(0).getString("barcode"), "updated",
+        "The barcode of the existing item should be updated despite the failed holdings create");
+  }
+
   @Test
   public void testForcedItemUpdateFailure (TestContext testContext) {
     fakeFolioApis.itemStorage.failOnUpdate = true;
@@ -2936,6 +3165,11 @@ public class UpsertByHridTests extends InventoryUpdateTestBase {
                         .setMaterialTypeId(MATERIAL_TYPE_TEXT)
                         .setBarcode("BC-003").getJson()))));
     upsertByHrid (inventoryRecordSet);
+    for (Object holdingsRecord : inventoryRecordSet.getJsonArray("holdingsRecords")) {
+      for (Object item : ((JsonObject) holdingsRecord).getJsonArray("items")) {
+        ((JsonObject) item).put("barcode", "updated");
+      }
+    }
     Response response = upsertByHrid(207,inventoryRecordSet);
     JsonObject responseJson = new JsonObject(response.getBody().asString());
 
@@ -2968,6 +3202,9 @@ public class UpsertByHridTests extends InventoryUpdateTestBase {
                         .setMaterialTypeId(MATERIAL_TYPE_TEXT)
                         .setBarcode("BC-003").getJson()))));
     upsertByHrid (inventoryRecordSet);
+    for (Object holdingsRecord : inventoryRecordSet.getJsonArray("holdingsRecords")) {
+      ((JsonObject) holdingsRecord).put("callNumber", "updated");
+    }
     Response response = upsertByHrid(207,inventoryRecordSet);
 
     JsonObject responseJson = new JsonObject(response.getBody().asString());
@@ -2977,6 +3214,165 @@ public class UpsertByHridTests extends InventoryUpdateTestBase {
 
   }
 
+  @Test
+  public void upsertByHridWillSkipUpdatesOfUnchangedRecords (TestContext testContext) {
+    JsonObject inventoryRecordSet = new JsonObject()
+        .put("instance",
+            new InputInstance().setTitle("Initial InputInstance").setInstanceTypeId("12345").setHrid("001").setSource("test").getJson())
+        .put("holdingsRecords", new JsonArray()
+            .add(new InputHoldingsRecord().setHrid("HOL-001").setPermanentLocationId(LOCATION_ID_1).setCallNumber("test-cn-1").getJson()
+                .put("items", new JsonArray()
+                    .add(new InputItem().setHrid("ITM-001")
+                        .setStatus(STATUS_UNKNOWN)
+                        .setMaterialTypeId(MATERIAL_TYPE_TEXT)
+                        .setBarcode("BC-001").getJson())
+                    .add(new InputItem().setHrid("ITM-002")
+                        .setStatus(STATUS_UNKNOWN)
+                        .setMaterialTypeId(MATERIAL_TYPE_TEXT)
+                        .setBarcode("BC-002").getJson())))
+            .add(new InputHoldingsRecord().setHrid("HOL-002").setPermanentLocationId(LOCATION_ID_1).setCallNumber("test-cn-2").getJson()
+                .put("items", new JsonArray()
+                    .add(new InputItem().setHrid("ITM-003")
+                        .setStatus(STATUS_UNKNOWN)
+                        .setMaterialTypeId(MATERIAL_TYPE_TEXT)
+                        .setBarcode("BC-003").getJson()))));
+    upsertByHrid(inventoryRecordSet);
+    // Storage would fail any update that gets through
+    fakeFolioApis.instanceStorage.failOnUpdate = true;
+    fakeFolioApis.holdingsStorage.failOnUpdate = true;
+    fakeFolioApis.itemStorage.failOnUpdate = true;
+    JsonObject responseJson = upsertByHrid(inventoryRecordSet);
+
+    testContext.assertEquals(getMetric(responseJson, INSTANCE, UPDATE , UNCHANGED), 1,
+        "Upsert metrics response should report [1] instance unchanged " + responseJson.encodePrettily());
+    testContext.assertEquals(getMetric(responseJson, HOLDINGS_RECORD, UPDATE , UNCHANGED), 2,
+        "Upsert metrics response should report [2] holdings records unchanged " + responseJson.encodePrettily());
+    testContext.assertEquals(getMetric(responseJson, ITEM, UPDATE , UNCHANGED), 3,
+        "Upsert metrics response should report [3] items unchanged " + responseJson.encodePrettily());
+    testContext.assertEquals(getMetric(responseJson, ITEM, UPDATE , COMPLETED), 0,
+        "Upsert metrics response should report [0] items updated " + responseJson.encodePrettily());
+
+    fakeFolioApis.instanceStorage.failOnUpdate = false;
+    fakeFolioApis.holdingsStorage.failOnUpdate = false;
+    fakeFolioApis.itemStorage.failOnUpdate = false;
+    inventoryRecordSet.getJsonArray("holdingsRecords").getJsonObject(1)
+        .getJsonArray("items").getJsonObject(0).put("barcode", "updated");
+    responseJson = upsertByHrid(inventoryRecordSet);
+
+    testContext.assertEquals(getMetric(responseJson, ITEM, UPDATE , COMPLETED), 1,
+        "Upsert metrics response should report [1] item updated " + responseJson.encodePrettily());
+    testContext.assertEquals(getMetric(responseJson, ITEM, UPDATE , UNCHANGED), 2,
+        "Upsert metrics response should report [2] items unchanged " + responseJson.encodePrettily());
+  }
+
+  @Test
+  public void upsertByHridWillSkipUpdatesOfRecordsChangedOnlyInPropertiesComputedByStorage (TestContext testContext) {
+    fakeFolioApis.holdingsStorage.generateProperties = true;
+    fakeFolioApis.itemStorage.generateProperties = true;
+    JsonObject inventoryRecordSet = new JsonObject()
+        .put("instance",
+            new InputInstance().setTitle("Initial InputInstance").setInstanceTypeId("12345").setHrid("001").setSource("test").getJson())
+        .put("holdingsRecords", new JsonArray()
+            .add(new InputHoldingsRecord().setHrid("HOL-001").setPermanentLocationId(LOCATION_ID_1).setCallNumber("test-cn-1").getJson()
+                .put("items", new JsonArray()
+                    .add(new InputItem().setHrid("ITM-001")
+                        .setStatus(STATUS_UNKNOWN)
+                        .setMaterialTypeId(MATERIAL_TYPE_TEXT)
+                        .setBarcode("BC-001").getJson()))));
+    upsertByHrid(inventoryRecordSet);
+    JsonObject storedItem = fakeFolioApis.itemStorage.getRecords().iterator().next().getJson();
+    testContext.assertEquals(storedItem.getString("effectiveLocationId"), LOCATION_ID_1,
+        "Storage should compute the effective location of the item " + storedItem.encodePrettily());
+    testContext.assertNotNull(storedItem.getJsonObject("status").getString("date"),
+        "Storage should date the status of the item " + storedItem.encodePrettily());
+    // Storage would fail any update that gets through
+    fakeFolioApis.holdingsStorage.failOnUpdate = true;
+    fakeFolioApis.itemStorage.failOnUpdate = true;
+    JsonObject responseJson = upsertByHrid(inventoryRecordSet);
+
+    testContext.assertEquals(getMetric(responseJson, HOLDINGS_RECORD, UPDATE , UNCHANGED), 1,
+        "Upsert metrics response should report [1] holdings record unchanged " + responseJson.encodePrettily());
+    testContext.assertEquals(getMetric(responseJson, ITEM, UPDATE , UNCHANGED), 1,
+        "Upsert metrics response should report [1] item unchanged " + responseJson.encodePrettily());
+  }
+
+  @Test
+  public void upsertByHridWillDeleteManyItemsAndHoldingsRecordsInBulk (TestContext testContext) {
+    JsonArray holdingsRecords = new JsonArray();
+    for (int h = 1; h <= 3; h++) {
+      JsonArray items = new JsonArray();
+      for (int i = 1; i <= 40; i++) {
+        items.add(new InputItem().setHrid("ITM-" + h + "-" + i)
+            .setStatus(STATUS_UNKNOWN)
+            .setMaterialTypeId(MATERIAL_TYPE_TEXT)
+            .setBarcode("BC-" + h + "-" + i).getJson());
+      }
+      holdingsRecords.add(new InputHoldingsRecord().setHrid("HOL-" + h).setPermanentLocationId(LOCATION_ID_1)
+          .setCallNumber("test-cn-" + h).getJson().put("items", items));
+    }
+    upsertByHrid(new JsonObject()
+        .put("instance",
+            new InputInstance().setTitle("Initial InputInstance").setInstanceTypeId("12345").setHrid("001").setSource("test").getJson())
+        .put("holdingsRecords", holdingsRecords));
+    testContext.assertEquals(getRecordsFromStorage(ITEM_STORAGE_PATH, null).getInteger("totalRecords"), 120,
+        "Initial upsert should create [120] items");
+
+    JsonObject responseJson = upsertByHrid(new JsonObject()
+        .put("instance",
+            new InputInstance().setTitle("Initial InputInstance").setInstanceTypeId("12345").setHrid("001").setSource("test").getJson())
+        .put("holdingsRecords", new JsonArray()
+            .add(new InputHoldingsRecord().setHrid("HOL-1").setPermanentLocationId(LOCATION_ID_1).setCallNumber("test-cn-1").getJson()
+                .put("items", new JsonArray()
+                    .add(new InputItem().setHrid("ITM-1-1")
+                        .setStatus(STATUS_UNKNOWN)
+                        .setMaterialTypeId(MATERIAL_TYPE_TEXT)
+                        .setBarcode("BC-1-1").getJson())))));
+
+    testContext.assertEquals(getMetric(responseJson, ITEM, DELETE, COMPLETED), 119,
+        "Upsert metrics response should report [119] items deleted " + responseJson.encodePrettily());
+    testContext.assertEquals(getMetric(responseJson, HOLDINGS_RECORD, DELETE, COMPLETED), 2,
+        "Upsert metrics response should report [2] holdings records deleted " + responseJson.encodePrettily());
+    testContext.assertEquals(getRecordsFromStorage(ITEM_STORAGE_PATH, null).getInteger("totalRecords"), 1,
+        "After upsert with one item left the total number of items should be [1]");
+    testContext.assertEquals(getRecordsFromStorage(HOLDINGS_STORAGE_PATH, null).getInteger("totalRecords"), 1,
+        "After upsert with one holdings record left the total number of holdings records should be [1]");
+  }
+
+  @Test
+  public void forcedFailureOfBulkItemDeleteIsReportedPerItem (TestContext testContext) {
+    JsonArray items = new JsonArray();
+    for (int i = 1; i <= 4; i++) {
+      items.add(new InputItem().setHrid("ITM-00" + i)
+          .setStatus(STATUS_UNKNOWN)
+          .setMaterialTypeId(MATERIAL_TYPE_TEXT)
+          .setBarcode("BC-00" + i).getJson());
+    }
+    upsertByHrid(new JsonObject()
+        .put("instance",
+            new InputInstance().setTitle("Initial InputInstance").setInstanceTypeId("12345").setHrid("001").setSource("test").getJson())
+        .put("holdingsRecords", new JsonArray()
+            .add(new InputHoldingsRecord().setHrid("HOL-001").setPermanentLocationId(LOCATION_ID_1).setCallNumber("test-cn-1").getJson()
+                .put("items", items))));
+
+    fakeFolioApis.itemStorage.failOnDelete = true;
+    Response response = upsertByHrid(207, new JsonObject()
+        .put("instance",
+            new InputInstance().setTitle("Initial InputInstance").setInstanceTypeId("12345").setHrid("001").setSource("test").getJson())
+        .put("holdingsRecords", new JsonArray()
+            .add(new InputHoldingsRecord().setHrid("HOL-001").setPermanentLocationId(LOCATION_ID_1).setCallNumber("test-cn-1").getJson()
+                .put("items", new JsonArray()
+                    .add(new InputItem().setHrid("ITM-001")
+                        .setStatus(STATUS_UNKNOWN)
+                        .setMaterialTypeId(MATERIAL_TYPE_TEXT)
+                        .setBarcode("BC-001").getJson())))));
+
+    JsonObject responseJson = new JsonObject(response.getBody().asString());
+    testContext.assertEquals(getMetric(responseJson, ITEM, DELETE, FAILED), 3,
+        "Upsert metrics response should report [3] item delete failures (forced) " + responseJson.encodePrettily());
+    testContext.assertEquals(getRecordsFromStorage(ITEM_STORAGE_PATH, null).getInteger("totalRecords"), 4,
+        "After failed deletes the total number of items should still be [4]");
+  }
+
   @Test
   public void testForcedItemDeleteFailure (TestContext testContext) {
     fakeFolioApis.itemStorage.failOnDelete = true;
@@ -13,11 +13,12 @@ import org.folio.inventoryupdate.unittests.fakestorage.entities.InputItem;
 import org.folio.inventoryupdate.unittests.fakestorage.entities.InventoryRecordSet;
 import org.folio.inventoryupdate.unittests.fakestorage.FakeFolioApisForImporting;
 import org.folio.inventoryupdate.updating.MatchKey;
-import org.folio.inventoryupdate.updating.UpdatePlanSharedInventory;
+import org.folio.inventoryupdate.updating.ReferenceDataCache;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import static org.folio.inventoryupdate.unittests.fixtures.Service.BASE_URI_INVENTORY_UPDATE;
 import static org.folio.inventoryupdate.unittests.fixtures.Service.BASE_URI_OKAPI;
 import static org.junit.Assert.assertEquals;
 
@@ -912,6 +913,60 @@ public class UpsertByMatchTests extends InventoryUpdateTestBase {
 
   }
 
+  @Test
+  public void upsertsByMatchKeyWillReuseCachedLocationsUntilRefreshed (TestContext testContext) {
+    JsonObject before = referenceDataCacheOfTenant();
+    for (String title : new String[] {"Cached locations 1", "Cached locations 2"}) {
+      upsertByMatchKey(new JsonObject()
+          .put("instance",
+              new InputInstance().setTitle(title).setInstanceTypeId("12345").setSource("test").getJson())
+          .put("holdingsRecords", new JsonArray()
+              .add(new InputHoldingsRecord().setPermanentLocationId(LOCATION_ID_1).setCallNumber("test-cn-1").getJson())));
+    }
+    JsonObject cache = referenceDataCacheOfTenant();
+    testContext.assertEquals(cache.getInteger("loads") - before.getInteger("loads", 0), 1,
+        "Locations loaded once for two upserts");
+    testContext.assertEquals(cache.getInteger("hits") - before.getInteger("hits", 0), 1,
+        "Locations taken from cache by second upsert");
+
+    RestAssured.given()
+        .baseUri(BASE_URI_INVENTORY_UPDATE)
+        .header(OKAPI_TENANT_HEADER)
+        .delete("/admin/reference-data")
+        .then()
+        .statusCode(204);
+    upsertByMatchKey(new JsonObject()
+        .put("instance",
+            new InputInstance().setTitle("Cached locations 3").setInstanceTypeId("12345").setSource("test").getJson())
+        .put("holdingsRecords", new JsonArray()
+            .add(new InputHoldingsRecord().setPermanentLocationId(LOCATION_ID_1).setCallNumber("test-cn-1").getJson())));
+    testContext.assertEquals(referenceDataCacheOfTenant().getInteger("loads") - before.getInteger("loads", 0), 2,
+        "Locations loaded again after refresh");
+    // A refresh concerns the tenant of the request only
+    RestAssured.given()
+        .baseUri(BASE_URI_INVENTORY_UPDATE)
+        .delete("/admin/reference-data")
+        .then()
+        .statusCode(400);
+    RestAssured.given()
+        .baseUri(BASE_URI_INVENTORY_UPDATE)
+        .header(OKAPI_TENANT_HEADER)
+        .post("/admin/reference-data")
+        .then()
+        .statusCode(404);
+    testContext.assertEquals(referenceDataCacheOfTenant().getInteger("loads") - before.getInteger("loads", 0), 2,
+        "Locations not loaded again without a refresh");
+  }
+
+  private static JsonObject referenceDataCacheOfTenant() {
+    return new JsonObject(RestAssured.given()
+        .baseUri(BASE_URI_INVENTORY_UPDATE)
+        .header(OKAPI_TENANT_HEADER)
+        .get("/admin/reference-data")
+        .then()
+        .statusCode(200).extract().response().asString()).getJsonObject("referenceData");
+  }
+
   @Test
   public void testUpsertByMatchKeyWithEmptyLocationsTable (TestContext testContext) {
     RestAssured.given()
@@ -923,7 +978,7 @@ public class UpsertByMatchTests extends InventoryUpdateTestBase {
         .log().ifValidationFails()
         .statusCode(200).extract().response();
 
-    UpdatePlanSharedInventory.locationsToInstitutionsMap().clear();
+    ReferenceDataCache.refreshAll();
     JsonObject inventoryRecordSet = new JsonObject()
         .put("instance",
             new InputInstance().setTitle("Test forcedLocationsGetRecordsFailure").setInstanceTypeId("12345").setHrid("001").setSource("test").getJson())
@@ -987,7 +1042,7 @@ public class UpsertByMatchTests extends InventoryUpdateTestBase {
         .put("localIdentifier",identifierValue1)
         .put("identifierTypeId", identifierTypeId1);
 
-    UpdatePlanSharedInventory.locationsToInstitutionsMap().clear();
+    ReferenceDataCache.refreshAll();
 
     assertEquals(200, delete(200,SHARED_INVENTORY_UPSERT_MATCHKEY_PATH, deleteSignal).getStatusCode());
 
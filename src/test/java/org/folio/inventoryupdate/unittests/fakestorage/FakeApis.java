@@ -3,6 +3,10 @@ package org.folio.inventoryupdate.unittests.fakestorage;
 import io.restassured.RestAssured;
 import io.restassured.response.Response;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.folio.inventoryupdate.unittests.fixtures.Service;
 
 public abstract class FakeApis {
@@ -17,6 +21,50 @@ public abstract class FakeApis {
 
   public OrdersStorage ordersStorage = new OrdersStorage();
 
+  // Requests received by method and path, since the counts were last reset
+  private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+  // Requests being handled, and the most that were handled at the same time, by method and path
+  private final Map<String, AtomicInteger> requestsInFlight = new ConcurrentHashMap<>();
+  private final Map<String, AtomicInteger> maxRequestsInFlight = new ConcurrentHashMap<>();
+  // Milliseconds that requests are held before they are handled, to make them take time like real storage
+  private volatile long responseDelayMs = 0;
+
+  protected void countRequest(RoutingContext routingContext) {
+    String request = routingContext.request().method().name() + " " + routingContext.request().path();
+    requestCounts.computeIfAbsent(request, key -> new AtomicInteger()).incrementAndGet();
+    AtomicInteger inFlight = requestsInFlight.computeIfAbsent(request, key -> new AtomicInteger());
+    maxRequestsInFlight.computeIfAbsent(request, key -> new AtomicInteger()).accumulateAndGet(
+        inFlight.incrementAndGet(), Math::max);
+    routingContext.addEndHandler(ended -> inFlight.decrementAndGet());
+    if (responseDelayMs > 0) {
+      routingContext.vertx().setTimer(responseDelayMs, id -> routingContext.next());
+    } else {
+      routingContext.next();
+    }
+  }
+
+  public void setResponseDelay(long milliseconds) {
+    responseDelayMs = milliseconds;
+  }
+
+  public int getRequestCount(String method, String path) {
+    AtomicInteger count = requestCounts.get(method + " " + path);
+    return count == null ? 0 : count.get();
+  }
+
+  /**
+   * Gets the largest number of requests with the method and path that were handled at the same time.
+   */
+  public int getMaxRequestsInFlight(String method, String path) {
+    AtomicInteger max = maxRequestsInFlight.get(method + " " + path);
+    return max == null ? 0 : max.get();
+  }
+
+  public void resetRequestCounts() {
+    requestCounts.clear();
+    maxRequestsInFlight.clear();
+  }
+
   public static JsonObject getRecordsByQuery(String storagePath, String query) {
     return getRecordsByQuery(storagePath, query, 200);
   }
@@ -42,6 +42,7 @@ public class FakeFolioApisForImporting extends FakeApis {
         ordersStorage.attachToFakeStorage(this);
 
         Router router = Router.router(vertx);
+        router.route().handler(this::countRequest);
         router.get(SettingsClient.SETTINGS_PATH).handler(settingsStorage::getRecords);
         router.get(SettingsClient.SETTINGS_PATH + "/:id").handler(settingsStorage::getRecordById);
         router.post("/*").handler(BodyHandler.create());
@@ -85,6 +86,8 @@ public class FakeFolioApisForImporting extends FakeApis {
         router.delete(INSTANCE_STORAGE_PATH + "/:id").handler(instanceStorage::deleteRecord);
         router.delete(HOLDINGS_STORAGE_PATH + "/:id").handler(holdingsStorage::deleteRecord);
         router.delete(ITEM_STORAGE_PATH + "/:id").handler(itemStorage::deleteRecord);
+        router.delete(HOLDINGS_STORAGE_PATH).handler(holdingsStorage::deleteRecords);
+        router.delete(ITEM_STORAGE_PATH).handler(itemStorage::deleteRecords);
         router.delete(INSTANCE_RELATIONSHIP_STORAGE_PATH + "/:id").handler(instanceRelationshipStorage::deleteRecord);
         router.delete(PRECEDING_SUCCEEDING_TITLE_STORAGE_PATH + "/:id").handler(precedingSucceedingStorage::deleteRecord);
         router.delete(LOCATION_STORAGE_PATH).handler(locationStorage::deleteAll);
@@ -1,5 +1,7 @@
 package org.folio.inventoryupdate.unittests.fakestorage;
 
+import io.vertx.core.json.JsonObject;
+
 public class HoldingsStorage extends RecordStorage{
   @Override
   public String getResultSetName() {
@@ -16,4 +18,10 @@ public class HoldingsStorage extends RecordStorage{
   protected void declareMandatoryProperties() {
     mandatoryProperties.add("permanentLocationId");
   }
+
+  @Override
+  protected void generateProperties(JsonObject holdingsRecord) {
+    holdingsRecord.put("effectiveLocationId",
+        holdingsRecord.getString("temporaryLocationId", holdingsRecord.getString("permanentLocationId")));
+  }
 }
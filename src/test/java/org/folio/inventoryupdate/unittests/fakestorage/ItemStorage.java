@@ -1,6 +1,8 @@
 package org.folio.inventoryupdate.unittests.fakestorage;
 
 
+import io.vertx.core.json.JsonObject;
+import java.time.Instant;
 import org.folio.inventoryupdate.unittests.fakestorage.entities.InputItem;
 
 public class ItemStorage extends RecordStorage {
@@ -20,4 +22,17 @@ public class ItemStorage extends RecordStorage {
     mandatoryProperties.add("materialTypeId");
   }
 
+  @Override
+  protected void generateProperties(JsonObject item) {
+    FakeRecord holdingsRecord = fakeStorageForImporting.holdingsStorage.records.get(
+        item.getString(InputItem.HOLDINGS_RECORD_ID));
+    JsonObject holdings = holdingsRecord == null ? new JsonObject() : holdingsRecord.getJson();
+    String callNumber = item.getString("itemLevelCallNumber", holdings.getString("callNumber"));
+    item.put("effectiveLocationId", item.getString("temporaryLocationId",
+        item.getString("permanentLocationId", holdings.getString("effectiveLocationId"))));
+    item.put("effectiveCallNumberComponents", new JsonObject().put("callNumber", callNumber));
+    item.put("effectiveShelvingOrder", callNumber == null ? null : callNumber.toUpperCase());
+    item.getJsonObject("status").put("date", Instant.now().toString());
+  }
+
 }
@@ -27,6 +27,7 @@ public abstract class RecordStorage {
     public boolean failOnUpdate = false;
     public boolean failOnGetRecordById = false;
     public boolean failOnGetRecords = false;
+    public boolean generateProperties = false;
     final List<ForeignKey> dependentEntities = new ArrayList<>();
     final List<ForeignKey> masterEntities = new ArrayList<>();
     public final List<String> mandatoryProperties = new ArrayList<>();
@@ -53,6 +54,9 @@ public abstract class RecordStorage {
         Resp validation = validateCreate(folioApiRecord);
         if (validation.statusCode == 201) {
             folioApiRecord.setFirstVersion();
+            if (generateProperties) {
+                generateProperties(folioApiRecord.getJson());
+            }
             records.put(folioApiRecord.getId(), folioApiRecord);
         }
         return new StorageResponse(validation.statusCode, validation.message);
@@ -117,6 +121,9 @@ public abstract class RecordStorage {
 
         Resp validation = validateUpdate(id, folioApiRecord);
         if (validation.statusCode == 204) {
+            if (generateProperties) {
+                generateProperties(folioApiRecord.getJson());
+            }
             records.put(id, folioApiRecord);
         }
         return validation.statusCode;
@@ -149,6 +156,14 @@ public abstract class RecordStorage {
             logger.error("Record {} not found, cannot delete", id );
             return 404;
         }
+        if (hasDependentRecords(id)) {
+            return 400;
+        }
+        records.remove(id);
+        return 200;
+    }
+
+    private boolean hasDependentRecords (String id) {
         logger.debug("Dependent entities: {}", dependentEntities.size());
         for (ForeignKey fk : dependentEntities) {
             logger.debug("Deleting. Checking dependent {}", fk.getDependentStorage().getResultSetName());
@@ -156,11 +171,10 @@ public abstract class RecordStorage {
             if (fk.getDependentStorage().hasValue(fk.getDependentPropertyName(), id)) {
                 logger.error("Foreign key violation, {} has a dependent record in {}",
                     records.get(id).getJson().encode(), fk.getDependentStorage().getResultSetName());
-                return 400;
+                return true;
             }
         }
-        records.remove(id);
-        return 200;
+        return false;
     }
 
     public Collection<FakeRecord> getRecords () {
@@ -217,6 +231,9 @@ public abstract class RecordStorage {
     protected void declareMandatoryProperties () {}
 
     protected void declareUniqueProperties () {}
+
+    // SETS PROPERTIES THAT STORAGE COMPUTES FROM OTHER PROPERTIES ON CREATE AND UPDATE, IF generateProperties IS ON
+    protected void generateProperties (JsonObject recordJson) {}
     // API REQUEST HANDLERS
 
     /**
@@ -262,6 +279,33 @@ public abstract class RecordStorage {
         }
     }
 
+    /**
+     * Handles DELETE by query. Deletes all the matching records, or, like a single database statement, none of
+     * them if any of them cannot be deleted.
+     */
+    protected void deleteRecords (RoutingContext routingContext) {
+        final String query = routingContext.request().getParam("query") != null ?
+                decode(routingContext.request().getParam("query")) : null;
+        if (query == null) {
+            respondWithMessage(routingContext, "Query required for deleting records from " + storageName, 400);
+            return;
+        }
+        List<String> ids = new ArrayList<>();
+        for (FakeRecord folioApiRecord : getRecords()) {
+            if (folioApiRecord.match(query)) {
+                ids.add(folioApiRecord.getId());
+            }
+        }
+        if (failOnDelete) {
+            respondWithMessage(routingContext, "Forced error deleting from " + storageName, 500);
+        } else if (ids.stream().anyMatch(this::hasDependentRecords)) {
+            respondWithMessage(routingContext, "Error deleting from " + storageName, 400);
+        } else {
+            ids.forEach(records::remove);
+            respond(routingContext, 204);
+        }
+    }
+
     /**
      * Handles DELETE ALL
      */
@@ -30,6 +30,8 @@ public class Files {
   public static final String XSLT_SYNTAX_ERROR = getSampleFile("stylesheets/xsltSyntaxError.xslt");
   public static final String XSLT_COPY_XML_DOC = getSampleFile("stylesheets/copyXmlDoc.xslt");
   public static final String XSLT_MARC_TO_INSTANCE = getSampleFile("stylesheets/marcToInstance.xslt");
+  public static final String XSLT_PREFIX_TITLE = getSampleFile("stylesheets/prefixTitle.xslt");
+  public static final String XSLT_SUFFIX_TITLE = getSampleFile("stylesheets/suffixTitle.xslt");
   private static final String INSTANCE_TYPE_ID = "30fffe0e-e985-4144-b2e2-1e8179bdb41f";
 
   public static final String XML_INVENTORY_RECORD_SET = getSampleFile("samplesourcefiles/inventoryRecordSet.xml");
@@ -120,6 +122,28 @@ public class Files {
           records.add(theRecord);
       }
 
+      public void addUpsertRecordWithoutHrid(int recNo, String fakedResponseStatus) {
+          Element theRecord = collection.createElement("record");
+          Element instance = createInstance(recNo, fakedResponseStatus);
+          instance.removeChild(instance.getElementsByTagName("hrid").item(0));
+          theRecord.appendChild(instance);
+          records.add(theRecord);
+      }
+
+      public void addUpsertRecordWithHoldingsRecord(int recNo, String holdingsHrid, String fakedResponseStatus) {
+          Element theRecord = collection.createElement("record");
+          theRecord.appendChild(createInstance(recNo, fakedResponseStatus));
+          Element holdingsRecord = collection.createElement("i");
+          holdingsRecord.appendChild(createTextElement("hrid", holdingsHrid));
+          holdingsRecord.appendChild(createTextElement("permanentLocationId", "LOC1"));
+          Element arr = collection.createElement("arr");
+          arr.appendChild(holdingsRecord);
+          Element holdingsRecords = collection.createElement("holdingsRecords");
+          holdingsRecords.appendChild(arr);
+          theRecord.appendChild(holdingsRecords);
+          records.add(theRecord);
+      }
+
       public void addDeleteRecord(int hrid) {
           Element theRecord = collection.createElement("record");
           theRecord.appendChild(createDelete(hrid));